@@ -0,0 +1,250 @@
+package project2;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/*
+    The AsyncFakebookOracle class is a non-blocking companion to FakebookOracle: each of the
+    ten query functions returns a CompletableFuture right away, and the query runs on a
+    FakebookOracle borrowed from a FakebookConnectionPool. The queries run on virtual threads
+    when the Java runtime has them (Java 21 or later), and otherwise on daemon platform threads.
+    A fair semaphore holds one permit per pool connection, so at most that many queries are
+    running at a time, and waiting callers queue on the semaphore rather than inside the pool.
+
+    A returned future can be cancelled, or given a deadline with orTimeout(); either way, a
+    query that has not started yet never runs, and a query that is running is asked to stop
+    through FakebookOracle.cancel(). Every future is also given a deadline of <timeoutMillis>
+    milliseconds, unless that is 0.
+*/
+public final class AsyncFakebookOracle implements AutoCloseable {
+    /*
+        A Query is the work done with a borrowed FakebookOracle.
+    */
+    public interface Query<T> {
+        T run(FakebookOracle oracle) throws Exception;
+    }
+
+    // [Constructor]
+    // REQUIRES: <timeoutMillis> is not negative
+    public AsyncFakebookOracle(FakebookConnectionPool pool, long timeoutMillis) {
+        this.pool = pool;
+        this.timeoutMillis = timeoutMillis;
+        permits = new Semaphore(pool.maxConnections(), true);
+        executor = newExecutor();
+    }
+
+    // Query Functions
+    public CompletableFuture<BirthMonthInfo> findMonthOfBirthInfo() {
+        return submit(new Query<BirthMonthInfo>() {
+            public BirthMonthInfo run(FakebookOracle oracle) throws SQLException {
+                return oracle.findMonthOfBirthInfo();
+            }
+        });
+    }
+
+    public CompletableFuture<FirstNameInfo> findNameInfo() {
+        return submit(new Query<FirstNameInfo>() {
+            public FirstNameInfo run(FakebookOracle oracle) throws SQLException {
+                return oracle.findNameInfo();
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<UserInfo>> lonelyUsers() {
+        return submit(new Query<FakebookArrayList<UserInfo>>() {
+            public FakebookArrayList<UserInfo> run(FakebookOracle oracle) throws SQLException {
+                return oracle.lonelyUsers();
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<UserInfo>> liveAwayFromHome() {
+        return submit(new Query<FakebookArrayList<UserInfo>>() {
+            public FakebookArrayList<UserInfo> run(FakebookOracle oracle) throws SQLException {
+                return oracle.liveAwayFromHome();
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<TaggedPhotoInfo>> findPhotosWithMostTags(final int num) {
+        return submit(new Query<FakebookArrayList<TaggedPhotoInfo>>() {
+            public FakebookArrayList<TaggedPhotoInfo> run(FakebookOracle oracle) throws SQLException {
+                return oracle.findPhotosWithMostTags(num);
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<MatchPair>> matchMaker(final int num, final int yearDiff) {
+        return submit(new Query<FakebookArrayList<MatchPair>>() {
+            public FakebookArrayList<MatchPair> run(FakebookOracle oracle) throws SQLException {
+                return oracle.matchMaker(num, yearDiff);
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<UsersPair>> suggestFriends(final int num) {
+        return submit(new Query<FakebookArrayList<UsersPair>>() {
+            public FakebookArrayList<UsersPair> run(FakebookOracle oracle) throws SQLException {
+                return oracle.suggestFriends(num);
+            }
+        });
+    }
+
+    public CompletableFuture<EventStateInfo> findEventStates() {
+        return submit(new Query<EventStateInfo>() {
+            public EventStateInfo run(FakebookOracle oracle) throws SQLException {
+                return oracle.findEventStates();
+            }
+        });
+    }
+
+    public CompletableFuture<AgeInfo> findAgeInfo(final long userID) {
+        return submit(new Query<AgeInfo>() {
+            public AgeInfo run(FakebookOracle oracle) throws SQLException {
+                return oracle.findAgeInfo(userID);
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<SiblingInfo>> findPotentialSiblings() {
+        return submit(new Query<FakebookArrayList<SiblingInfo>>() {
+            public FakebookArrayList<SiblingInfo> run(FakebookOracle oracle) throws SQLException {
+                return oracle.findPotentialSiblings();
+            }
+        });
+    }
+
+    // [Submit Function]
+    // EFFECTS:  runs <query> on a pooled FakebookOracle as soon as a permit is available and
+    //           returns a future of its result
+    public <T> CompletableFuture<T> submit(final Query<T> query) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        final Execution execution = new Execution();
+        future.whenComplete(new BiConsumer<T, Throwable>() {
+            public void accept(T value, Throwable failure) {
+                if (failure instanceof CancellationException || failure instanceof TimeoutException) {
+                    execution.stop();
+                }
+            }
+        });
+        if (timeoutMillis > 0) {
+            future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        executor.execute(new Runnable() {
+            public void run() {
+                if (!execution.start() || future.isDone()) {
+                    execution.finish();
+                    return;
+                }
+                try {
+                    permits.acquire();
+                    try {
+                        FakebookConnectionPool.PooledOracle pooled = pool.borrow();
+                        try {
+                            if (execution.running(pooled.oracle) && !future.isDone()) {
+                                future.complete(query.run(pooled.oracle));
+                            }
+                        } finally {
+                            execution.finish();
+                            pool.release(pooled);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    execution.finish();
+                    Thread.interrupted(); // do not leak a late interrupt into the next task
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    // [Close Function]
+    // EFFECTS:  stops accepting queries and interrupts the ones still waiting for a permit;
+    //           the pool is left open
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // [New Executor Function]
+    // EFFECTS:  returns an executor that starts one virtual thread per task if the runtime
+    //           supports virtual threads, and otherwise one that reuses daemon platform threads
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            final AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "fakebook-async-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /*
+        An Execution tracks where a submitted query is, so that stop() can interrupt it while
+        it waits for a permit or a connection, or cancel it through its FakebookOracle once it
+        runs. Once stopped, it cannot start or run any more.
+    */
+    private static final class Execution {
+        // Records the calling thread as the one executing the query; false if already stopped
+        synchronized boolean start() {
+            worker = Thread.currentThread();
+            return !stopped;
+        }
+
+        // Records that the query now runs on <oracle>; false if already stopped
+        synchronized boolean running(FakebookOracle oracle) {
+            this.oracle = oracle;
+            return !stopped;
+        }
+
+        // Records that the query no longer runs on any thread
+        synchronized void finish() {
+            worker = null;
+            oracle = null;
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            if (oracle != null) {
+                try {
+                    oracle.cancel();
+                } catch (SQLException e) {
+                    System.err.println(e.getMessage());
+                }
+            } else if (worker != null) {
+                worker.interrupt();
+            }
+        }
+
+        private Thread worker;
+        private FakebookOracle oracle;
+        private boolean stopped;
+    }
+
+    // Member Variables
+    private final FakebookConnectionPool pool;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+}
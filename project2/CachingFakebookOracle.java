@@ -0,0 +1,358 @@
+package project2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The CachingFakebookOracle class is a FakebookOracle that answers every query from a memo of
+    the results previously computed by another FakebookOracle (the delegate), keyed by query
+    function and arguments. The memo holds at most <maxEntries> results, evicting the least
+    recently used one when full, and a result is only reused for <ttlMillis> milliseconds after
+    it was computed. In addition, every result is tagged with the version of the data it was
+    computed from, as reported by a VersionProbe; when the probe reports a different version,
+    every memoized result is dropped, and an optional hook is run so that state the delegate
+    keeps across queries (such as its user cache) can be dropped too. The probe itself runs at most once every
+    <probeIntervalMillis> milliseconds, so a repeated call costs a map lookup rather than a
+    round trip to the database.
+
+    Memoized results are shared between callers, who must therefore not modify them.
+*/
+public final class CachingFakebookOracle extends FakebookOracle {
+    /*
+        A VersionProbe reports a value that changes whenever the data behind the queries does.
+    */
+    public interface VersionProbe {
+        String version() throws SQLException;
+    }
+
+    // [Constructor]
+    // REQUIRES: <maxEntries> and <ttlMillis> are positive, and <probeIntervalMillis> is not
+    //           negative; <probe> may be NULL, in which case results expire by age only
+    public CachingFakebookOracle(FakebookOracle delegate, VersionProbe probe, int maxEntries, long ttlMillis,
+            long probeIntervalMillis) {
+        this.delegate = delegate;
+        this.probe = probe;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.probeIntervalMillis = probeIntervalMillis;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CachingFakebookOracle.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        lastProbeTime = Long.MIN_VALUE;
+    }
+
+    // [Table Version Probe Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  returns a probe that reports the row count and the largest key of every
+    //           Fakebook table, read with a single query on <connection>; the statement is
+    //           closed after every probe, since probes are at least <probeIntervalMillis> apart
+    public static VersionProbe tableVersionProbe(final Connection connection) {
+        return new VersionProbe() {
+            public String version() throws SQLException {
+                StringBuilder version = new StringBuilder();
+                try (PreparedStatement statement = connection.prepareStatement(versionQuery(),
+                        FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly);
+                        ResultSet rst = statement.executeQuery()) {
+                    while (rst.next()) {
+                        version.append(rst.getLong(2)).append('/').append(rst.getString(3)).append(';');
+                    }
+                }
+                return version.toString();
+            }
+        };
+    }
+
+    // [Delegate Function]
+    // EFFECTS:  returns the FakebookOracle whose results are memoized
+    public FakebookOracle delegate() {
+        return delegate;
+    }
+
+    @Override
+    // [Failure Count Function]
+    // EFFECTS:  returns the failure count of the delegate
+    public long failureCount() {
+        return delegate.failureCount();
+    }
+
+    @Override
+    // [Cancel Function]
+    // EFFECTS:  cancels the query the delegate is running, if any
+    public void cancel() throws SQLException {
+        delegate.cancel();
+    }
+
+    // [Set Invalidation Hook Function]
+    // MODIFIES: this
+    // EFFECTS:  runs <hook> (unless it is NULL) whenever every memoized result is dropped, before
+    //           any result is computed from the new data
+    public void setInvalidationHook(Runnable hook) {
+        invalidationHook = hook;
+    }
+
+    // [Invalidate Function]
+    // MODIFIES: this
+    // EFFECTS:  drops every memoized result and runs the invalidation hook
+    public void invalidate() {
+        synchronized (this) {
+            entries.clear();
+            invalidations++;
+        }
+        runInvalidationHook();
+    }
+
+    // [Statistics Printing Function]
+    // EFFECTS:  writes the hit, miss, eviction, invalidation, and probe counts of the memo
+    public void printStatistics(Writer writer) throws IOException {
+        String output;
+        synchronized (this) {
+            output = String.format("%sCache Statistics%s%n%d hit(s), %d miss(es), %d eviction(s), "
+                    + "%d invalidation(s), %d probe(s), %d result(s) held%n%n",
+                    FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, hits, misses,
+                    evictions, invalidations, probes, entries.size());
+        }
+        writer.write(output);
+        writer.flush();
+    }
+
+    // Query Functions, each memoized under its name and arguments
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return lookup("findMonthOfBirthInfo", new Loader<BirthMonthInfo>() {
+            public BirthMonthInfo load() throws SQLException {
+                return delegate.findMonthOfBirthInfo();
+            }
+        });
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return lookup("findNameInfo", new Loader<FirstNameInfo>() {
+            public FirstNameInfo load() throws SQLException {
+                return delegate.findNameInfo();
+            }
+        });
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return lookup("lonelyUsers", new Loader<FakebookArrayList<UserInfo>>() {
+            public FakebookArrayList<UserInfo> load() throws SQLException {
+                return delegate.lonelyUsers();
+            }
+        });
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return lookup("liveAwayFromHome", new Loader<FakebookArrayList<UserInfo>>() {
+            public FakebookArrayList<UserInfo> load() throws SQLException {
+                return delegate.liveAwayFromHome();
+            }
+        });
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(final int num) throws SQLException {
+        return lookup("findPhotosWithMostTags:" + num, new Loader<FakebookArrayList<TaggedPhotoInfo>>() {
+            public FakebookArrayList<TaggedPhotoInfo> load() throws SQLException {
+                return delegate.findPhotosWithMostTags(num);
+            }
+        });
+    }
+
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(final int num, final int yearDiff) throws SQLException {
+        return lookup("matchMaker:" + num + ":" + yearDiff, new Loader<FakebookArrayList<MatchPair>>() {
+            public FakebookArrayList<MatchPair> load() throws SQLException {
+                return delegate.matchMaker(num, yearDiff);
+            }
+        });
+    }
+
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(final int num) throws SQLException {
+        return lookup("suggestFriends:" + num, new Loader<FakebookArrayList<UsersPair>>() {
+            public FakebookArrayList<UsersPair> load() throws SQLException {
+                return delegate.suggestFriends(num);
+            }
+        });
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return lookup("findEventStates", new Loader<EventStateInfo>() {
+            public EventStateInfo load() throws SQLException {
+                return delegate.findEventStates();
+            }
+        });
+    }
+
+    @Override
+    public AgeInfo findAgeInfo(final long userID) throws SQLException {
+        return lookup("findAgeInfo:" + userID, new Loader<AgeInfo>() {
+            public AgeInfo load() throws SQLException {
+                return delegate.findAgeInfo(userID);
+            }
+        });
+    }
+
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return lookup("findPotentialSiblings", new Loader<FakebookArrayList<SiblingInfo>>() {
+            public FakebookArrayList<SiblingInfo> load() throws SQLException {
+                return delegate.findPotentialSiblings();
+            }
+        });
+    }
+
+    // [Lookup Function]
+    // MODIFIES: this
+    // EFFECTS:  returns the result memoized under <key> if it is still fresh and was computed
+    //           from the current data version; otherwise computes it with <loader> and returns
+    //           it, memoizing it unless the delegate reported a failure while computing it (so
+    //           that the placeholder result of an error is never reused)
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(String key, Loader<T> loader) throws SQLException {
+        String version = currentVersion();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.loadTime < ttlMillis && equal(entry.version, version)) {
+                hits++;
+                return (T) entry.value;
+            }
+            misses++;
+        }
+
+        long failures = delegate.failureCount();
+        T value = loader.load();
+        if (delegate.failureCount() != failures) {
+            return value;
+        }
+        synchronized (this) {
+            entries.put(key, new Entry(value, version, now));
+        }
+        return value;
+    }
+
+    // [Current Version Function]
+    // MODIFIES: this
+    // EFFECTS:  returns the data version, probing for it if the last probe is older than
+    //           <probeIntervalMillis>; if the probed version differs from the previous one,
+    //           every memoized result is dropped
+    private String currentVersion() throws SQLException {
+        if (probe == null) {
+            return null;
+        }
+        synchronized (probe) {
+            long now = System.currentTimeMillis();
+            if (lastProbeTime == Long.MIN_VALUE || now - lastProbeTime >= probeIntervalMillis) {
+                String version = probe.version();
+                boolean changed = lastVersion != null && !lastVersion.equals(version);
+                synchronized (this) {
+                    probes++;
+                    if (changed) {
+                        entries.clear();
+                        invalidations++;
+                    }
+                }
+                if (changed) {
+                    runInvalidationHook();
+                }
+                lastVersion = version;
+                lastProbeTime = now;
+            }
+            return lastVersion;
+        }
+    }
+
+    // [Run Invalidation Hook Function]
+    // EFFECTS:  runs the invalidation hook, if there is one
+    private void runInvalidationHook() {
+        Runnable hook = invalidationHook;
+        if (hook != null) {
+            hook.run();
+        }
+    }
+
+    // [Version Query Function]
+    // EFFECTS:  returns a query listing, per Fakebook table and in a fixed order, the number of
+    //           rows and the largest value of the first key column
+    private static String versionQuery() {
+        String[][] tables = { { FakebookOracleConstants.UsersTable, "User_ID" },
+                { FakebookOracleConstants.FriendsTable, "User1_ID" },
+                { FakebookOracleConstants.CitiesTable, "City_ID" },
+                { FakebookOracleConstants.CurrentCitiesTable, "User_ID" },
+                { FakebookOracleConstants.HometownCitiesTable, "User_ID" },
+                { FakebookOracleConstants.ProgramsTable, "Program_ID" },
+                { FakebookOracleConstants.EducationTable, "User_ID" },
+                { FakebookOracleConstants.EventsTable, "Event_ID" },
+                { FakebookOracleConstants.AlbumsTable, "Album_ID" },
+                { FakebookOracleConstants.PhotosTable, "Photo_ID" },
+                { FakebookOracleConstants.TagsTable, "Tag_Photo_ID" } };
+        StringBuilder sql = new StringBuilder();
+        for (int idx = 0; idx < tables.length; idx++) {
+            sql.append(idx == 0 ? "" : " UNION ALL ").append(String.format(
+                    "SELECT %d AS Table_No, COUNT(*) AS Row_Count, MAX(%s) AS Max_Key FROM %s",
+                    idx, tables[idx][1], tables[idx][0]));
+        }
+        return sql.append(" ORDER BY Table_No").toString();
+    }
+
+    private static boolean equal(String left, String right) {
+        return left == null ? right == null : left.equals(right);
+    }
+
+    /*
+        A Loader computes a result on a cache miss.
+    */
+    private interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    /*
+        An Entry is one memoized result, with the data version it was computed from and the
+        time (in milliseconds) it was computed at.
+    */
+    private static final class Entry {
+        Entry(Object value, String version, long loadTime) {
+            this.value = value;
+            this.version = version;
+            this.loadTime = loadTime;
+        }
+
+        final Object value;
+        final String version;
+        final long loadTime;
+    }
+
+    // Member Variables
+    private final FakebookOracle delegate;
+    private final VersionProbe probe;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long probeIntervalMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private volatile Runnable invalidationHook; // NULL unless set
+    private String lastVersion;
+    private long lastProbeTime;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private long probes;
+}
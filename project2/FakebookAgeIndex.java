@@ -0,0 +1,126 @@
+package project2;
+
+import java.util.Arrays;
+
+/*
+    The FakebookAgeIndex class stores the oldest and the youngest friend of every user, so
+    that Query 8 can be answered for any user with two array lookups. It is built with one
+    pass over the users (addUser(), which records birth dates) followed by one pass over the
+    friendships (addFriendship(), which updates both users' oldest and youngest friend).
+
+    The order matches that of Query 8: friends are compared by year, month, and day of birth,
+    a missing (NULL) part counting as later than any value, as it sorts in Oracle; among
+    friends born on the same date, the one with the larger user ID is the oldest and the one
+    with the smaller user ID is the youngest.
+*/
+final class FakebookAgeIndex {
+    // [Constructor]
+    public FakebookAgeIndex(int expectedUsers) {
+        index = new LongIntHashMap(expectedUsers);
+        int capacity = Math.max(16, expectedUsers);
+        userIDs = new long[capacity];
+        births = new int[3 * capacity];
+        oldest = new int[capacity];
+        youngest = new int[capacity];
+    }
+
+    // [Add User Function]
+    // REQUIRES: no friendship has been added yet, and <userID> has not been added before;
+    //           a NULL part of the birth date is passed as <NoDate>
+    // MODIFIES: this
+    // EFFECTS:  records the birth date of user <userID>
+    public void addUser(long userID, int year, int month, int day) {
+        if (size == userIDs.length) {
+            int capacity = 2 * size;
+            userIDs = Arrays.copyOf(userIDs, capacity);
+            births = Arrays.copyOf(births, 3 * capacity);
+            oldest = Arrays.copyOf(oldest, capacity);
+            youngest = Arrays.copyOf(youngest, capacity);
+        }
+        index.put(userID, size);
+        userIDs[size] = userID;
+        births[3 * size] = year;
+        births[3 * size + 1] = month;
+        births[3 * size + 2] = day;
+        oldest[size] = None;
+        youngest[size] = None;
+        size++;
+    }
+
+    // [Add Friendship Function]
+    // MODIFIES: this
+    // EFFECTS:  records that users <user1ID> and <user2ID> are friends; friendships with a user
+    //           that was not added are ignored, as the join with the Users table would drop them
+    public void addFriendship(long user1ID, long user2ID) {
+        int user1 = index.get(user1ID, None);
+        int user2 = index.get(user2ID, None);
+        if (user1 == None || user2 == None) {
+            return;
+        }
+        offer(user1, user2);
+        offer(user2, user1);
+    }
+
+    // [Oldest Friend Function]
+    // EFFECTS:  returns the user ID of the oldest friend of <userID>, or -1 if <userID> has no
+    //           friends or is unknown
+    public long oldestFriend(long userID) {
+        int user = index.get(userID, None);
+        return user == None || oldest[user] == None ? -1 : userIDs[oldest[user]];
+    }
+
+    // [Youngest Friend Function]
+    // EFFECTS:  returns the user ID of the youngest friend of <userID>, or -1 if <userID> has
+    //           no friends or is unknown
+    public long youngestFriend(long userID) {
+        int user = index.get(userID, None);
+        return user == None || youngest[user] == None ? -1 : userIDs[youngest[user]];
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of users in this index
+    public int size() {
+        return size;
+    }
+
+    // [Offer Function]
+    // MODIFIES: this
+    // EFFECTS:  makes <friend> the oldest and/or youngest friend of <user> if it is older or
+    //           younger than the current ones
+    private void offer(int user, int friend) {
+        int current = oldest[user];
+        if (current == None || compare(friend, current) < 0) {
+            oldest[user] = friend;
+        }
+        current = youngest[user];
+        if (current == None || compare(friend, current) > 0) {
+            youngest[user] = friend;
+        }
+    }
+
+    // [Compare Function]
+    // EFFECTS:  returns a negative number if <user1> comes before <user2> in the order of
+    //           Query 8 (i.e. is older), a positive number if it comes after, and 0 if they are
+    //           the same user
+    private int compare(int user1, int user2) {
+        for (int part = 0; part < 3; part++) {
+            int cmp = Integer.compare(births[3 * user1 + part], births[3 * user2 + part]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Long.compare(userIDs[user2], userIDs[user1]); // larger IDs first
+    }
+
+    // Constants
+    public static final int NoDate = Integer.MAX_VALUE; // sorts after every real date part
+    private static final int None = -1;
+
+    // Member Variables
+    private final LongIntHashMap index;
+    private long[] userIDs;
+    private int[] births;
+    private int[] oldest;
+    private int[] youngest;
+    private int size;
+}
@@ -0,0 +1,281 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The FakebookBulkLoader class writes a dataset produced by FakebookDataGenerator into a
+    database through JDBC. The Cities and Programs tables are written first by a single
+    writer; the user-owned rows are then written by <writers> parallel writers, each with its
+    own connection, that repeatedly claim the next chunk of <chunkUsers> user IDs, generate its
+    rows, and send them as JDBC batches of <batchSize> rows per table, committing after every
+    chunk. Tables should be loaded without foreign key constraints (e.g. created with -create)
+    since the writers insert rows of different users in no particular order.
+
+    Command Line Flags (all optional except -url):
+     -url=<jdbc-url>             target database (required)
+     -user=<name>, -password=<p> credentials for the target database
+     -create                     create the schema and the eleven tables before loading
+     -users=<n>                  number of users (default: 10000)
+     -friends=<mean>             mean number of friends per user (default: 10)
+     -friend-dist=<dist>         "uniform", "geometric" or "powerlaw:<alpha>" (default: powerlaw:2.5)
+     -tags=<mean>                mean number of tags per photo (default: 3)
+     -tag-dist=<dist>            as -friend-dist (default: geometric)
+     -seed=<n>                   random seed (default: 484)
+     -writers=<n>                parallel writers (default: number of processors)
+     -batch=<n>                  rows per JDBC batch (default: 1000)
+*/
+public final class FakebookBulkLoader {
+    // [Constructor]
+    // REQUIRES: <writers>, <batchSize>, and <chunkUsers> are positive
+    public FakebookBulkLoader(FakebookDataGenerator generator, FakebookConnectionPool.ConnectionFactory connections,
+            int writers, int batchSize, int chunkUsers) {
+        this.generator = generator;
+        this.connections = connections;
+        this.writers = writers;
+        this.batchSize = batchSize;
+        this.chunkUsers = chunkUsers;
+    }
+
+    // [Main Function]
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        String user = null;
+        String password = null;
+        boolean create = false;
+        long users = 10000;
+        double friends = 10;
+        String friendDistribution = "powerlaw:2.5";
+        double tags = 3;
+        String tagDistribution = "geometric";
+        long seed = 484;
+        int writers = Runtime.getRuntime().availableProcessors();
+        int batchSize = 1000;
+        for (String arg : args) {
+            if (arg.startsWith("-url=")) {
+                url = arg.substring("-url=".length());
+            } else if (arg.startsWith("-user=")) {
+                user = arg.substring("-user=".length());
+            } else if (arg.startsWith("-password=")) {
+                password = arg.substring("-password=".length());
+            } else if (arg.equals("-create")) {
+                create = true;
+            } else if (arg.startsWith("-users=")) {
+                users = Long.parseLong(arg.substring("-users=".length()));
+            } else if (arg.startsWith("-friends=")) {
+                friends = Double.parseDouble(arg.substring("-friends=".length()));
+            } else if (arg.startsWith("-friend-dist=")) {
+                friendDistribution = arg.substring("-friend-dist=".length());
+            } else if (arg.startsWith("-tags=")) {
+                tags = Double.parseDouble(arg.substring("-tags=".length()));
+            } else if (arg.startsWith("-tag-dist=")) {
+                tagDistribution = arg.substring("-tag-dist=".length());
+            } else if (arg.startsWith("-seed=")) {
+                seed = Long.parseLong(arg.substring("-seed=".length()));
+            } else if (arg.startsWith("-writers=")) {
+                writers = Integer.parseInt(arg.substring("-writers=".length()));
+            } else if (arg.startsWith("-batch=")) {
+                batchSize = Integer.parseInt(arg.substring("-batch=".length()));
+            } else {
+                throw new IllegalArgumentException("unknown flag: " + arg);
+            }
+        }
+
+        if (url == null) {
+            throw new IllegalArgumentException("-url is required");
+        }
+
+        final String jdbcURL = url;
+        final String jdbcUser = user;
+        final String jdbcPassword = password;
+        FakebookConnectionPool.ConnectionFactory connections = new FakebookConnectionPool.ConnectionFactory() {
+            public Connection open() throws SQLException {
+                return DriverManager.getConnection(jdbcURL, jdbcUser, jdbcPassword);
+            }
+        };
+
+        FakebookDataGenerator generator = new FakebookDataGenerator(users, friendDistribution, friends,
+                tagDistribution, tags, seed);
+        FakebookBulkLoader loader = new FakebookBulkLoader(generator, connections, writers, batchSize,
+                DefaultChunkUsers);
+        long beginTime = System.nanoTime();
+        if (create) {
+            loader.createTables();
+        }
+        long rows = loader.load();
+        System.out.println(String.format("Loaded %d row(s) for %d user(s) in %.3f s", rows, users,
+                (System.nanoTime() - beginTime) / 1e9));
+    }
+
+    // [Create Tables Function]
+    // EFFECTS:  creates the project2 schema (if the database allows it and it does not exist)
+    //           and the eleven Fakebook tables, without constraints
+    public void createTables() throws SQLException {
+        try (Connection connection = connections.open(); Statement stmt = connection.createStatement()) {
+            try {
+                stmt.executeUpdate("CREATE SCHEMA project2");
+            } catch (SQLException e) {
+                // the schema already exists, or schemas are users in this database
+            }
+            for (String table : Tables) {
+                StringBuilder ddl = new StringBuilder("CREATE TABLE " + table + " (");
+                String[] columns = FakebookDataGenerator.columns(table);
+                for (int idx = 0; idx < columns.length; idx++) {
+                    ddl.append(idx == 0 ? "" : ", ").append(columns[idx]).append(" ").append(columnType(columns[idx]));
+                }
+                stmt.executeUpdate(ddl.append(")").toString());
+            }
+        }
+    }
+
+    // [Load Function]
+    // EFFECTS:  writes the whole dataset and returns the number of rows written; if a writer
+    //           fails, the others stop after their current chunk and its failure is rethrown
+    public long load() throws SQLException, InterruptedException {
+        BatchWriter dimensions = new BatchWriter(connections.open());
+        try {
+            generator.generateDimensions(dimensions);
+            dimensions.commit();
+        } finally {
+            dimensions.close();
+        }
+
+        final AtomicLong nextUser = new AtomicLong(1);
+        final AtomicLong rows = new AtomicLong(dimensions.committedRows);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[writers];
+        for (int idx = 0; idx < writers; idx++) {
+            threads[idx] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        BatchWriter writer = new BatchWriter(connections.open());
+                        try {
+                            long from;
+                            while ((from = nextUser.getAndAdd(chunkUsers)) <= generator.users()) {
+                                generator.generateUsers(from, Math.min(from + chunkUsers, generator.users() + 1),
+                                        writer);
+                                writer.commit();
+                            }
+                        } finally {
+                            rows.addAndGet(writer.committedRows);
+                            writer.close();
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                        nextUser.set(Long.MAX_VALUE / 2); // stop the other writers
+                    }
+                }
+            }, "fakebook-writer-" + idx);
+            threads[idx].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // The writers only throw SQLExceptions and unchecked exceptions
+        if (failure[0] instanceof SQLException) {
+            throw (SQLException) failure[0];
+        } else if (failure[0] instanceof Error) {
+            throw (Error) failure[0];
+        } else if (failure[0] != null) {
+            throw (RuntimeException) failure[0];
+        }
+        return rows.get();
+    }
+
+    // [Column Type Function]
+    // EFFECTS:  returns the SQL type used for <column> by createTables()
+    private static String columnType(String column) {
+        if (column.endsWith("_Time")) {
+            return "TIMESTAMP";
+        } else if (column.endsWith("_ID") || column.endsWith("_of_Birth") || column.equals("Program_Year")
+                || column.equals("Tag_X") || column.equals("Tag_Y")) {
+            return "INTEGER";
+        }
+        return "VARCHAR(200)";
+    }
+
+    /*
+        The BatchWriter class is a RowSink that buffers rows in one prepared INSERT statement
+        per table and sends each statement as a batch once it holds <batchSize> rows.
+    */
+    private final class BatchWriter implements FakebookDataGenerator.RowSink {
+        BatchWriter(Connection connection) throws SQLException {
+            this.connection = connection;
+            connection.setAutoCommit(false);
+            inserts = new HashMap<String, PreparedStatement>();
+            pending = new HashMap<String, int[]>();
+        }
+
+        public void row(String table, Object... values) throws SQLException {
+            PreparedStatement insert = inserts.get(table);
+            if (insert == null) {
+                String[] columns = FakebookDataGenerator.columns(table);
+                StringBuilder sql = new StringBuilder("INSERT INTO " + table + " VALUES (");
+                for (int idx = 0; idx < columns.length; idx++) {
+                    sql.append(idx == 0 ? "?" : ", ?");
+                }
+                insert = connection.prepareStatement(sql.append(")").toString());
+                inserts.put(table, insert);
+                pending.put(table, new int[1]);
+            }
+            for (int idx = 0; idx < values.length; idx++) {
+                insert.setObject(idx + 1, values[idx]);
+            }
+            insert.addBatch();
+            rows++;
+            int[] count = pending.get(table);
+            if (++count[0] == batchSize) {
+                insert.executeBatch();
+                count[0] = 0;
+            }
+        }
+
+        // Sends every partially filled batch and commits
+        void commit() throws SQLException {
+            for (String table : inserts.keySet()) {
+                int[] count = pending.get(table);
+                if (count[0] != 0) {
+                    inserts.get(table).executeBatch();
+                    count[0] = 0;
+                }
+            }
+            connection.commit();
+            committedRows = rows;
+        }
+
+        void close() throws SQLException {
+            connection.close();
+        }
+
+        private final Connection connection;
+        private final HashMap<String, PreparedStatement> inserts;
+        private final HashMap<String, int[]> pending;
+        long rows;
+        long committedRows; // the rows written up to the last commit()
+    }
+
+    // Constants
+    private static final int DefaultChunkUsers = 1000;
+    private static final String[] Tables = { FakebookOracleConstants.UsersTable, FakebookOracleConstants.FriendsTable,
+            FakebookOracleConstants.CitiesTable, FakebookOracleConstants.CurrentCitiesTable,
+            FakebookOracleConstants.HometownCitiesTable, FakebookOracleConstants.ProgramsTable,
+            FakebookOracleConstants.EducationTable, FakebookOracleConstants.EventsTable,
+            FakebookOracleConstants.AlbumsTable, FakebookOracleConstants.PhotosTable,
+            FakebookOracleConstants.TagsTable };
+
+    // Member Variables
+    private final FakebookDataGenerator generator;
+    private final FakebookConnectionPool.ConnectionFactory connections;
+    private final int writers;
+    private final int batchSize;
+    private final int chunkUsers;
+}
@@ -0,0 +1,160 @@
+package project2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+    The FakebookCoTagEngine class ranks the pairs of Query 5 (users of the same gender, born
+    at most <yearDiff> years apart, who are not friends, by the number of photos both are
+    tagged in) by streaming the tables through a FakebookStatementRegistry instead of joining
+    the Tags table with itself in the database.
+
+    The gender (dictionary-coded) and birth year of every user are read into arrays indexed
+    by the user's rank by ID. The tags are then read grouped by photo; each photo's taggable
+    users (those with a gender and a birth year) are paired with each other, and every pair
+    that passes the gender and year filters has its count incremented in a primitive map keyed
+    by the two indexes, so memory follows the number of distinct co-tagged pairs. The pairs
+    that are friends are then removed from the map by streaming the Friends table, and the
+    remaining pairs are offered to a bounded top-<num> heap.
+*/
+final class FakebookCoTagEngine {
+    // [Constructor]
+    public FakebookCoTagEngine(FakebookStatementRegistry statements) {
+        this.statements = statements;
+        userIDs = new long[0];
+        birthYears = new int[0];
+    }
+
+    // [Top Pairs Function]
+    // MODIFIES: this
+    // EFFECTS:  returns the best <num> pairs of Query 5 (as indexes, user1 < user2) with their
+    //           shared photo counts; userID() and birthYear() describe the indexes until the
+    //           next call
+    public FakebookTopPairs topPairs(int num, int yearDiff) throws SQLException {
+        int[] genders = loadUsers();
+        LongIntHashMap counts = new LongIntHashMap();
+
+        ResultSet rst = statements.executeQuery("Query 5: Co-Tag Tags",
+                "SELECT Tag_Photo_ID, Tag_Subject_ID FROM " + FakebookOracleConstants.TagsTable + " " +
+                        "ORDER BY Tag_Photo_ID");
+        int[] group = new int[16]; // the taggable users of the current photo
+        int groupSize = 0;
+        long photoID = 0;
+        while (rst.next()) {
+            if (groupSize > 0 && rst.getLong(1) != photoID) {
+                pair(group, groupSize, genders, yearDiff, counts);
+                groupSize = 0;
+            }
+            photoID = rst.getLong(1);
+            int user = userIndex(rst.getLong(2));
+            if (user >= 0 && genders[user] >= 0 && birthYears[user] != FakebookSnapshot.NoValue) {
+                if (groupSize == group.length) {
+                    group = Arrays.copyOf(group, 2 * groupSize);
+                }
+                group[groupSize++] = user;
+            }
+        }
+        rst.close();
+        pair(group, groupSize, genders, yearDiff, counts);
+
+        // Only the friendships stored from the smaller ID to the larger one rule a pair out, as
+        // in the join of Query 5
+        rst = statements.executeQuery("Query 5: Co-Tag Friends",
+                "SELECT User1_ID, User2_ID FROM " + FakebookOracleConstants.FriendsTable);
+        while (rst.next() && counts.size() > 0) {
+            int user1 = userIndex(rst.getLong(1));
+            int user2 = userIndex(rst.getLong(2));
+            if (user1 >= 0 && user1 < user2) {
+                counts.remove(pairKey(user1, user2));
+            }
+        }
+        rst.close();
+
+        FakebookTopPairs top = new FakebookTopPairs(Math.max(num, 0));
+        for (long key : counts.keys()) {
+            top.offer(counts.get(key, 0), (int) (key >>> 32), (int) key);
+        }
+        return top;
+    }
+
+    // [User Functions]
+    // REQUIRES: <user> is an index in the pairs last returned by topPairs()
+    public long userID(int user) {
+        return userIDs[user];
+    }
+
+    public int birthYear(int user) {
+        return birthYears[user];
+    }
+
+    // [Load Users Function]
+    // MODIFIES: this
+    // EFFECTS:  reads the ID and birth year of every user, in ascending ID order, and returns
+    //           their gender codes (-1 for NULL)
+    private int[] loadUsers() throws SQLException {
+        ResultSet rst = statements.executeQuery("Query 5: Co-Tag Users",
+                "SELECT User_ID, Gender, Year_of_Birth FROM " + FakebookOracleConstants.UsersTable + " " +
+                        "ORDER BY User_ID");
+        long[] ids = new long[16];
+        int[] genders = new int[16];
+        int[] years = new int[16];
+        int userCount = 0;
+        HashMap<String, Integer> genderCodes = new HashMap<String, Integer>();
+        while (rst.next()) {
+            if (userCount == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * userCount);
+                genders = Arrays.copyOf(genders, 2 * userCount);
+                years = Arrays.copyOf(years, 2 * userCount);
+            }
+            ids[userCount] = rst.getLong(1);
+            String gender = rst.getString(2);
+            if (gender != null && !genderCodes.containsKey(gender)) {
+                genderCodes.put(gender, genderCodes.size());
+            }
+            genders[userCount] = gender == null ? -1 : genderCodes.get(gender);
+            int year = rst.getInt(3);
+            years[userCount++] = rst.wasNull() ? FakebookSnapshot.NoValue : year;
+        }
+        rst.close();
+        userIDs = Arrays.copyOf(ids, userCount);
+        birthYears = Arrays.copyOf(years, userCount);
+        return Arrays.copyOf(genders, userCount);
+    }
+
+    // [Pair Function]
+    // MODIFIES: <counts>
+    // EFFECTS:  counts one shared photo for every pair of the users of <group> that passes the
+    //           gender and year filters
+    private void pair(int[] group, int groupSize, int[] genders, int yearDiff, LongIntHashMap counts) {
+        for (int idx1 = 0; idx1 < groupSize; idx1++) {
+            int user1 = group[idx1];
+            for (int idx2 = 0; idx2 < groupSize; idx2++) {
+                int user2 = group[idx2];
+                if (user1 < user2 && genders[user1] == genders[user2]
+                        && Math.abs((long) birthYears[user1] - birthYears[user2]) <= yearDiff) {
+                    counts.add(pairKey(user1, user2), 1);
+                }
+            }
+        }
+    }
+
+    // [User Index Function]
+    // EFFECTS:  returns the index of the user with ID <userID>, or -1 if there is none
+    private int userIndex(long userID) {
+        int user = Arrays.binarySearch(userIDs, userID);
+        return user >= 0 ? user : -1;
+    }
+
+    // [Pair Key Function]
+    // REQUIRES: <user1> is less than <user2>
+    private static long pairKey(int user1, int user2) {
+        return ((long) user1 << 32) | user2;
+    }
+
+    // Member Variables
+    private final FakebookStatementRegistry statements;
+    private long[] userIDs; // of the last run, in ascending order
+    private int[] birthYears; // of the last run; <FakebookSnapshot.NoValue> if NULL
+}
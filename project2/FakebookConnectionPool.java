@@ -0,0 +1,161 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/*
+    The FakebookConnectionPool class hands out at most <maxConnections> JDBC connections at
+    a time. Connections are opened lazily through a ConnectionFactory the first time the pool
+    has no idle connection to give out and is still below its limit; once the limit has been
+    reached, borrowers wait until another thread returns a connection. Each pooled connection
+    carries the FakebookOracle instance that was created for it, so prepared statements are
+    reused across borrowers of the same connection.
+*/
+final class FakebookConnectionPool implements AutoCloseable {
+    /*
+        The ConnectionFactory interface opens a new JDBC connection, or returns NULL if the
+        oracles of the pool answer without one.
+    */
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /*
+        The OracleFactory interface creates the FakebookOracle that is used with a connection.
+    */
+    interface OracleFactory {
+        FakebookOracle create(Connection connection) throws SQLException;
+    }
+
+    /*
+        The PooledOracle class pairs a pooled connection with its FakebookOracle.
+    */
+    static final class PooledOracle {
+        PooledOracle(Connection connection, FakebookOracle oracle) {
+            this.connection = connection;
+            this.oracle = oracle;
+        }
+
+        final Connection connection;
+        final FakebookOracle oracle;
+    }
+
+    // [Constructor]
+    // REQUIRES: <maxConnections> is positive
+    public FakebookConnectionPool(int maxConnections, ConnectionFactory connections, OracleFactory oracles) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("pool size must be positive: " + maxConnections);
+        }
+        this.maxConnections = maxConnections;
+        this.connections = connections;
+        this.oracles = oracles;
+        idle = new ArrayDeque<PooledOracle>();
+        all = new ArrayList<PooledOracle>();
+    }
+
+    // [Borrow Function]
+    // MODIFIES: this
+    // EFFECTS:  returns an idle pooled connection, opening a new one if none is idle and fewer
+    //           than <maxConnections> are open, and otherwise waiting until one is released
+    public PooledOracle borrow() throws SQLException, InterruptedException {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("connection pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    return idle.pop();
+                }
+                if (all.size() + opening < maxConnections) {
+                    opening++;
+                    break;
+                }
+                wait();
+            }
+        }
+
+        // The connection is opened outside the lock so that other borrowers are not held up
+        PooledOracle pooled = null;
+        try {
+            Connection connection = connections.open();
+            try {
+                pooled = new PooledOracle(connection, oracles.create(connection));
+            } catch (SQLException e) {
+                if (connection != null) {
+                    connection.close();
+                }
+                throw e;
+            }
+            return pooled;
+        } finally {
+            synchronized (this) {
+                opening--;
+                if (pooled != null) {
+                    all.add(pooled);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // [Release Function]
+    // REQUIRES: <pooled> was returned by borrow() on this pool and has not been released since
+    // MODIFIES: this
+    // EFFECTS:  makes <pooled> available to the next borrower
+    public synchronized void release(PooledOracle pooled) {
+        idle.push(pooled);
+        notifyAll();
+    }
+
+    // [Max Connections Function]
+    // EFFECTS:  returns the largest number of connections this pool opens
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    // [Connections Function]
+    // EFFECTS:  returns every connection this pool has opened so far, idle or not
+    public synchronized ArrayList<PooledOracle> connections() {
+        return new ArrayList<PooledOracle>(all);
+    }
+
+    @Override
+    // [Close Function]
+    // MODIFIES: this
+    // EFFECTS:  closes every connection this pool has opened; later borrows fail
+    public void close() throws SQLException {
+        ArrayList<PooledOracle> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<PooledOracle>(all);
+            all.clear();
+            idle.clear();
+            notifyAll();
+        }
+
+        SQLException failure = null;
+        for (PooledOracle pooled : toClose) {
+            try {
+                if (pooled.connection != null) {
+                    pooled.connection.close();
+                }
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Member Variables
+    private final int maxConnections;
+    private final ConnectionFactory connections;
+    private final OracleFactory oracles;
+    private final ArrayDeque<PooledOracle> idle;
+    private final ArrayList<PooledOracle> all;
+    private int opening;
+    private boolean closed;
+}
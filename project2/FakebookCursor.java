@@ -0,0 +1,63 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/*
+    The FakebookCursor interface streams the elements of a query result one at a time, so that
+    a consumer only holds the element it is looking at; implementations backed by a JDBC result
+    set fetch further rows only as next() asks for them. The total number of elements is known
+    up front (count()), since the printed results state it before listing the elements. A
+    cursor must be closed once the consumer is done with it, whether or not it was exhausted.
+
+    Typical use:
+        try (FakebookCursor<UserInfo> users = oracle.lonelyUsersCursor()) {
+            while (users.next()) {
+                ... users.current() ...
+            }
+        }
+*/
+interface FakebookCursor<T> extends AutoCloseable {
+    // EFFECTS:  returns the number of elements this cursor yields in total
+    long count();
+
+    // MODIFIES: this
+    // EFFECTS:  advances to the next element and returns true, or returns false if there is none
+    boolean next() throws SQLException;
+
+    // REQUIRES: the last call to next() returned true
+    // EFFECTS:  returns the element this cursor is on
+    T current();
+
+    // MODIFIES: this
+    // EFFECTS:  releases the resources held by this cursor
+    void close() throws SQLException;
+
+    // [List Cursor Function]
+    // EFFECTS:  returns a cursor over the elements of <elements>, in order
+    static <T> FakebookCursor<T> of(final List<T> elements) {
+        return new FakebookCursor<T>() {
+            public long count() {
+                return elements.size();
+            }
+
+            public boolean next() {
+                if (position + 1 >= elements.size()) {
+                    position = elements.size();
+                    return false;
+                }
+                position++;
+                return true;
+            }
+
+            public T current() {
+                return elements.get(position);
+            }
+
+            public void close() {
+            }
+
+            private int position = -1;
+        };
+    }
+}
@@ -0,0 +1,343 @@
+package project2;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.SplittableRandom;
+
+/*
+    The FakebookDataGenerator class produces a synthetic Fakebook dataset for the eleven
+    tables named in FakebookOracleConstants. Users are numbered 1 through <users>, and every
+    row that belongs to a user (its cities, education, friendships, events, albums, photos,
+    and tags) is derived from a random stream seeded by that user's ID alone. Any range of
+    users can therefore be generated independently, in any order and on any thread, and the
+    same parameters always produce the same dataset.
+
+    Friendships are generated by letting each user pick a number of other users drawn from
+    the friend-degree distribution; a friendship is emitted once, as (smaller ID, larger ID),
+    by the picker with the smaller ID unless only the other endpoint picked it. Since each
+    user both picks and is picked, a user's expected number of friends is about twice the
+    mean number of picks, so the mean of the pick distribution is half of <meanFriends>.
+
+    Album, photo, and event IDs are derived from the owner's ID (at most MaxAlbumsPerUser
+    albums per user, MaxPhotosPerAlbum photos per album, and MaxEventsPerUser events per user),
+    which keeps them unique without any coordination between generators.
+*/
+final class FakebookDataGenerator {
+    /*
+        The RowSink interface receives the generated rows; <values> are in the column order
+        of FakebookDataGenerator.columns(<table>).
+    */
+    interface RowSink {
+        void row(String table, Object... values) throws SQLException;
+    }
+
+    /*
+        The Distribution class samples non-negative counts with a given mean, either uniformly
+        from [0, 2 * mean], geometrically, or from a discrete power law (Pareto) with exponent
+        <alpha> > 2, which yields a heavy tail of very high counts.
+    */
+    static final class Distribution {
+        // [Parse Function]
+        // EFFECTS:  returns the distribution named by <spec> ("uniform", "geometric", or
+        //           "powerlaw:<alpha>") with mean <mean>; throws IllegalArgumentException if
+        //           <spec> is not recognized
+        static Distribution parse(String spec, double mean) {
+            if (spec.equals("uniform")) {
+                return new Distribution(Uniform, mean, 0);
+            } else if (spec.equals("geometric")) {
+                return new Distribution(Geometric, mean, 0);
+            } else if (spec.startsWith("powerlaw:")) {
+                double alpha = Double.parseDouble(spec.substring("powerlaw:".length()));
+                if (alpha <= 2) {
+                    throw new IllegalArgumentException("power law exponent must exceed 2: " + alpha);
+                }
+                return new Distribution(PowerLaw, mean, alpha);
+            }
+            throw new IllegalArgumentException("unknown distribution: " + spec);
+        }
+
+        private Distribution(int kind, double mean, double alpha) {
+            this.kind = kind;
+            this.mean = mean;
+            this.alpha = alpha;
+        }
+
+        // [Sample Function]
+        // EFFECTS:  returns a count drawn from this distribution, capped at <max>
+        int sample(SplittableRandom random, int max) {
+            double value;
+            if (mean <= 0) {
+                return 0;
+            } else if (kind == Uniform) {
+                value = random.nextDouble() * (2 * mean + 1);
+            } else if (kind == Geometric) {
+                value = Math.log(1 - random.nextDouble()) / Math.log(mean / (mean + 1));
+            } else {
+                double minimum = mean * (alpha - 2) / (alpha - 1);
+                value = minimum * Math.pow(1 - random.nextDouble(), -1 / (alpha - 1));
+            }
+            return (int) Math.min(max, Math.floor(value));
+        }
+
+        private static final int Uniform = 0;
+        private static final int Geometric = 1;
+        private static final int PowerLaw = 2;
+        private final int kind;
+        private final double mean;
+        private final double alpha;
+    }
+
+    // [Constructor]
+    // REQUIRES: <users> is at least 2; <friendDistribution> and <tagDistribution> are
+    //           distribution names accepted by Distribution.parse
+    // EFFECTS:  creates a generator for <users> users with about <meanFriends> friends per
+    //           user and about <meanTags> tags per photo
+    public FakebookDataGenerator(long users, String friendDistribution, double meanFriends,
+            String tagDistribution, double meanTags, long seed) {
+        if (users < 2) {
+            throw new IllegalArgumentException("need at least two users: " + users);
+        }
+        this.users = users;
+        this.friendPicks = Distribution.parse(friendDistribution, meanFriends / 2);
+        this.tagsPerPhoto = Distribution.parse(tagDistribution, meanTags);
+        this.seed = seed;
+        cities = Math.max(10, users / 100);
+        programs = Math.max(10, users / 200);
+        maxFriendPicks = (int) Math.min(users - 1, MaxFriendPicks);
+        maxTags = (int) Math.min(users, MaxTagsPerPhoto);
+    }
+
+    // [Users Function]
+    public long users() {
+        return users;
+    }
+
+    // [Columns Function]
+    // EFFECTS:  returns the columns that generated rows of <table> hold, in order
+    static String[] columns(String table) {
+        if (table.equals(FakebookOracleConstants.UsersTable)) {
+            return new String[] { "User_ID", "First_Name", "Last_Name", "Year_of_Birth", "Month_of_Birth",
+                    "Day_of_Birth", "Gender" };
+        } else if (table.equals(FakebookOracleConstants.FriendsTable)) {
+            return new String[] { "User1_ID", "User2_ID" };
+        } else if (table.equals(FakebookOracleConstants.CitiesTable)) {
+            return new String[] { "City_ID", "City_Name", "State_Name", "Country_Name" };
+        } else if (table.equals(FakebookOracleConstants.CurrentCitiesTable)) {
+            return new String[] { "User_ID", "Current_City_ID" };
+        } else if (table.equals(FakebookOracleConstants.HometownCitiesTable)) {
+            return new String[] { "User_ID", "Hometown_City_ID" };
+        } else if (table.equals(FakebookOracleConstants.ProgramsTable)) {
+            return new String[] { "Program_ID", "Institution", "Concentration", "Degree" };
+        } else if (table.equals(FakebookOracleConstants.EducationTable)) {
+            return new String[] { "User_ID", "Program_ID", "Program_Year" };
+        } else if (table.equals(FakebookOracleConstants.EventsTable)) {
+            return new String[] { "Event_ID", "Event_Creator_ID", "Event_Name", "Event_Tagline",
+                    "Event_Description", "Event_Host", "Event_Type", "Event_Subtype", "Event_Address",
+                    "Event_City_ID", "Event_Start_Time", "Event_End_Time" };
+        } else if (table.equals(FakebookOracleConstants.AlbumsTable)) {
+            return new String[] { "Album_ID", "Album_Owner_ID", "Album_Name", "Album_Created_Time",
+                    "Album_Modified_Time", "Album_Link", "Album_Visibility", "Cover_Photo_ID" };
+        } else if (table.equals(FakebookOracleConstants.PhotosTable)) {
+            return new String[] { "Photo_ID", "Album_ID", "Photo_Caption", "Photo_Created_Time",
+                    "Photo_Modified_Time", "Photo_Link" };
+        } else if (table.equals(FakebookOracleConstants.TagsTable)) {
+            return new String[] { "Tag_Photo_ID", "Tag_Subject_ID", "Tag_Created_Time", "Tag_X", "Tag_Y" };
+        }
+        throw new IllegalArgumentException("unknown table: " + table);
+    }
+
+    // [Dimension Generation Function]
+    // EFFECTS:  emits every row of the Cities and Programs tables to <sink>
+    public void generateDimensions(RowSink sink) throws SQLException {
+        for (long city = 1; city <= cities; city++) {
+            sink.row(FakebookOracleConstants.CitiesTable, city, "City " + city,
+                    States[(int) (city % States.length)], "United States");
+        }
+        for (long program = 1; program <= programs; program++) {
+            sink.row(FakebookOracleConstants.ProgramsTable, program, "University " + (program % 50),
+                    Concentrations[(int) (program % Concentrations.length)],
+                    Degrees[(int) (program % Degrees.length)]);
+        }
+    }
+
+    // [User Range Generation Function]
+    // REQUIRES: 1 <= <from> <= <to> <= users() + 1
+    // EFFECTS:  emits to <sink> every row owned by the users with IDs in [<from>, <to>): the
+    //           users themselves, their current and hometown cities, education, the
+    //           friendships they own, and the events, albums, photos, and tags they created
+    public void generateUsers(long from, long to, RowSink sink) throws SQLException {
+        for (long user = from; user < to; user++) {
+            SplittableRandom random = stream(user, ProfileStream);
+            int year = 1950 + random.nextInt(56);
+            sink.row(FakebookOracleConstants.UsersTable, user, FirstNames[random.nextInt(FirstNames.length)],
+                    LastNames[random.nextInt(LastNames.length)], year, 1 + random.nextInt(12),
+                    1 + random.nextInt(28), random.nextBoolean() ? "female" : "male");
+
+            long hometown = 1 + random.nextInt((int) cities);
+            if (random.nextInt(100) < 95) {
+                sink.row(FakebookOracleConstants.HometownCitiesTable, user, hometown);
+            }
+            if (random.nextInt(100) < 95) {
+                long current = random.nextInt(100) < 5 ? hometown : 1 + random.nextInt((int) cities);
+                sink.row(FakebookOracleConstants.CurrentCitiesTable, user, current);
+            }
+            int degrees = random.nextInt(3);
+            for (int idx = 0; idx < degrees; idx++) {
+                sink.row(FakebookOracleConstants.EducationTable, user,
+                        1 + (random.nextInt((int) programs) + idx) % programs, year + 18 + 4 * idx);
+            }
+
+            generateFriends(user, sink);
+            generateEvents(user, random, sink);
+            generateAlbums(user, random, sink);
+        }
+    }
+
+    // [Friend Generation Function]
+    // EFFECTS:  emits the friendships owned by <user>: each user that <user> picks, unless the
+    //           friendship is owned by the other endpoint (it has the smaller ID and picked
+    //           <user> too) or <user> already emitted it
+    private void generateFriends(long user, RowSink sink) throws SQLException {
+        long[] picks = friendPicks(user);
+        for (int idx = 0; idx < picks.length; idx++) {
+            long other = picks[idx];
+            if (other < user && picked(other, user)) {
+                continue;
+            }
+            boolean duplicate = false;
+            for (int prev = 0; prev < idx && !duplicate; prev++) {
+                duplicate = picks[prev] == other;
+            }
+            if (!duplicate) {
+                sink.row(FakebookOracleConstants.FriendsTable, Math.min(user, other), Math.max(user, other));
+            }
+        }
+    }
+
+    // [Friend Picks Function]
+    // EFFECTS:  returns the users that <user> picks as friends (never <user> itself; possibly
+    //           with repetitions), always the same for the same <user>
+    private long[] friendPicks(long user) {
+        SplittableRandom random = stream(user, FriendStream);
+        long[] picks = new long[friendPicks.sample(random, maxFriendPicks)];
+        for (int idx = 0; idx < picks.length; idx++) {
+            long other = 1 + random.nextLong(users - 1);
+            picks[idx] = other >= user ? other + 1 : other;
+        }
+        return picks;
+    }
+
+    // [Picked Function]
+    // EFFECTS:  returns true if <user> picks <other> as a friend
+    private boolean picked(long user, long other) {
+        for (long pick : friendPicks(user)) {
+            if (pick == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // [Event Generation Function]
+    private void generateEvents(long user, SplittableRandom random, RowSink sink) throws SQLException {
+        int events = random.nextInt(100) < 30 ? 1 + random.nextInt(MaxEventsPerUser) : 0;
+        for (int idx = 0; idx < events; idx++) {
+            long event = (user - 1) * MaxEventsPerUser + idx + 1;
+            Timestamp start = timestamp(random);
+            sink.row(FakebookOracleConstants.EventsTable, event, user, "Event " + event, "Tagline " + event,
+                    "Description of event " + event, "Host " + user, EventTypes[random.nextInt(EventTypes.length)],
+                    "Subtype", event + " Main Street", (long) (1 + random.nextInt((int) cities)), start,
+                    new Timestamp(start.getTime() + 3600000L * (1 + random.nextInt(48))));
+        }
+    }
+
+    // [Album Generation Function]
+    // EFFECTS:  emits the albums of <user>, the photos in each album, and the tags of each photo
+    private void generateAlbums(long user, SplittableRandom random, RowSink sink) throws SQLException {
+        int albums = random.nextInt(MaxAlbumsPerUser + 1) / 2;
+        for (int idx = 0; idx < albums; idx++) {
+            long album = (user - 1) * MaxAlbumsPerUser + idx + 1;
+            long firstPhoto = (album - 1) * MaxPhotosPerAlbum + 1;
+            Timestamp created = timestamp(random);
+            sink.row(FakebookOracleConstants.AlbumsTable, album, user, "Album " + album, created, created,
+                    "http://www.fakebook.com/album/" + album, Visibilities[random.nextInt(Visibilities.length)],
+                    firstPhoto);
+
+            int photos = 1 + random.nextInt(MaxPhotosPerAlbum / 2);
+            for (int photoIdx = 0; photoIdx < photos; photoIdx++) {
+                long photo = firstPhoto + photoIdx;
+                sink.row(FakebookOracleConstants.PhotosTable, photo, album, "Photo " + photo, created, created,
+                        "http://www.fakebook.com/photo/" + photo);
+                generateTags(photo, created, random, sink);
+            }
+        }
+    }
+
+    // [Tag Generation Function]
+    // EFFECTS:  emits the tags of <photo>, each for a different user
+    private void generateTags(long photo, Timestamp created, SplittableRandom random, RowSink sink)
+            throws SQLException {
+        long[] subjects = new long[tagsPerPhoto.sample(random, maxTags)];
+        for (int idx = 0; idx < subjects.length; idx++) {
+            long subject = 1 + random.nextLong(users);
+            boolean duplicate = false;
+            for (int prev = 0; prev < idx && !duplicate; prev++) {
+                duplicate = subjects[prev] == subject;
+            }
+            if (duplicate) {
+                continue;
+            }
+            subjects[idx] = subject;
+            sink.row(FakebookOracleConstants.TagsTable, photo, subject, created, (long) random.nextInt(100),
+                    (long) random.nextInt(100));
+        }
+    }
+
+    // [Stream Function]
+    // EFFECTS:  returns the random stream of kind <kind> for <user>
+    private SplittableRandom stream(long user, long kind) {
+        return new SplittableRandom(seed ^ (user * 0x9E3779B97F4A7C15L + kind));
+    }
+
+    // [Timestamp Function]
+    private static Timestamp timestamp(SplittableRandom random) {
+        return new Timestamp(1262304000000L + random.nextLong(315360000000L)); // 2010 through 2019
+    }
+
+    // Limits
+    static final int MaxAlbumsPerUser = 4;
+    static final int MaxPhotosPerAlbum = 16;
+    static final int MaxEventsPerUser = 2;
+    static final int MaxFriendPicks = 5000;
+    static final int MaxTagsPerPhoto = 50;
+
+    // Random Stream Kinds
+    private static final long ProfileStream = 1;
+    private static final long FriendStream = 2;
+
+    // Value Pools
+    private static final String[] FirstNames = { "Aragorn", "Arwen", "Boromir", "Brianna", "Cyrus", "Denethor",
+            "Ella", "Elrond", "Eowyn", "Faramir", "Frodo", "Galadriel", "Gandalf", "Gimli", "Grace", "Isabel",
+            "Kayla", "Legolas", "Lily", "Meriadoc", "Ornella", "Pippin", "Sarah", "Saruman", "Sauron", "Theoden",
+            "Velaria", "Zehir", "Al", "Bo", "Maximilian", "Annabella" };
+    private static final String[] LastNames = { "Anderson", "Brown", "Davis", "Garcia", "Harris", "Jackson",
+            "Johnson", "Jones", "Martin", "Martinez", "Miller", "Robinson", "Smith", "Taylor", "Thomas",
+            "Thompson", "White", "Williams", "Wilson" };
+    private static final String[] States = { "Michigan", "Ohio", "Illinois", "Indiana", "California", "Texas",
+            "New York", "Florida", "Washington", "Oregon", "Kentucky", "Hawaii", "New Hampshire" };
+    private static final String[] Concentrations = { "Computer Science", "Mathematics", "Physics", "History",
+            "Economics", "Biology" };
+    private static final String[] Degrees = { "BS", "BA", "MS", "MA", "PhD" };
+    private static final String[] EventTypes = { "Party", "Concert", "Lecture", "Sports", "Meetup" };
+    private static final String[] Visibilities = { "EVERYONE", "FRIENDS", "FRIENDS_OF_FRIENDS", "MYSELF" };
+
+    // Member Variables
+    private final long users;
+    private final long cities;
+    private final long programs;
+    private final Distribution friendPicks;
+    private final Distribution tagsPerPhoto;
+    private final int maxFriendPicks;
+    private final int maxTags;
+    private final long seed;
+}
@@ -0,0 +1,179 @@
+package project2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The FakebookJdbcInstrumentation class wraps a JDBC connection so that every statement
+    created from it, and every result set those statements return, reports what it costs:
+    statements created, statement executions, rows fetched, bytes of string data read through
+    getString(), and time spent blocked in ResultSet.next(). The counts are attributed to the
+    scope that is current on the calling thread (see begin()), typically the query being run,
+    so a single connection can be shared by several queries and threads.
+*/
+final class FakebookJdbcInstrumentation {
+    /*
+        The Counters class holds the counts of one scope.
+    */
+    static final class Counters {
+        final AtomicLong statements = new AtomicLong();
+        final AtomicLong executes = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong stringBytes = new AtomicLong();
+        final AtomicLong nextNanos = new AtomicLong();
+    }
+
+    // [Constructor]
+    public FakebookJdbcInstrumentation() {
+        scopes = new ConcurrentHashMap<String, Counters>();
+        order = new ArrayList<String>();
+        current = new ThreadLocal<Counters>();
+    }
+
+    // [Wrap Function]
+    // EFFECTS:  returns a connection that behaves like <connection> but counts the work done
+    //           through it
+    public Connection wrap(Connection connection) {
+        return (Connection) wrap(connection, Connection.class);
+    }
+
+    // [Begin Scope Function]
+    // MODIFIES: this
+    // EFFECTS:  attributes the work the calling thread does from now on to <scope>
+    public void begin(String scope) {
+        current.set(counters(scope));
+    }
+
+    // [End Scope Function]
+    // MODIFIES: this
+    // EFFECTS:  attributes the work the calling thread does from now on to no scope in particular
+    public void end() {
+        current.remove();
+    }
+
+    // [Report Writing Function]
+    // EFFECTS:  writes one line of JSON per scope, in the order the scopes were first used
+    public void writeReport(Writer writer) throws IOException {
+        ArrayList<String> names;
+        synchronized (order) {
+            names = new ArrayList<String>(order);
+        }
+        for (String name : names) {
+            Counters counters = scopes.get(name);
+            writer.write(String.format(Locale.ROOT, "{\"scope\": \"%s\", \"statements\": %d, \"executes\": %d, \"rows\": %d, "
+                    + "\"string_bytes\": %d, \"next_ms\": %.3f}%n", name, counters.statements.get(),
+                    counters.executes.get(), counters.rows.get(), counters.stringBytes.get(),
+                    counters.nextNanos.get() / 1e6));
+        }
+        writer.flush();
+    }
+
+    // [Counters Function]
+    // EFFECTS:  returns the counters of <scope>, creating them if needed
+    private Counters counters(String scope) {
+        Counters counters = scopes.get(scope);
+        if (counters == null) {
+            synchronized (order) {
+                counters = scopes.get(scope);
+                if (counters == null) {
+                    counters = new Counters();
+                    scopes.put(scope, counters);
+                    order.add(scope);
+                }
+            }
+        }
+        return counters;
+    }
+
+    // [Current Counters Function]
+    // EFFECTS:  returns the counters of the calling thread's current scope
+    private Counters current() {
+        Counters counters = current.get();
+        return counters != null ? counters : counters(NoScope);
+    }
+
+    // [Wrap Object Function]
+    // REQUIRES: <target> implements <type>, which is one of the JDBC interfaces handled below
+    // EFFECTS:  returns a proxy of <type> that forwards every call to <target>, counting the
+    //           calls that matter and wrapping the statements and result sets it returns
+    private Object wrap(final Object target, Class<?> type) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                boolean next = target instanceof ResultSet && name.equals("next");
+                long beginTime = next ? System.nanoTime() : 0L;
+                Object value;
+                try {
+                    value = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+
+                Counters counters = current();
+                if (next) {
+                    counters.nextNanos.addAndGet(System.nanoTime() - beginTime);
+                    if (Boolean.TRUE.equals(value)) {
+                        counters.rows.incrementAndGet();
+                    }
+                } else if (target instanceof ResultSet && name.equals("getString") && value != null) {
+                    counters.stringBytes.addAndGet(utf8Length((String) value));
+                } else if (target instanceof Statement && name.startsWith("execute")) {
+                    counters.executes.incrementAndGet();
+                }
+
+                Class<?> returned = method.getReturnType();
+                if (value != null && (returned == Statement.class || returned == PreparedStatement.class
+                        || returned == CallableStatement.class)) {
+                    counters.statements.incrementAndGet();
+                    return wrap(value, returned);
+                } else if (value != null && returned == ResultSet.class) {
+                    return wrap(value, ResultSet.class);
+                }
+                return value;
+            }
+        };
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    // [UTF-8 Length Function]
+    // EFFECTS:  returns the number of bytes <str> occupies when encoded as UTF-8
+    private static long utf8Length(String str) {
+        long bytes = 0;
+        for (int idx = 0; idx < str.length(); idx++) {
+            char ch = str.charAt(idx);
+            if (ch < 0x80) {
+                bytes += 1;
+            } else if (ch < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(ch)) {
+                bytes += 4;
+                idx++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    // Constants
+    private static final String NoScope = "(no query)";
+
+    // Member Variables
+    private final ConcurrentHashMap<String, Counters> scopes;
+    private final ArrayList<String> order;
+    private final ThreadLocal<Counters> current;
+}
@@ -26,80 +26,163 @@ public abstract class FakebookOracle {
 
     public abstract FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException;
 
+    // Batch Query Functions
+    // Returns the result of Query 8 for each element of <userIDs>, in the same order; this
+    // version runs Query 8 once per user, so implementations that can look up many users at
+    // once should override it
+    public AgeInfo[] findAgeInfo(long[] userIDs) throws SQLException {
+        AgeInfo[] results = new AgeInfo[userIDs.length];
+        for (int idx = 0; idx < userIDs.length; idx++) {
+            results[idx] = findAgeInfo(userIDs[idx]);
+        }
+        return results;
+    }
+
+    // Streaming Query Functions
+    // Each returns a cursor over the same users, in the same order, as the corresponding query
+    // function; these versions materialize the whole result first, so implementations that can
+    // stream their rows should override them
+    public FakebookCursor<UserInfo> lonelyUsersCursor() throws SQLException {
+        return FakebookCursor.of(lonelyUsers());
+    }
+
+    public FakebookCursor<UserInfo> liveAwayFromHomeCursor() throws SQLException {
+        return FakebookCursor.of(liveAwayFromHome());
+    }
+
+    // [Failure Count Function]
+    // EFFECTS:  returns the number of queries of this instance that hit an error and returned a
+    //           placeholder result (such as an empty list) instead of throwing; implementations
+    //           that throw all their errors return 0
+    public long failureCount() {
+        return 0;
+    }
+
+    // [Cancel Function]
+    // EFFECTS:  asks the query currently running on this instance (in another thread) to stop
+    //           as soon as possible; implementations that cannot stop a query ignore the request
+    public void cancel() throws SQLException {
+    }
+
     // Query Result Printing Functions
+    // The results are streamed to <writer> through the calling thread's FakebookWriter, which
+    // produces exactly the characters the equivalent String.format calls would
     public void printQuery0(Writer writer, BirthMonthInfo results) throws IOException {
-        String output = String.format("%sQuery 0%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 0").print(PrintDecoration).newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery1(Writer writer, FirstNameInfo results) throws IOException {
-        String output = String.format("%sQuery 1%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 1").print(PrintDecoration).newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery2(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format("%sQuery 2%s%nNumber of lonely users: %d%nLonely users are: %s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 2").print(PrintDecoration).newline();
+        out.print("Number of lonely users: ").print(results.size()).newline();
+        out.print("Lonely users are: ").print(results).newline().newline();
+        out.flush();
+    }
+
+    public void printQuery2(Writer writer, FakebookCursor<UserInfo> results) throws IOException, SQLException {
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 2").print(PrintDecoration).newline();
+        out.print("Number of lonely users: ").print(results.count()).newline();
+        out.print("Lonely users are: ");
+        printCursor(out, results, ", ");
+        out.newline().newline();
+        out.flush();
     }
 
     public void printQuery3(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format(
-                "%sQuery 3%s%nNumber of users who live away from home: %d%nThose users are: %s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 3").print(PrintDecoration).newline();
+        out.print("Number of users who live away from home: ").print(results.size()).newline();
+        out.print("Those users are: ").print(results).newline().newline();
+        out.flush();
+    }
+
+    public void printQuery3(Writer writer, FakebookCursor<UserInfo> results) throws IOException, SQLException {
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 3").print(PrintDecoration).newline();
+        out.print("Number of users who live away from home: ").print(results.count()).newline();
+        out.print("Those users are: ");
+        printCursor(out, results, ", ");
+        out.newline().newline();
+        out.flush();
     }
 
     public void printQuery4(Writer writer, FakebookArrayList<TaggedPhotoInfo> results) throws IOException {
-        String output = String.format("%sQuery 4%s%nThe following are the top %d photo(s) with the most tags:%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 4").print(PrintDecoration).newline();
+        out.print("The following are the top ").print(results.size()).print(" photo(s) with the most tags:")
+                .newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery5(Writer writer, FakebookArrayList<MatchPair> results) throws IOException {
-        String output = String.format("%sQuery 5%s%nTop %d match(es):%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 5").print(PrintDecoration).newline();
+        out.print("Top ").print(results.size()).print(" match(es):").newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery6(Writer writer, FakebookArrayList<UsersPair> results) throws IOException {
-        String output = String.format("%sQuery 6%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 6").print(PrintDecoration).newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery7(Writer writer, EventStateInfo results) throws IOException {
-        String output = String.format("%sQuery 7%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 7").print(PrintDecoration).newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery8(Writer writer, AgeInfo results) throws IOException {
-        String output = String.format("%sQuery 8%s%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 8").print(PrintDecoration).newline();
+        out.print(results).newline().newline();
+        out.flush();
     }
 
     public void printQuery9(Writer writer, FakebookArrayList<SiblingInfo> results) throws IOException {
-        String output = String.format("%sQuery 9%s%n%d pair(s) of potential siblings:%n%s%n%n",
-                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(),
-                results);
-        writer.write(output);
-        writer.flush();
+        FakebookWriter out = FakebookWriter.to(writer);
+        out.print(PrintDecoration).print("Query 9").print(PrintDecoration).newline();
+        out.print(results.size()).print(" pair(s) of potential siblings:").newline();
+        out.print(results).newline().newline();
+        out.flush();
+    }
+
+    // [Print Cursor Function]
+    // MODIFIES: <results>
+    // EFFECTS:  writes the remaining elements of <results> to <out> as a FakebookArrayList with
+    //           delimiter <delimiter> holding them would render (provided no element renders as
+    //           an empty string), consuming them one at a time
+    private static <T> void printCursor(FakebookWriter out, FakebookCursor<T> results, String delimiter)
+            throws IOException, SQLException {
+        boolean empty = true;
+        while (results.next()) {
+            if (!empty) {
+                out.print(delimiter);
+            }
+            out.print(results.current());
+            empty = false;
+        }
+        if (empty) {
+            out.print("[]");
+        }
     }
+
+    // Constants
+    private static final String PrintDecoration = FakebookOracleConstants.PrintDecoration;
 }
@@ -0,0 +1,466 @@
+package project2;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/*
+    The FakebookOracleBenchmark class is a small benchmark harness for the FakebookOracle
+    queries and for the code that renders their results. Every benchmark is run for a number
+    of warm-up iterations whose timings are discarded, followed by a number of measured
+    iterations; each iteration invokes the benchmarked operation repeatedly for a fixed amount
+    of time and records the average time per invocation. The report lists, per benchmark, the
+    mean time per invocation over the measured iterations together with its 99.9% confidence
+    interval, in the same spirit as JMH's average-time mode.
+
+    Two suites are available:
+      render   FakebookArrayList.toString() and every printQueryN formatter, on synthetic
+               results with 10, 100, 1000, and 10000 elements
+      queries  every FakebookOracle query, through StudentFakebookOracle, against one or more
+               databases that hold the project2.Public_* tables (for example, one local
+               database per data size)
+
+    Expected Command Line Arguments:
+     [0] either "render" or "queries"
+    Optional Flags:
+     -warmup=<n>                 warm-up iterations per benchmark (default: 5)
+     -iterations=<n>             measured iterations per benchmark (default: 10)
+     -time=<ms>                  duration of each iteration in milliseconds (default: 1000)
+     -dataset=<label>@<jdbc-url> database to run the query suite against (repeatable)
+     -user=<name>, -password=<p> credentials for the -dataset connections
+*/
+public final class FakebookOracleBenchmark {
+    /*
+        The Operation interface is a single invocation of a benchmarked piece of code. Its
+        return value is consumed so that the JIT cannot discard the work that produced it.
+    */
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    /*
+        The Measurement class stores the per-iteration timings of one benchmark.
+    */
+    static final class Measurement {
+        // [Constructor]
+        // REQUIRES: <nanosPerOp> contains at least one element
+        Measurement(String name, String parameter, double[] nanosPerOp) {
+            this.name = name;
+            this.parameter = parameter;
+            this.nanosPerOp = nanosPerOp;
+        }
+
+        // [Mean Function]
+        // EFFECTS:  returns the mean time per invocation, in nanoseconds
+        double mean() {
+            double sum = 0;
+            for (double value : nanosPerOp) {
+                sum += value;
+            }
+            return sum / nanosPerOp.length;
+        }
+
+        // [Error Function]
+        // EFFECTS:  returns the half-width of the 99.9% confidence interval of mean(), using the
+        //           normal approximation of the sample mean's distribution
+        double error() {
+            if (nanosPerOp.length < 2) {
+                return Double.NaN;
+            }
+            double mean = mean();
+            double squares = 0;
+            for (double value : nanosPerOp) {
+                squares += (value - mean) * (value - mean);
+            }
+            double stddev = Math.sqrt(squares / (nanosPerOp.length - 1));
+            return 3.291 * stddev / Math.sqrt(nanosPerOp.length);
+        }
+
+        final String name;
+        final String parameter;
+        final double[] nanosPerOp;
+    }
+
+    // [Main Function]
+    public static void main(String[] args) throws Exception {
+        ArrayList<String> datasets = new ArrayList<String>();
+        String user = null;
+        String password = null;
+        for (int idx = 1; idx < args.length; idx++) {
+            if (args[idx].startsWith("-warmup=")) {
+                warmupIterations = Integer.parseInt(args[idx].substring("-warmup=".length()));
+            } else if (args[idx].startsWith("-iterations=")) {
+                measuredIterations = Integer.parseInt(args[idx].substring("-iterations=".length()));
+            } else if (args[idx].startsWith("-time=")) {
+                iterationNanos = Long.parseLong(args[idx].substring("-time=".length())) * 1000000L;
+            } else if (args[idx].startsWith("-dataset=")) {
+                datasets.add(args[idx].substring("-dataset=".length()));
+            } else if (args[idx].startsWith("-user=")) {
+                user = args[idx].substring("-user=".length());
+            } else if (args[idx].startsWith("-password=")) {
+                password = args[idx].substring("-password=".length());
+            } else {
+                throw new IllegalArgumentException("unknown flag: " + args[idx]);
+            }
+        }
+
+        ArrayList<Measurement> results = new ArrayList<Measurement>();
+        if (args[0].equals("render")) {
+            for (int size : RenderSizes) {
+                benchmarkRendering(size, results);
+            }
+        } else if (args[0].equals("queries")) {
+            if (datasets.isEmpty()) {
+                throw new IllegalArgumentException("the query suite needs at least one -dataset");
+            }
+            for (String dataset : datasets) {
+                int at = dataset.indexOf('@');
+                if (at <= 0) {
+                    throw new IllegalArgumentException("expected <label>@<jdbc-url>: " + dataset);
+                }
+                try (Connection connection = DriverManager.getConnection(dataset.substring(at + 1), user,
+                        password)) {
+                    benchmarkQueries(dataset.substring(0, at), new StudentFakebookOracle(connection), results);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("unknown suite: " + args[0]);
+        }
+
+        OutputStreamWriter out = new OutputStreamWriter(System.out);
+        printReport(out, results);
+    }
+
+    // [Rendering Benchmark Function]
+    // MODIFIES: <results>
+    // EFFECTS:  benchmarks FakebookArrayList.toString() and each printQueryN function on
+    //           synthetic results with <size> elements
+    static void benchmarkRendering(int size, ArrayList<Measurement> results) throws Exception {
+        final String param = Integer.toString(size);
+        final Writer out = new DiscardingWriter();
+
+        final FakebookArrayList<UserInfo> users = new FakebookArrayList<UserInfo>(", ");
+        for (int idx = 0; idx < size; idx++) {
+            users.add(syntheticUser(idx));
+        }
+        results.add(measure("render.FakebookArrayList.toString", param, new Operation() {
+            public Object run() {
+                return users.toString();
+            }
+        }));
+
+        final BirthMonthInfo months = new BirthMonthInfo(2L * size, 11, 2);
+        final FirstNameInfo names = new FirstNameInfo();
+        final FakebookArrayList<TaggedPhotoInfo> photos = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        final FakebookArrayList<MatchPair> matches = new FakebookArrayList<MatchPair>("\n");
+        final FakebookArrayList<UsersPair> pairs = new FakebookArrayList<UsersPair>("\n");
+        final EventStateInfo states = new EventStateInfo(size);
+        final AgeInfo ages = new AgeInfo(syntheticUser(0), syntheticUser(1));
+        final FakebookArrayList<SiblingInfo> siblings = new FakebookArrayList<SiblingInfo>("\n");
+        for (int idx = 0; idx < size; idx++) {
+            months.addMostPopularBirthMonthUser(users.get(idx));
+            months.addLeastPopularBirthMonthUser(users.get(size - 1 - idx));
+            names.addLongName(users.get(idx).toString());
+            states.addState("State " + idx);
+            siblings.add(new SiblingInfo(users.get(idx), users.get(size - 1 - idx)));
+        }
+        names.setCommonNameCount(size);
+        // Lists of lists hold sqrt(<size>) outer elements of sqrt(<size>) inner elements each
+        int side = Math.max(1, (int) Math.sqrt(size));
+        for (int outer = 0; outer < side; outer++) {
+            TaggedPhotoInfo photo = new TaggedPhotoInfo(syntheticPhoto(outer));
+            MatchPair match = new MatchPair(users.get(outer), 1990, users.get(size - 1 - outer), 1991);
+            UsersPair pair = new UsersPair(users.get(outer), users.get(size - 1 - outer));
+            for (int inner = 0; inner < side; inner++) {
+                photo.addTaggedUser(users.get(inner));
+                match.addSharedPhoto(syntheticPhoto(inner));
+                pair.addSharedFriend(users.get(inner));
+            }
+            photos.add(photo);
+            matches.add(match);
+            pairs.add(pair);
+        }
+        final FakebookOracle printer = new FixtureOracle(months, names, users, photos, matches, pairs, states,
+                ages, siblings);
+
+        results.add(measure("render.printQuery0", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery0(out, months);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery1", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery1(out, names);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery2", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery2(out, users);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery3", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery3(out, users);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery4", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery4(out, photos);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery5", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery5(out, matches);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery6", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery6(out, pairs);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery7", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery7(out, states);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery8", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery8(out, ages);
+                return out;
+            }
+        }));
+        results.add(measure("render.printQuery9", param, new Operation() {
+            public Object run() throws IOException {
+                printer.printQuery9(out, siblings);
+                return out;
+            }
+        }));
+    }
+
+    // [Query Benchmark Function]
+    // MODIFIES: <results>
+    // EFFECTS:  benchmarks each query of <db> with the arguments FakebookOracleMain uses,
+    //           labelling the measurements with <dataset>
+    static void benchmarkQueries(String dataset, final FakebookOracle db, ArrayList<Measurement> results)
+            throws Exception {
+        results.add(measure("query.findMonthOfBirthInfo", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.findMonthOfBirthInfo();
+            }
+        }));
+        results.add(measure("query.findNameInfo", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.findNameInfo();
+            }
+        }));
+        results.add(measure("query.lonelyUsers", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.lonelyUsers();
+            }
+        }));
+        results.add(measure("query.liveAwayFromHome", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.liveAwayFromHome();
+            }
+        }));
+        results.add(measure("query.findPhotosWithMostTags", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.findPhotosWithMostTags(5);
+            }
+        }));
+        results.add(measure("query.matchMaker", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.matchMaker(5, 2);
+            }
+        }));
+        results.add(measure("query.suggestFriends", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.suggestFriends(5);
+            }
+        }));
+        results.add(measure("query.findEventStates", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.findEventStates();
+            }
+        }));
+        results.add(measure("query.findAgeInfo", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.findAgeInfo(215L);
+            }
+        }));
+        results.add(measure("query.findPotentialSiblings", dataset, new Operation() {
+            public Object run() throws SQLException {
+                return db.findPotentialSiblings();
+            }
+        }));
+    }
+
+    // [Measure Function]
+    // EFFECTS:  runs <operation> for the configured warm-up and measured iterations and returns
+    //           the average time per invocation of every measured iteration
+    static Measurement measure(String name, String parameter, Operation operation) throws Exception {
+        for (int iteration = 0; iteration < warmupIterations; iteration++) {
+            runIteration(operation);
+        }
+        double[] nanosPerOp = new double[measuredIterations];
+        for (int iteration = 0; iteration < measuredIterations; iteration++) {
+            nanosPerOp[iteration] = runIteration(operation);
+        }
+        return new Measurement(name, parameter, nanosPerOp);
+    }
+
+    // [Iteration Function]
+    // EFFECTS:  invokes <operation> until <iterationNanos> have elapsed (at least once) and
+    //           returns the average time per invocation in nanoseconds
+    private static double runIteration(Operation operation) throws Exception {
+        long invocations = 0;
+        long begin = System.nanoTime();
+        long elapsed;
+        do {
+            Object value = operation.run();
+            sink += System.identityHashCode(value);
+            invocations++;
+            elapsed = System.nanoTime() - begin;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / invocations;
+    }
+
+    // [Report Printing Function]
+    // EFFECTS:  writes one line per measurement, in microseconds per invocation
+    static void printReport(Writer out, ArrayList<Measurement> results) throws IOException {
+        int width = "Benchmark".length();
+        for (Measurement result : results) {
+            width = Math.max(width, result.name.length());
+        }
+        out.write(String.format("%-" + width + "s  %10s  %4s  %14s  %12s  %s%n",
+                "Benchmark", "(param)", "Cnt", "Score", "Error", "Units"));
+        for (Measurement result : results) {
+            out.write(String.format("%-" + width + "s  %10s  %4d  %14.3f  +- %10.3f  us/op%n",
+                    result.name, result.parameter, result.nanosPerOp.length, result.mean() / 1000.0,
+                    result.error() / 1000.0));
+        }
+        out.flush();
+    }
+
+    // [Synthetic User Function]
+    private static UserInfo syntheticUser(int idx) {
+        return new UserInfo(idx, "First" + idx, "Last" + (idx % 97));
+    }
+
+    // [Synthetic Photo Function]
+    private static PhotoInfo syntheticPhoto(int idx) {
+        return new PhotoInfo(idx, idx / 10, "http://www.fakebook.com/photo/" + idx, "Album " + (idx / 10));
+    }
+
+    /*
+        The FixtureOracle class answers every query with a fixed result, so that the printQueryN
+        functions of FakebookOracle can be run without a database behind them.
+    */
+    private static final class FixtureOracle extends FakebookOracle {
+        // [Constructor]
+        FixtureOracle(BirthMonthInfo months, FirstNameInfo names, FakebookArrayList<UserInfo> users,
+                FakebookArrayList<TaggedPhotoInfo> photos, FakebookArrayList<MatchPair> matches,
+                FakebookArrayList<UsersPair> pairs, EventStateInfo states, AgeInfo ages,
+                FakebookArrayList<SiblingInfo> siblings) {
+            this.months = months;
+            this.names = names;
+            this.users = users;
+            this.photos = photos;
+            this.matches = matches;
+            this.pairs = pairs;
+            this.states = states;
+            this.ages = ages;
+            this.siblings = siblings;
+        }
+
+        public BirthMonthInfo findMonthOfBirthInfo() {
+            return months;
+        }
+
+        public FirstNameInfo findNameInfo() {
+            return names;
+        }
+
+        public FakebookArrayList<UserInfo> lonelyUsers() {
+            return users;
+        }
+
+        public FakebookArrayList<UserInfo> liveAwayFromHome() {
+            return users;
+        }
+
+        public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) {
+            return photos;
+        }
+
+        public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) {
+            return matches;
+        }
+
+        public FakebookArrayList<UsersPair> suggestFriends(int num) {
+            return pairs;
+        }
+
+        public EventStateInfo findEventStates() {
+            return states;
+        }
+
+        public AgeInfo findAgeInfo(long userID) {
+            return ages;
+        }
+
+        public FakebookArrayList<SiblingInfo> findPotentialSiblings() {
+            return siblings;
+        }
+
+        private final BirthMonthInfo months;
+        private final FirstNameInfo names;
+        private final FakebookArrayList<UserInfo> users;
+        private final FakebookArrayList<TaggedPhotoInfo> photos;
+        private final FakebookArrayList<MatchPair> matches;
+        private final FakebookArrayList<UsersPair> pairs;
+        private final EventStateInfo states;
+        private final AgeInfo ages;
+        private final FakebookArrayList<SiblingInfo> siblings;
+    }
+
+    /*
+        The DiscardingWriter class counts the characters written to it and drops them.
+    */
+    private static final class DiscardingWriter extends Writer {
+        public void write(char[] buffer, int offset, int length) {
+            sink += length;
+        }
+
+        public void write(String str) {
+            sink += str.length();
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
+
+    // Configuration
+    private static final int[] RenderSizes = { 10, 100, 1000, 10000 };
+    private static int warmupIterations = 5;
+    private static int measuredIterations = 10;
+    private static long iterationNanos = 1000000000L;
+
+    // Results are folded into <sink> so that benchmarked work is never dead code
+    private static volatile long sink;
+}
@@ -1,12 +1,14 @@
 package project2;
 
+import java.io.IOException;
+
 /*
     The UserInfo class stores a subset of the information about Fakebook users;
     specifically, it stores user IDs, first names, and last names. Query 0,
     Query 2, Query 3, Query 4, Query 5, Query 6, Query 8, and Query 9 will use this data
     structure.
 */
-final class UserInfo {
+final class UserInfo implements FakebookWritable {
     // [Constructor]
     public UserInfo(long userID, String firstName, String lastName) {
         this.userID = userID;
@@ -20,6 +22,12 @@ final class UserInfo {
         return String.format("%s %s (%d)", firstName, lastName, userID);
     }
 
+    // [UserInfo Write Function]
+    // EFFECTS:  writes the string representation of this UserInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print(firstName).print(' ').print(lastName).print(" (").print(userID).print(')');
+    }
+
     // Member Variables
     private long userID;
     private String firstName;
@@ -32,7 +40,7 @@ final class UserInfo {
     latter two of which refer to the album that contains the photo in question).
     Query 4 and Query 5 will use this data structure.
 */
-final class PhotoInfo {
+final class PhotoInfo implements FakebookWritable {
     // [Constructor]
     public PhotoInfo(long photoID, long albumID, String link, String albumName) {
         this.photoID = photoID;
@@ -48,6 +56,13 @@ final class PhotoInfo {
                 photoID, albumID, albumName, link);
     }
 
+    // [PhotoInfo Write Function]
+    // EFFECTS:  writes the string representation of this PhotoInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print("(Photo #").print(photoID).print(") from Album #").print(albumID).print(" (").print(albumName)
+                .print(") at url '").print(link).print('\'');
+    }
+
     // Member Variables
     private long photoID;
     private long albumID;
@@ -61,7 +76,7 @@ final class PhotoInfo {
     photo and a list of UserInfo instances identifying the users tagged in that
     photo. Query 4 will use this data structure.
 */
-final class TaggedPhotoInfo {
+final class TaggedPhotoInfo implements FakebookWritable {
     // [Constructor]
     // REQUIRES: <photo> is not NULL
     public TaggedPhotoInfo(PhotoInfo photo) {
@@ -83,6 +98,12 @@ final class TaggedPhotoInfo {
         return String.format("%s%n%d Tags%n%s", photo, usersTagged.size(), usersTagged);
     }
 
+    // [TaggedPhotoInfo Write Function]
+    // EFFECTS:  writes the string representation of this TaggedPhotoInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print(photo).newline().print(usersTagged.size()).print(" Tags").newline().print(usersTagged);
+    }
+
     // Member Variables
     private PhotoInfo photo;
     private FakebookArrayList<UserInfo> usersTagged;
@@ -94,7 +115,7 @@ final class TaggedPhotoInfo {
     user (plus each user's birth year) and a list of PhotoInfo instances identifying
     the photos in which they are both tagged. Query 5 will use this data structure.
 */
-final class MatchPair {
+final class MatchPair implements FakebookWritable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public MatchPair(UserInfo user1, long user1Year, UserInfo user2, long user2Year) {
@@ -121,6 +142,15 @@ final class MatchPair {
                 user1, user1Year, user2, user2Year, sharedPhotos.size(), sharedPhotos);
     }
 
+    // [MatchPair Write Function]
+    // EFFECTS:  writes the string representation of this MatchPair instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print(user1).print(" born in ").print(user1Year).print(" / ").print(user2).print(" born in ")
+                .print(user2Year).newline();
+        out.print("They are not Fakebook friends and are tagged in ").print(sharedPhotos.size())
+                .print(" common photo(s)").newline().print(sharedPhotos);
+    }
+
     // Member Variables
     private UserInfo user1;
     private UserInfo user2;
@@ -135,7 +165,7 @@ final class MatchPair {
     users and a list of UserInfo instances identifying the two users' common
     friends. Query 6 will use this data structure.
 */
-final class UsersPair {
+final class UsersPair implements FakebookWritable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public UsersPair(UserInfo user1, UserInfo user2) {
@@ -159,6 +189,13 @@ final class UsersPair {
                 user1, user2, sharedFriends.size(), sharedFriends);
     }
 
+    // [UserPair Write Function]
+    // EFFECTS:  writes the string representation of this UsersPair instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print(user1).print(" and ").print(user2).print(" are not Fakebook friends but share ")
+                .print(sharedFriends.size()).print(" common friends:").newline().print(sharedFriends);
+    }
+
     // Member Variables
     private UserInfo user1;
     private UserInfo user2;
@@ -170,7 +207,7 @@ final class UsersPair {
     siblings; specifically, it stores one UserInfo instance for each of th two
     users. Query 9 will use this data structure.
 */
-final class SiblingInfo {
+final class SiblingInfo implements FakebookWritable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> are NULL
     public SiblingInfo(UserInfo user1, UserInfo user2) {
@@ -184,6 +221,14 @@ final class SiblingInfo {
         return String.format("%s and %s", user1.toString(), user2.toString());
     }
 
+    // [SiblingInfo Write Function]
+    // EFFECTS:  writes the string representation of this SiblingInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        user1.writeTo(out);
+        out.print(" and ");
+        user2.writeTo(out);
+    }
+
     // Member Variables
     private UserInfo user1;
     private UserInfo user2;
@@ -196,7 +241,7 @@ final class SiblingInfo {
     are, and the month in which the fewest (but at least 1) users were born
     and who those users are. Query 0 will use this data structure.
 */
-final class BirthMonthInfo {
+final class BirthMonthInfo implements FakebookWritable {
     // [Constructor]
     public BirthMonthInfo(long totalUsers, int mostPopularMonth, int leastPopularMonth) {
         this.totalUsers = totalUsers;
@@ -233,6 +278,18 @@ final class BirthMonthInfo {
                 leastPopularMonth, usersBornInLeastPopularMonth.size(), usersBornInLeastPopularMonth);
     }
 
+    // [BirthMonthInfo Write Function]
+    // EFFECTS:  writes the string representation of this BirthMonthInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print("Users with birth month info: ").print(totalUsers).newline();
+        out.print("The most common birth month is ").print(mostPopularMonth).print(" (")
+                .print(usersBornInMostPopularMonth.size()).print(" users)").newline();
+        out.print("Users: ").print(usersBornInMostPopularMonth).newline();
+        out.print("The least common birth month is ").print(leastPopularMonth).print(" (")
+                .print(usersBornInLeastPopularMonth.size()).print(" users)").newline();
+        out.print("Users: ").print(usersBornInLeastPopularMonth);
+    }
+
     // Member Variables
     private long totalUsers;
     private int mostPopularMonth;
@@ -247,7 +304,7 @@ final class BirthMonthInfo {
     names with the fewest letters, and a list of the most commonly-held first names and
     how many users have that first name. Query 1 will use this data structure.
 */
-final class FirstNameInfo {
+final class FirstNameInfo implements FakebookWritable {
     // [Constructor]
     public FirstNameInfo() {
         commonCount = 0;
@@ -285,6 +342,15 @@ final class FirstNameInfo {
                 longestFirstNames, shortestFirstNames, mostCommonFirstNames, commonCount);
     }
 
+    // [FirstNameInfo Write Function]
+    // EFFECTS:  writes the string representation of this FirstNameInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print("The longest first name(s) is (are) ").print(longestFirstNames).newline();
+        out.print("The shortest first name(s) is (are) ").print(shortestFirstNames).newline();
+        out.print("The most common first name(s) is (are) ").print(mostCommonFirstNames).print(" - having ")
+                .print(commonCount).print(" users having each one");
+    }
+
     // Member Variables
     private long commonCount;
     private FakebookArrayList<String> longestFirstNames;
@@ -297,7 +363,7 @@ final class FirstNameInfo {
     held; specifically, it stores a list of the states in which the most events are
     held and the number of events therein held. Query 7 will use this data structure.
 */
-final class EventStateInfo {
+final class EventStateInfo implements FakebookWritable {
     // [Constructor]
     public EventStateInfo(long eventCount) {
         this.eventCount = eventCount;
@@ -317,6 +383,13 @@ final class EventStateInfo {
                 popularStates, eventCount);
     }
 
+    // [EventStateInfo Write Function]
+    // EFFECTS:  writes the string representation of this EventStateInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print("State(s) with the most events: ").print(popularStates).newline();
+        out.print("Number of events in that (those) state(s): ").print(eventCount);
+    }
+
     // Member Variables
     private long eventCount;
     private FakebookArrayList<String> popularStates;
@@ -327,7 +400,7 @@ final class EventStateInfo {
     though it does not store information about who that particular user is. Query 8 will
     use this data structure.
 */
-final class AgeInfo {
+final class AgeInfo implements FakebookWritable {
     // [Constructor]
     // REQUIRES: neither <oldest> nor <youngest> is NULL
     public AgeInfo(UserInfo oldestFriend, UserInfo youngestFriend) {
@@ -342,6 +415,13 @@ final class AgeInfo {
                 oldestFriend, youngestFriend);
     }
 
+    // [AgeInfo Write Function]
+    // EFFECTS:  writes the string representation of this AgeInfo instance to <out>
+    public void writeTo(FakebookWriter out) throws IOException {
+        out.print("Oldest friend: ").print(oldestFriend).newline();
+        out.print("Youngest friend: ").print(youngestFriend);
+    }
+
     // Member Variabls
     UserInfo oldestFriend;
     UserInfo youngestFriend;
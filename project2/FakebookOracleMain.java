@@ -2,19 +2,88 @@ package project2;
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public final class FakebookOracleMain {
     // Member Variables
     private static String username = "zhengql"; // replace with your uniqname
     private static String password = "james7201"; // replace with your Oracle password (default: eecsclass)
+    private static boolean printStatistics = false;
+    private static int cursorType = FakebookOracleConstants.ForwardOnly;
+    private static int fetchSize = FakebookOracleConstants.DefaultFetchSize;
+    private static int poolSize = 0; // 0 runs the queries one after another on a single connection
+    private static int warmupIterations = 3;
+    private static int measuredIterations = 10;
+    private static FakebookJdbcInstrumentation instrumentation = null; // set by -instrument
+    private static boolean cacheResults = false;
+    private static boolean preloadUsers = false;
+    private static boolean usersPreloaded = false;
+    private static boolean useAgeIndex = false;
+    private static boolean coTagMatching = false;
+    private static boolean bitmapSets = false;
+    private static FakebookAgeIndex ageIndex = null; // loaded by the first connection, if -age-index
+    private static final FakebookUserCache userCache = new FakebookUserCache(); // shared by every connection
+    private static boolean inMemory = false; // set by -engine=memory
+    private static FakebookSnapshot snapshot = null; // loaded by the first connection, if -engine=memory
+    private static Path snapshotFile = null; // set by -snapshot=<file>
+    private static boolean sharedScans = false;
+    private static int[] plannedQueries = new int[0]; // the queries of the run, if -shared-scan
+    private static boolean incremental = false; // set by -incremental
+    private static boolean checkIndexes = false;
+    private static FakebookPhotoTagIndex photoTagIndex = null; // built by the first connection, if -incremental
+    private static FakebookSuggestionIndex suggestionIndex = null; // built by the first connection, if -incremental
+    private static int tagChanges = 0; // applied by the photo tag index to catch up
+    private static int friendshipChanges = 0; // applied by the suggestion index to catch up
 
     // [Main Function]
     // Expected Command Line Arguments:
     //  [0] either "all" or a digit 0-9, representing what query to run
-    //  [1] either "p" or "t", indicating "print results" and "time queries" respectively
+    //  [1] either "p", "t", or "s", indicating "print results", "time queries", and "time queries
+    //      statistically" respectively; "s" runs each query -warmup times untimed and then
+    //      -iterations times timed, and writes one line of JSON per query summarizing the times
+    // Optional Flags (any order, after the two arguments above):
+    //  -stats          print the per-template parse/execute/fetch counts after the queries have run
+    //  -scroll         use scroll-insensitive cursors instead of the default forward-only ones
+    //  -fetchsize=<n>  fetch <n> rows per round trip (default: FakebookOracleConstants.DefaultFetchSize)
+    //  -pool=<n>       run the queries concurrently on a pool of at most <n> connections ("p" and "t")
+    //  -warmup=<n>     untimed runs per query before measuring in "s" mode (default: 3)
+    //  -iterations=<n> timed runs per query in "s" mode, at least 1 (default: 10)
+    //  -instrument     count the statements created, executes, rows fetched, bytes read through
+    //                  getString(), and time blocked in next() of every query through JDBC, and
+    //                  write them as one line of JSON per query after the queries have run
+    //  -preload-users  load every user name into the user cache up front instead of on demand
+    //  -age-index      answer Query 8 from a precomputed oldest/youngest friend index
+    //  -cotag          rank the pairs of Query 5 by streaming the tags grouped by photo into a
+    //                  co-tag pair count map, instead of joining the Tags table with itself
+    //  -bitmaps        compute Queries 2 and 3 with set operations on compressed bitmaps of user
+    //                  IDs, built from one scan of each table they read
+    //  -cache          memoize query results with a CachingFakebookOracle, invalidated when the
+    //                  row counts or largest keys of the tables change
+    //  -engine=<name>  answer the queries with the "database" engine (StudentFakebookOracle, the
+    //                  default) or the "memory" engine (InMemoryFakebookOracle, over a snapshot of
+    //                  the tables loaded once per run; the flags above that tune JDBC then only
+    //                  apply to loading the snapshot)
+    //  -snapshot=<f>   with the memory engine, map the snapshot from file <f> without connecting
+    //                  to the database if it exists, and otherwise load it and save it to <f>
+    //  -shared-scan    with the database engine and no -pool, compute the queries of the run that
+    //                  aggregate over whole tables from one scan of each table they read, with a
+    //                  SharedScanFakebookOracle
+    //  -incremental    with the memory engine, answer Queries 4 and 6 from a FakebookPhotoTagIndex
+    //                  and a FakebookSuggestionIndex over the snapshot, brought up to date once per
+    //                  run with the Tags, Photos and Friends tables (so a snapshot mapped from an
+    //                  older file sees the changes)
+    //  -check-indexes  with -incremental, recompute the common friend counts from scratch once
+    //                  the index has caught up, and fail if the maintained ones differ
     public static void main(String[] args) {
         int start = 0; // inclusive
         int stop = 10; // exclusive
@@ -23,8 +92,78 @@ public final class FakebookOracleMain {
             stop = start + 1;
         }
 
+        for (int idx = 2; idx < args.length; idx++) {
+            if (args[idx].equals("-stats")) {
+                printStatistics = true;
+            } else if (args[idx].equals("-scroll")) {
+                cursorType = FakebookOracleConstants.AllScroll;
+            } else if (args[idx].startsWith("-fetchsize=")) {
+                fetchSize = Integer.parseInt(args[idx].substring("-fetchsize=".length()));
+            } else if (args[idx].startsWith("-pool=")) {
+                poolSize = Integer.parseInt(args[idx].substring("-pool=".length()));
+            } else if (args[idx].startsWith("-warmup=")) {
+                warmupIterations = Integer.parseInt(args[idx].substring("-warmup=".length()));
+                if (warmupIterations < 0) {
+                    throw new IllegalArgumentException("-warmup must not be negative: " + args[idx]);
+                }
+            } else if (args[idx].startsWith("-iterations=")) {
+                measuredIterations = Integer.parseInt(args[idx].substring("-iterations=".length()));
+                if (measuredIterations < 1) {
+                    throw new IllegalArgumentException("-iterations must be at least 1: " + args[idx]);
+                }
+            } else if (args[idx].equals("-preload-users")) {
+                preloadUsers = true;
+            } else if (args[idx].equals("-age-index")) {
+                useAgeIndex = true;
+            } else if (args[idx].equals("-cotag")) {
+                coTagMatching = true;
+            } else if (args[idx].equals("-bitmaps")) {
+                bitmapSets = true;
+            } else if (args[idx].equals("-cache")) {
+                cacheResults = true;
+            } else if (args[idx].startsWith("-engine=")) {
+                String engine = args[idx].substring("-engine=".length());
+                if (!engine.equals("memory") && !engine.equals("database")) {
+                    throw new IllegalArgumentException("unknown engine: " + engine);
+                }
+                inMemory = engine.equals("memory");
+            } else if (args[idx].startsWith("-snapshot=")) {
+                snapshotFile = Paths.get(args[idx].substring("-snapshot=".length()));
+            } else if (args[idx].equals("-incremental")) {
+                incremental = true;
+            } else if (args[idx].equals("-check-indexes")) {
+                checkIndexes = true;
+            } else if (args[idx].equals("-shared-scan")) {
+                sharedScans = true;
+            } else if (args[idx].equals("-instrument")) {
+                instrumentation = new FakebookJdbcInstrumentation();
+            } else {
+                throw new IllegalArgumentException("unknown flag: " + args[idx]);
+            }
+        }
+
+        if (sharedScans && poolSize == 0) {
+            plannedQueries = new int[stop - start];
+            for (int query = start; query < stop; query++) {
+                plannedQueries[query - start] = query;
+            }
+        }
+
+        if (inMemory && snapshotFile != null && Files.exists(snapshotFile)) {
+            try {
+                snapshot = FakebookSnapshot.open(snapshotFile);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
         boolean print = args[1].equals("p");
-        if (print) {
+        if (args[1].equals("s")) {
+            timeStatistically(start, stop);
+        } else if (poolSize > 0) {
+            runPooled(start, stop, print);
+        } else if (print) {
             query(start, stop);
         } else {
             time(start, stop);
@@ -32,48 +171,20 @@ public final class FakebookOracleMain {
     }
 
     private static void query(int start, int stop) {
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        try (Connection oracleConnection = connectIfNeeded()) {
+            FakebookOracle db = createOracle(oracleConnection);
             OutputStreamWriter out = new OutputStreamWriter(System.out);
 
             for (int query = start; query < stop; query++) {
-                switch (query) {
-                    case 0:
-                        db.printQuery0(out, db.findMonthOfBirthInfo());
-                        break;
-                    case 1:
-                        db.printQuery1(out, db.findNameInfo());
-                        break;
-                    case 2:
-                        db.printQuery2(out, db.lonelyUsers());
-                        break;
-                    case 3:
-                        db.printQuery3(out, db.liveAwayFromHome());
-                        break;
-                    case 4:
-                        db.printQuery4(out, db.findPhotosWithMostTags(5));
-                        break;
-                    case 5:
-                        db.printQuery5(out, db.matchMaker(5, 2));
-                        break;
-                    case 6:
-                        db.printQuery6(out, db.suggestFriends(5));
-                        break;
-                    case 7:
-                        db.printQuery7(out, db.findEventStates());
-                        break;
-                    case 8:
-                        db.printQuery8(out, db.findAgeInfo(215L));
-                        break;
-                    case 9:
-                        db.printQuery9(out, db.findPotentialSiblings());
-                        break;
-                    default:
-                        break;
-                }
-            }
-
-            oracleConnection.close();
+                runQuery(db, query, out);
+            }
+
+            if (printStatistics) {
+                printStatistics(db, out);
+            }
+            if (instrumentation != null) {
+                instrumentation.writeReport(out);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         } catch (IOException e) {
@@ -85,53 +196,139 @@ public final class FakebookOracleMain {
         long beginTime = 0L;
         long endTime = 0L;
 
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        try (Connection oracleConnection = connectIfNeeded()) {
+            FakebookOracle db = createOracle(oracleConnection);
             OutputStreamWriter out = new OutputStreamWriter(System.out);
 
             for (int query = start; query < stop; query++) {
                 beginTime = System.currentTimeMillis();
-                switch (query) {
-                    case 0:
-                        db.findMonthOfBirthInfo();
-                        break;
-                    case 1:
-                        db.findNameInfo();
-                        break;
-                    case 2:
-                        db.lonelyUsers();
-                        break;
-                    case 3:
-                        db.liveAwayFromHome();
-                        break;
-                    case 4:
-                        db.findPhotosWithMostTags(5);
-                        break;
-                    case 5:
-                        db.matchMaker(5, 2);
-                        break;
-                    case 6:
-                        db.suggestFriends(5);
-                        break;
-                    case 7:
-                        db.findEventStates();
-                        break;
-                    case 8:
-                        db.findAgeInfo(215L);
-                        break;
-                    case 9:
-                        db.findPotentialSiblings();
-                        break;
-                    default:
-                        break;
-                }
+                runQuery(db, query, null);
                 endTime = System.currentTimeMillis();
 
                 out.write(String.format("Query %d Time: %.3f%n", query, (endTime - beginTime) / 1000.0));
                 out.flush();
             }
 
-            oracleConnection.close();
+            if (printStatistics) {
+                printStatistics(db, out);
+            }
+            if (instrumentation != null) {
+                instrumentation.writeReport(out);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void timeStatistically(int start, int stop) {
+        try (Connection oracleConnection = connectIfNeeded()) {
+            FakebookOracle db = createOracle(oracleConnection);
+            StudentFakebookOracle phased = student(db);
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+            long timestamp = System.currentTimeMillis();
+
+            for (int query = start; query < stop; query++) {
+                for (int iteration = 0; iteration < warmupIterations; iteration++) {
+                    runQuery(db, query, null);
+                }
+
+                FakebookTimingStatistics statistics = new FakebookTimingStatistics(query, warmupIterations,
+                        measuredIterations);
+                for (int iteration = 0; iteration < measuredIterations; iteration++) {
+                    if (phased != null) {
+                        phased.resetPhaseTimes();
+                    }
+                    long beginTime = System.nanoTime();
+                    runQuery(db, query, null);
+                    long total = System.nanoTime() - beginTime;
+                    long[] phases = phased != null ? phased.phaseTimes() : new long[2];
+                    statistics.addSample(total, phases[0], phases[1]);
+                }
+                statistics.writeJSON(out, timestamp);
+            }
+
+            if (printStatistics) {
+                printStatistics(db, out);
+            }
+            if (instrumentation != null) {
+                instrumentation.writeReport(out);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Runs queries [start, stop) concurrently, through an AsyncFakebookOracle, on a pool of
+    // <poolSize> connections. Each query renders into its own buffer, and the buffers are
+    // written out in query order once the query (and every query before it) has finished,
+    // followed by the per-query latencies and the wall-clock time of the whole run.
+    private static void runPooled(final int start, int stop, final boolean print) {
+        long beginTime = System.nanoTime();
+
+        try (FakebookConnectionPool pool = new FakebookConnectionPool(poolSize,
+                new FakebookConnectionPool.ConnectionFactory() {
+                    public Connection open() throws SQLException {
+                        return connectIfNeeded();
+                    }
+                },
+                new FakebookConnectionPool.OracleFactory() {
+                    public FakebookOracle create(Connection connection) throws SQLException {
+                        return createOracle(connection);
+                    }
+                });
+                AsyncFakebookOracle async = new AsyncFakebookOracle(pool, 0)) {
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+
+            ArrayList<CompletableFuture<String>> outputs = new ArrayList<CompletableFuture<String>>();
+            final long[] latencies = new long[stop - start];
+            for (int query = start; query < stop; query++) {
+                final int current = query;
+                outputs.add(async.submit(new AsyncFakebookOracle.Query<String>() {
+                    public String run(FakebookOracle oracle) throws Exception {
+                        StringWriter buffer = new StringWriter();
+                        long queryBegin = System.nanoTime();
+                        runQuery(oracle, current, print ? buffer : null);
+                        latencies[current - start] = System.nanoTime() - queryBegin;
+                        return buffer.toString();
+                    }
+                }));
+            }
+
+            for (int query = start; query < stop; query++) {
+                String output = outputs.get(query - start).get();
+                if (print) {
+                    out.write(output);
+                } else {
+                    out.write(String.format("Query %d Time: %.3f%n", query, latencies[query - start] / 1e9));
+                }
+                out.flush();
+            }
+
+            if (print) {
+                for (int query = start; query < stop; query++) {
+                    out.write(String.format("Query %d Latency: %.3f%n", query, latencies[query - start] / 1e9));
+                }
+            }
+            out.write(String.format("Total Time: %.3f (%d connection(s))%n", (System.nanoTime() - beginTime) / 1e9,
+                    pool.connections().size()));
+            out.flush();
+
+            if (printStatistics) {
+                for (FakebookConnectionPool.PooledOracle pooled : pool.connections()) {
+                    printStatistics(pooled.oracle, out);
+                }
+            }
+            if (instrumentation != null) {
+                instrumentation.writeReport(out);
+            }
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (SQLException e) {
             e.printStackTrace();
         } catch (IOException e) {
@@ -139,6 +336,234 @@ public final class FakebookOracleMain {
         }
     }
 
+    // Runs query number <query> against <db>, printing its results to <out> unless <out> is NULL;
+    // with -instrument, the JDBC work done meanwhile on this thread is counted under "Query <query>"
+    private static void runQuery(FakebookOracle db, int query, Writer out) throws SQLException, IOException {
+        if (instrumentation == null) {
+            dispatchQuery(db, query, out);
+            return;
+        }
+
+        instrumentation.begin("Query " + query);
+        try {
+            dispatchQuery(db, query, out);
+        } finally {
+            instrumentation.end();
+        }
+    }
+
+    private static void dispatchQuery(FakebookOracle db, int query, Writer out) throws SQLException, IOException {
+        switch (query) {
+            case 0: {
+                BirthMonthInfo results = db.findMonthOfBirthInfo();
+                if (out != null) {
+                    db.printQuery0(out, results);
+                }
+                break;
+            }
+            case 1: {
+                FirstNameInfo results = db.findNameInfo();
+                if (out != null) {
+                    db.printQuery1(out, results);
+                }
+                break;
+            }
+            case 2: {
+                try (FakebookCursor<UserInfo> results = db.lonelyUsersCursor()) {
+                    if (out != null) {
+                        db.printQuery2(out, results);
+                    } else {
+                        drain(results);
+                    }
+                }
+                break;
+            }
+            case 3: {
+                try (FakebookCursor<UserInfo> results = db.liveAwayFromHomeCursor()) {
+                    if (out != null) {
+                        db.printQuery3(out, results);
+                    } else {
+                        drain(results);
+                    }
+                }
+                break;
+            }
+            case 4: {
+                FakebookArrayList<TaggedPhotoInfo> results = db.findPhotosWithMostTags(5);
+                if (out != null) {
+                    db.printQuery4(out, results);
+                }
+                break;
+            }
+            case 5: {
+                FakebookArrayList<MatchPair> results = db.matchMaker(5, 2);
+                if (out != null) {
+                    db.printQuery5(out, results);
+                }
+                break;
+            }
+            case 6: {
+                FakebookArrayList<UsersPair> results = db.suggestFriends(5);
+                if (out != null) {
+                    db.printQuery6(out, results);
+                }
+                break;
+            }
+            case 7: {
+                EventStateInfo results = db.findEventStates();
+                if (out != null) {
+                    db.printQuery7(out, results);
+                }
+                break;
+            }
+            case 8: {
+                AgeInfo results = db.findAgeInfo(215L);
+                if (out != null) {
+                    db.printQuery8(out, results);
+                }
+                break;
+            }
+            case 9: {
+                FakebookArrayList<SiblingInfo> results = db.findPotentialSiblings();
+                if (out != null) {
+                    db.printQuery9(out, results);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    // Consumes every element of <results> without keeping any of them
+    private static <T> void drain(FakebookCursor<T> results) throws SQLException {
+        while (results.next()) {
+            results.current();
+        }
+    }
+
+    private static FakebookOracle createOracle(Connection connection) throws SQLException {
+        if (instrumentation != null && connection != null) {
+            connection = instrumentation.wrap(connection);
+        }
+        if (inMemory) {
+            synchronized (FakebookOracleMain.class) {
+                if (snapshot == null) {
+                    snapshot = FakebookSnapshot.load(connection);
+                    if (snapshotFile != null) {
+                        saveSnapshot();
+                    }
+                }
+                if (incremental && suggestionIndex == null) {
+                    buildIndexes(connection);
+                }
+            }
+            InMemoryFakebookOracle oracle = new InMemoryFakebookOracle(snapshot);
+            oracle.setPhotoTagIndex(photoTagIndex);
+            oracle.setSuggestionIndex(suggestionIndex);
+            return oracle;
+        }
+        StudentFakebookOracle oracle = new StudentFakebookOracle(connection, userCache);
+        oracle.setCursorMode(cursorType, fetchSize);
+        oracle.setCoTagMatching(coTagMatching);
+        oracle.setBitmapSets(bitmapSets);
+        synchronized (userCache) {
+            if (preloadUsers && !usersPreloaded) {
+                oracle.preloadUsers();
+                usersPreloaded = true;
+            }
+            if (useAgeIndex && ageIndex == null) {
+                ageIndex = oracle.loadAgeIndex();
+            }
+            oracle.setAgeIndex(ageIndex);
+        }
+        FakebookOracle db = oracle;
+        if (plannedQueries.length > 0) {
+            db = new SharedScanFakebookOracle(oracle, connection, plannedQueries);
+        }
+        if (cacheResults) {
+            CachingFakebookOracle cache = new CachingFakebookOracle(db,
+                    CachingFakebookOracle.tableVersionProbe(connection), FakebookOracleConstants.CacheMaxEntries,
+                    FakebookOracleConstants.CacheTTLMillis, FakebookOracleConstants.CacheProbeIntervalMillis);
+            // Results recomputed from the new data must not be hydrated with the old names
+            cache.setInvalidationHook(new Runnable() {
+                public void run() {
+                    userCache.clear();
+                }
+            });
+            return cache;
+        }
+        return db;
+    }
+
+    // Builds the indexes of -incremental over the snapshot and brings them up to date with the
+    // tables read through <connection>, checking them afterwards if -check-indexes is set
+    private static void buildIndexes(Connection connection) throws SQLException {
+        FakebookStatementRegistry statements = new FakebookStatementRegistry(connection);
+        try {
+            FakebookPhotoTagIndex tagIndex = new FakebookPhotoTagIndex(snapshot);
+            tagChanges = tagIndex.catchUp(statements);
+            FakebookSuggestionIndex index = new FakebookSuggestionIndex(snapshot);
+            friendshipChanges = index.catchUp(statements);
+            if (checkIndexes) {
+                index.checkConsistency();
+            }
+            photoTagIndex = tagIndex;
+            suggestionIndex = index;
+        } finally {
+            statements.close();
+        }
+    }
+
+    // Returns the StudentFakebookOracle behind <db>, or NULL if there is none
+    private static StudentFakebookOracle student(FakebookOracle db) {
+        if (db instanceof CachingFakebookOracle) {
+            db = ((CachingFakebookOracle) db).delegate();
+        }
+        if (db instanceof SharedScanFakebookOracle) {
+            db = ((SharedScanFakebookOracle) db).delegate();
+        }
+        return db instanceof StudentFakebookOracle ? (StudentFakebookOracle) db : null;
+    }
+
+    // Prints the statement statistics of <db>, its cache statistics if it memoizes results, and
+    // the statistics of its shared scans if it has any; with -incremental, also prints how many
+    // changes the indexes applied to catch up with the tables
+    private static void printStatistics(FakebookOracle db, Writer out) throws IOException {
+        if (suggestionIndex != null) {
+            out.write(String.format("%sIndex Statistics%s%n%d tag change(s) and %d friendship change(s) applied"
+                    + " since the snapshot%n%n", FakebookOracleConstants.PrintDecoration,
+                    FakebookOracleConstants.PrintDecoration, tagChanges, friendshipChanges));
+            out.flush();
+        }
+        if (db instanceof CachingFakebookOracle) {
+            ((CachingFakebookOracle) db).printStatistics(out);
+            db = ((CachingFakebookOracle) db).delegate();
+        }
+        if (db instanceof SharedScanFakebookOracle) {
+            ((SharedScanFakebookOracle) db).printStatistics(out);
+        }
+        StudentFakebookOracle oracle = student(db);
+        if (oracle != null) {
+            oracle.printStatementStatistics(out);
+        }
+    }
+
+    // Saves the snapshot to the -snapshot file, reporting (but otherwise ignoring) a failure
+    private static void saveSnapshot() {
+        try {
+            snapshot.save(snapshotFile);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // Returns a new connection, or NULL if the queries are answered from a snapshot that was
+    // mapped from a file, which needs none unless -incremental catches up with the tables
+    private static Connection connectIfNeeded() throws SQLException {
+        return inMemory && snapshot != null && !incremental ? null : getConnection();
+    }
+
     private static Connection getConnection() throws SQLException {
         try {
             Class.forName("oracle.jdbc.driver.OracleDriver").newInstance();
@@ -1,13 +1,17 @@
 package project2;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Locale;
 
 /*
     The FakebookArrayList class is an ArrayList that allows customization of the toString
     function, specifically the inter-item delimiter and the removal of leading/trailing
     brackets.
 */
-final class FakebookArrayList<T> extends ArrayList<T> {
+final class FakebookArrayList<T> extends ArrayList<T> implements FakebookWritable {
     // [Constructor]
     public FakebookArrayList(String delim) {
         super();
@@ -19,22 +23,210 @@ final class FakebookArrayList<T> extends ArrayList<T> {
     // EFFECTS: constructs a string representation of the elements contained in this
     // FakebookArrayList instance, each one delimited by <delimiter>
     public String toString() {
-        String result = "";
+        StringBuilder result = new StringBuilder();
 
         int num = size();
         for (int idx = 0; idx < num; idx++) {
             if (idx != 0) {
-                result += delimiter;
+                result.append(delimiter);
             }
-            result += get(idx);
+            result.append(get(idx));
         }
 
-        if (result.equals("")) {
+        if (result.length() == 0) {
             return "[]";
         }
-        return result;
+        return result.toString();
+    }
+
+    // [Write Function]
+    // EFFECTS: writes the same characters as toString() to <out>, without building them
+    //          into a string first
+    public void writeTo(FakebookWriter out) throws IOException {
+        if (rendersEmpty()) {
+            out.print("[]");
+            return;
+        }
+
+        int num = size();
+        for (int idx = 0; idx < num; idx++) {
+            if (idx != 0) {
+                out.print(delimiter);
+            }
+            out.print(get(idx));
+        }
+    }
+
+    // [Renders Empty Function]
+    // EFFECTS: returns whether the elements and delimiters of this list render as no
+    //          characters at all (in which case toString() returns "[]"); FakebookWritable
+    //          elements never render empty
+    private boolean rendersEmpty() {
+        int num = size();
+        if (num > 1 && delimiter.length() != 0) {
+            return false;
+        }
+        for (int idx = 0; idx < num; idx++) {
+            Object element = get(idx);
+            if (element == null || element instanceof FakebookWritable || element.toString().length() != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     // Member Variables
     private String delimiter;
 }
+
+/*
+    The FakebookWritable interface is implemented by the classes that can write their
+    string representation to a FakebookWriter piece by piece, instead of building it in
+    memory first.
+*/
+interface FakebookWritable {
+    // EFFECTS: writes the same characters as toString() to <out>
+    void writeTo(FakebookWriter out) throws IOException;
+}
+
+/*
+    The FakebookWriter class buffers the text written by the printQuery functions and the
+    FakebookWritable classes before passing it on to a Writer. It renders the pieces that
+    String.format would have produced for the "%s", "%d", and "%n" conversions used by those
+    functions (numbers are written digit by digit into the buffer), so output produced through
+    it is identical to the formatted output. Each thread reuses a single instance, buffer
+    included, through FakebookWriter.to().
+*/
+final class FakebookWriter {
+    // [Constructor]
+    private FakebookWriter() {
+        buffer = new char[BufferSize];
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        asciiDigits = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+    }
+
+    // [To Function]
+    // EFFECTS:  returns the calling thread's FakebookWriter, emptied and set to write to <target>
+    public static FakebookWriter to(Writer target) {
+        FakebookWriter out = Instances.get();
+        out.target = target;
+        out.count = 0;
+        return out;
+    }
+
+    // [Print String Function]
+    // MODIFIES: this
+    // EFFECTS:  writes <str>, or "null" if <str> is NULL (as "%s" would)
+    public FakebookWriter print(String str) throws IOException {
+        if (str == null) {
+            str = "null";
+        }
+        int length = str.length();
+        int from = 0;
+        while (from < length) {
+            if (count == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(length - from, buffer.length - count);
+            str.getChars(from, from + chunk, buffer, count);
+            count += chunk;
+            from += chunk;
+        }
+        return this;
+    }
+
+    // [Print Character Function]
+    // MODIFIES: this
+    // EFFECTS:  writes <ch>
+    public FakebookWriter print(char ch) throws IOException {
+        if (count == buffer.length) {
+            drain();
+        }
+        buffer[count++] = ch;
+        return this;
+    }
+
+    // [Print Number Function]
+    // MODIFIES: this
+    // EFFECTS:  writes <value> in decimal (as "%d" would)
+    public FakebookWriter print(long value) throws IOException {
+        if (!asciiDigits || value == Long.MIN_VALUE) {
+            return print(String.format("%d", value));
+        }
+        if (buffer.length - count < 20) {
+            drain();
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int end = count + digits(value);
+        int idx = end;
+        do {
+            buffer[--idx] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count = end;
+        return this;
+    }
+
+    // [Print Object Function]
+    // MODIFIES: this
+    // EFFECTS:  writes the string representation of <obj> (as "%s" would), streaming it if
+    //           <obj> is FakebookWritable
+    public FakebookWriter print(Object obj) throws IOException {
+        if (obj instanceof FakebookWritable) {
+            ((FakebookWritable) obj).writeTo(this);
+            return this;
+        }
+        return print(String.valueOf(obj));
+    }
+
+    // [Newline Function]
+    // MODIFIES: this
+    // EFFECTS:  writes the platform line separator (as "%n" would)
+    public FakebookWriter newline() throws IOException {
+        return print(LineSeparator);
+    }
+
+    // [Flush Function]
+    // MODIFIES: this
+    // EFFECTS:  passes everything written so far on to the target Writer and flushes it
+    public void flush() throws IOException {
+        drain();
+        target.flush();
+    }
+
+    private void drain() throws IOException {
+        target.write(buffer, 0, count);
+        count = 0;
+    }
+
+    // [Digits Function]
+    // REQUIRES: <value> is not negative
+    // EFFECTS:  returns the number of decimal digits of <value>
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    // Constants
+    private static final int BufferSize = 8192;
+    private static final String LineSeparator = System.lineSeparator();
+    private static final ThreadLocal<FakebookWriter> Instances = new ThreadLocal<FakebookWriter>() {
+        @Override
+        protected FakebookWriter initialValue() {
+            return new FakebookWriter();
+        }
+    };
+
+    // Member Variables
+    private final char[] buffer;
+    private final boolean asciiDigits;
+    private Writer target;
+    private int count;
+}
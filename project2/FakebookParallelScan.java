@@ -0,0 +1,103 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+    The FakebookParallelScan class runs a scan over a range of items [0, count) (users, buckets,
+    and so on) on a fork-join pool. The items are split into contiguous chunks of about equal
+    work, as estimated per item by work(), with several chunks per thread of the pool so that
+    chunks whose work was misjudged even out. Each chunk is scanned by scan() as one task, and
+    the results of the chunks are combined pairwise by combine() as the tasks join, the result
+    of the earlier items always being the left one.
+
+    The engines that scan in parallel subclass it anonymously for each run.
+*/
+abstract class FakebookParallelScan<T> {
+    // [Constructor]
+    public FakebookParallelScan(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // [Invoke Function]
+    // REQUIRES: <count> is positive
+    // EFFECTS:  scans the items [0, <count>) chunk by chunk and returns the combined results
+    public T invoke(int count) {
+        int[] bounds = chunks(count, pool.getParallelism() * ChunksPerThread);
+        return pool.invoke(new Chunks(bounds, 0, bounds.length - 1));
+    }
+
+    // [Work Function]
+    // EFFECTS:  returns an estimate of the cost of scanning <item>, at least 1
+    protected abstract long work(int item);
+
+    // [Scan Function]
+    // EFFECTS:  returns the result of the items [<from>, <to>); called from the pool's threads
+    protected abstract T scan(int from, int to);
+
+    // [Combine Function]
+    // EFFECTS:  returns the result of the items of <left> followed by those of <right>, either
+    //           of which it may modify
+    protected abstract T combine(T left, T right);
+
+    // [Chunks Function]
+    // EFFECTS:  returns the bounds of at most <chunkCount> chunks of [0, <count>) of about equal
+    //           work: chunk i holds the items [bounds[i], bounds[i + 1])
+    private int[] chunks(int count, int chunkCount) {
+        long total = 0;
+        for (int item = 0; item < count; item++) {
+            total += work(item);
+        }
+
+        int[] bounds = new int[chunkCount + 1];
+        int chunk = 1;
+        long done = 0;
+        for (int item = 0; item < count && chunk < chunkCount; item++) {
+            done += work(item);
+            if (done * chunkCount >= total * chunk) {
+                bounds[chunk++] = item + 1;
+            }
+        }
+        while (chunk <= chunkCount && bounds[chunk - 1] < count) {
+            bounds[chunk++] = count;
+        }
+        return Arrays.copyOf(bounds, chunk);
+    }
+
+    /*
+        A Chunks task scans the chunks [first, last) by splitting them in halves until a single
+        chunk is left, and combining the halves' results.
+    */
+    private final class Chunks extends RecursiveTask<T> {
+        Chunks(int[] bounds, int first, int last) {
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected T compute() {
+            if (last - first == 1) {
+                return scan(bounds[first], bounds[last]);
+            }
+            int middle = (first + last) / 2;
+            Chunks left = new Chunks(bounds, first, middle);
+            left.fork();
+            T right = new Chunks(bounds, middle, last).compute();
+            return combine(left.join(), right);
+        }
+
+        private final int[] bounds;
+        private final int first;
+        private final int last;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Constants
+    private static final int ChunksPerThread = 8;
+
+    // Member Variables
+    private final ForkJoinPool pool;
+}
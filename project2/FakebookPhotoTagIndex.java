@@ -0,0 +1,373 @@
+package project2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+    The FakebookPhotoTagIndex class maintains the answer to Query 4 while tags are added and
+    removed. It keeps the distinct users tagged in every photo of a FakebookSnapshot, so the
+    distinct tag count of a photo is the size of its list, and the (photo, user) pairs that are
+    tagged in a primitive map, so that adding a tag twice counts once.
+
+    Adding or removing a tag only changes the count of its photo, in time proportional to the
+    number of users tagged in it. Reading the top <num> photos walks the counts once and offers
+    each tagged photo to a bounded top-<num> heap, which ranks by count and then by photo ID,
+    so the photos are never sorted all together.
+
+    The users are those of the snapshot the index is built from, which also provides their
+    names; tags of users created since are rejected. Photos created since can be added with
+    addPhoto() and are then indexed after the snapshot's; as their indexes do not follow their
+    IDs, they are kept in ID order apart, offered to a heap of their own, and the two heaps are
+    merged. The snapshot's tags are the initial ones, and catchUp() brings them up to date with
+    the Tags table, looking up the photos it has not seen by ID.
+*/
+final class FakebookPhotoTagIndex {
+    // [Constructor]
+    // EFFECTS:  creates an index of the tags of <snapshot>
+    public FakebookPhotoTagIndex(FakebookSnapshot snapshot) {
+        this.snapshot = snapshot;
+        int photoCount = snapshot.photoCount();
+        tagged = new int[photoCount][];
+        counts = new int[photoCount];
+        tags = new LongIntHashMap(snapshot.photoTagOffset(photoCount));
+        addedPhotos = new ArrayList<PhotoInfo>();
+        addedPhotoIDs = new long[0];
+        addedOrder = new int[0];
+        addedPhotoIndexes = new LongIntHashMap();
+        for (int photo = 0; photo < photoCount; photo++) {
+            tagged[photo] = new int[Math.max(4, snapshot.photoTagOffset(photo + 1) - snapshot.photoTagOffset(photo))];
+            for (int tag = snapshot.photoTagOffset(photo); tag < snapshot.photoTagOffset(photo + 1); tag++) {
+                int user = snapshot.photoTagAt(tag);
+                if (!tags.containsKey(tagKey(photo, user))) {
+                    tags.put(tagKey(photo, user), 1);
+                    tagged[photo][counts[photo]++] = user;
+                }
+            }
+        }
+    }
+
+    // [Add Photo Function]
+    // MODIFIES: this
+    // EFFECTS:  indexes photo <photoID>, created after the snapshot, without any tags and
+    //           returns true, or returns false if the photo already is indexed
+    public synchronized boolean addPhoto(long photoID, long albumID, String link, String albumName) {
+        if (findPhoto(photoID) >= 0) {
+            return false;
+        }
+        int photo = counts.length;
+        tagged = Arrays.copyOf(tagged, photo + 1);
+        counts = Arrays.copyOf(counts, photo + 1);
+        tagged[photo] = new int[4];
+        addedPhotos.add(new PhotoInfo(photoID, albumID, link, albumName));
+        int added = addedPhotos.size() - 1;
+        addedPhotoIDs = Arrays.copyOf(addedPhotoIDs, added + 1);
+        addedPhotoIDs[added] = photoID;
+        addedPhotoIndexes.put(photoID, photo);
+
+        // Photos are rarely added, so <addedOrder> is kept sorted by shifting
+        addedOrder = Arrays.copyOf(addedOrder, added + 1);
+        int rank = added;
+        while (rank > 0 && addedPhotoIDs[addedOrder[rank - 1]] > photoID) {
+            addedOrder[rank] = addedOrder[rank - 1];
+            rank--;
+        }
+        addedOrder[rank] = added;
+        return true;
+    }
+
+    // [Add Tag Function]
+    // REQUIRES: the photo is indexed and the user is in the snapshot (or else an
+    //           IllegalArgumentException is thrown)
+    // MODIFIES: this
+    // EFFECTS:  tags user <userID> in photo <photoID> and returns true, or returns false if the
+    //           user already is
+    public synchronized boolean addTag(long photoID, long userID) {
+        return add(photoIndex(photoID), userIndex(userID));
+    }
+
+    // [Remove Tag Function]
+    // REQUIRES: the photo is indexed and the user is in the snapshot (or else an
+    //           IllegalArgumentException is thrown)
+    // MODIFIES: this
+    // EFFECTS:  untags user <userID> from photo <photoID> and returns true, or returns false if
+    //           the user was not tagged in it
+    public synchronized boolean removeTag(long photoID, long userID) {
+        return remove(photoIndex(photoID), userIndex(userID));
+    }
+
+    // [Catch Up Function]
+    // MODIFIES: this
+    // EFFECTS:  reads the tags of the Tags table through <statements> and adds and removes tags
+    //           until the index holds the same ones, first adding the tagged photos created
+    //           since the snapshot (read from the Photos and Albums tables); tags of users that
+    //           are not in the snapshot are skipped. Returns the number of tags added and
+    //           removed.
+    public synchronized int catchUp(FakebookStatementRegistry statements) throws SQLException {
+        LongIntHashMap current = new LongIntHashMap(tags.size());
+        LongIntHashMap newPhotos = new LongIntHashMap(); // tagged photos that are not indexed
+        long[] pending = new long[16]; // (photo ID, user ID) of the tags of <newPhotos>
+        int pendingCount = 0;
+        int changes = 0;
+        ResultSet rst = statements.executeQuery("Photo Tag Index: Tags",
+                "SELECT Tag_Photo_ID, Tag_Subject_ID FROM " + FakebookOracleConstants.TagsTable);
+        while (rst.next()) {
+            int photo = findPhoto(rst.getLong(1));
+            int user = snapshot.userIndex(rst.getLong(2));
+            if (user < 0) {
+                continue;
+            }
+            if (photo >= 0) {
+                current.put(tagKey(photo, user), 1);
+                changes += add(photo, user) ? 1 : 0;
+            } else {
+                if (pendingCount == pending.length) {
+                    pending = Arrays.copyOf(pending, 2 * pendingCount);
+                }
+                newPhotos.put(rst.getLong(1), 1);
+                pending[pendingCount++] = rst.getLong(1);
+                pending[pendingCount++] = rst.getLong(2);
+            }
+        }
+        rst.close();
+
+        if (pendingCount > 0) {
+            addPhotos(statements, newPhotos.keys());
+        }
+        for (int idx = 0; idx < pendingCount; idx += 2) {
+            int photo = findPhoto(pending[idx]);
+            if (photo >= 0) { // else the photo was deleted while the tags were read
+                int user = snapshot.userIndex(pending[idx + 1]);
+                current.put(tagKey(photo, user), 1);
+                changes += add(photo, user) ? 1 : 0;
+            }
+        }
+        for (long key : tags.keys()) {
+            if (!current.containsKey(key)) {
+                changes += remove((int) (key >>> 32), (int) key) ? 1 : 0;
+            }
+        }
+        return changes;
+    }
+
+    // [Tag Count Function]
+    // REQUIRES: the photo is indexed
+    // EFFECTS:  returns the number of distinct users tagged in photo <photoID>
+    public synchronized int tagCount(long photoID) {
+        return counts[photoIndex(photoID)];
+    }
+
+    // [Find Photos With Most Tags Function]
+    // EFFECTS:  returns the result of Query 4 for the current tags
+    public synchronized FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) {
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        FakebookTopPairs top = new FakebookTopPairs(Math.max(num, 0));
+        for (int photo = 0; photo < snapshot.photoCount() && num > 0; photo++) {
+            if (counts[photo] > 0) {
+                top.offer(counts[photo], photo, 0);
+            }
+        }
+
+        // The added photos are offered in ID order, by their rank in that order, so that their
+        // heap breaks ties by photo ID too
+        FakebookTopPairs topAdded = new FakebookTopPairs(addedPhotos.isEmpty() ? 0 : Math.max(num, 0));
+        for (int rank = 0; rank < addedOrder.length && num > 0; rank++) {
+            int photo = snapshot.photoCount() + addedOrder[rank];
+            if (counts[photo] > 0) {
+                topAdded.offer(counts[photo], rank, 0);
+            }
+        }
+
+        int next = 0;
+        int nextAdded = 0;
+        for (int taken = 0; taken < num && next + nextAdded < top.size() + topAdded.size(); taken++) {
+            boolean fromSnapshot = nextAdded == topAdded.size()
+                    || next < top.size() && ranksBefore(top.count(next), snapshot.photoID(top.user1(next)),
+                            topAdded.count(nextAdded), addedPhotoIDs[addedOrder[topAdded.user1(nextAdded)]]);
+            int photo = fromSnapshot ? top.user1(next++)
+                    : snapshot.photoCount() + addedOrder[topAdded.user1(nextAdded++)];
+            TaggedPhotoInfo info = new TaggedPhotoInfo(photo < snapshot.photoCount() ? snapshot.photo(photo)
+                    : addedPhotos.get(photo - snapshot.photoCount()));
+            int[] users = Arrays.copyOf(tagged[photo], counts[photo]);
+            Arrays.sort(users);
+            for (int user : users) {
+                info.addTaggedUser(snapshot.user(user));
+            }
+            results.add(info);
+        }
+        return results;
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  tags <user> in <photo> and returns true, or returns false if it already is
+    private boolean add(int photo, int user) {
+        long key = tagKey(photo, user);
+        if (tags.containsKey(key)) {
+            return false;
+        }
+        tags.put(key, 1);
+        if (counts[photo] == tagged[photo].length) {
+            tagged[photo] = Arrays.copyOf(tagged[photo], 2 * counts[photo]);
+        }
+        tagged[photo][counts[photo]++] = user;
+        return true;
+    }
+
+    // [Remove Function]
+    // MODIFIES: this
+    // EFFECTS:  untags <user> from <photo> and returns true, or returns false if it was not
+    //           tagged in it
+    private boolean remove(int photo, int user) {
+        if (!tags.remove(tagKey(photo, user))) {
+            return false;
+        }
+        for (int idx = 0; idx < counts[photo]; idx++) {
+            if (tagged[photo][idx] == user) {
+                tagged[photo][idx] = tagged[photo][--counts[photo]];
+                break;
+            }
+        }
+        return true;
+    }
+
+    // [Add Photos Function]
+    // MODIFIES: this
+    // EFFECTS:  adds the photos of <photoIDs> (distinct IDs) that are in the Photos table, with
+    //           the names of their albums, looked up by ID through <statements> in IN lists of
+    //           at most <PhotoFaultBatchSize> IDs each
+    private void addPhotos(FakebookStatementRegistry statements, long[] photoIDs) throws SQLException {
+        long[] ids = new long[photoIDs.length];
+        long[] albumIDs = new long[ids.length];
+        String[] links = new String[ids.length];
+        int found = 0;
+        int maxBatchSize = FakebookOracleConstants.PhotoFaultBatchSize;
+        for (int from = 0; from < photoIDs.length; from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, photoIDs.length);
+            int batchSize = FakebookStatementRegistry.paddedSize(to - from, maxBatchSize);
+            ResultSet rst = statements.executeQuery("Photo Tag Index: Photos x" + batchSize,
+                    "SELECT Photo_ID, Album_ID, Photo_Link FROM " + FakebookOracleConstants.PhotosTable + " " +
+                            "WHERE Photo_ID IN (" + inList(batchSize) + ")",
+                    binds(photoIDs, from, to, batchSize));
+            while (rst.next()) {
+                ids[found] = rst.getLong(1);
+                albumIDs[found] = rst.getLong(2);
+                links[found++] = rst.getString(3);
+            }
+            rst.close();
+        }
+
+        // The albums of the photos found, each with the position of its name in <albumNames>
+        LongIntHashMap albums = new LongIntHashMap(found);
+        long[] distinctAlbums = new long[found];
+        for (int idx = 0; idx < found; idx++) {
+            if (!albums.containsKey(albumIDs[idx])) {
+                albums.put(albumIDs[idx], albums.size());
+                distinctAlbums[albums.size() - 1] = albumIDs[idx];
+            }
+        }
+        String[] albumNames = new String[albums.size()];
+        for (int from = 0; from < albums.size(); from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, albums.size());
+            int batchSize = FakebookStatementRegistry.paddedSize(to - from, maxBatchSize);
+            ResultSet rst = statements.executeQuery("Photo Tag Index: Albums x" + batchSize,
+                    "SELECT Album_ID, Album_Name FROM " + FakebookOracleConstants.AlbumsTable + " " +
+                            "WHERE Album_ID IN (" + inList(batchSize) + ")",
+                    binds(distinctAlbums, from, to, batchSize));
+            while (rst.next()) {
+                albumNames[albums.get(rst.getLong(1), 0)] = rst.getString(2);
+            }
+            rst.close();
+        }
+
+        for (int idx = 0; idx < found; idx++) {
+            addPhoto(ids[idx], albumIDs[idx], links[idx], albumNames[albums.get(albumIDs[idx], 0)]);
+        }
+    }
+
+    // [IN List Function]
+    // EFFECTS:  returns a list of <size> placeholders, separated by commas
+    private static String inList(int size) {
+        StringBuilder inList = new StringBuilder();
+        for (int idx = 0; idx < size; idx++) {
+            inList.append(idx == 0 ? "?" : ", ?");
+        }
+        return inList.toString();
+    }
+
+    // [Binds Function]
+    // REQUIRES: <from> < <to> and <to> - <from> <= <size>
+    // EFFECTS:  returns the elements [<from>, <to>) of <ids>, padded to <size> binds by repeating
+    //           the last one
+    private static Object[] binds(long[] ids, int from, int to, int size) {
+        Object[] binds = new Object[size];
+        for (int idx = 0; idx < size; idx++) {
+            binds[idx] = ids[Math.min(from + idx, to - 1)];
+        }
+        return binds;
+    }
+
+    // [Find Photo Function]
+    // EFFECTS:  returns the index of photo <photoID>, or -1 if it is not indexed
+    private int findPhoto(long photoID) {
+        int low = 0;
+        int high = snapshot.photoCount() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (snapshot.photoID(middle) < photoID) {
+                low = middle + 1;
+            } else if (snapshot.photoID(middle) > photoID) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return addedPhotoIndexes.get(photoID, -1);
+    }
+
+    // [Photo Index Function]
+    // EFFECTS:  returns the index of photo <photoID>; throws IllegalArgumentException if the
+    //           photo is not indexed
+    private int photoIndex(long photoID) {
+        int photo = findPhoto(photoID);
+        if (photo < 0) {
+            throw new IllegalArgumentException("unknown photo (add it with addPhoto() first): " + photoID);
+        }
+        return photo;
+    }
+
+    // [User Index Function]
+    // EFFECTS:  returns the dense index of user <userID>; throws IllegalArgumentException if
+    //           the user is not in the snapshot
+    private int userIndex(long userID) {
+        int user = snapshot.userIndex(userID);
+        if (user < 0) {
+            throw new IllegalArgumentException("unknown user: " + userID);
+        }
+        return user;
+    }
+
+    // [Ranks Before Function]
+    // EFFECTS:  returns whether a photo <photoID1> with <count1> tags ranks before a photo
+    //           <photoID2> with <count2> tags in Query 4
+    private static boolean ranksBefore(int count1, long photoID1, int count2, long photoID2) {
+        return count1 > count2 || count1 == count2 && photoID1 < photoID2;
+    }
+
+    // [Tag Key Function]
+    // EFFECTS:  returns a key identifying the tag of <user> in <photo>
+    private static long tagKey(int photo, int user) {
+        return ((long) photo << 32) | user;
+    }
+
+    // Member Variables
+    private final FakebookSnapshot snapshot;
+    private int[][] tagged; // the users tagged in each photo, in no particular order
+    private int[] counts; // the number of users tagged in each photo
+    private final LongIntHashMap tags; // tag keys of the current tags
+    private final ArrayList<PhotoInfo> addedPhotos; // the photos added since the snapshot, by index
+    private long[] addedPhotoIDs;
+    private int[] addedOrder; // the positions of the added photos, in ID order
+    private final LongIntHashMap addedPhotoIndexes; // index of each added photo, by ID
+}
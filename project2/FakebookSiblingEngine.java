@@ -0,0 +1,156 @@
+package project2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+    The FakebookSiblingEngine class finds the pairs of Query 9 (friends with the same last
+    name and a hometown in common, born less than 10 years apart) over a FakebookSnapshot by
+    blocking: every user with a last name and a birth year is put in one bucket per hometown,
+    keyed by (last name, hometown), so two users can only be siblings if they share a bucket.
+    Within a bucket, only the friendships of its members are tested: each friend of a member is
+    looked up among the (sorted) members by binary search, so the cost follows the number of
+    friendships of the bucketed users, never the number of pairs in a bucket.
+
+    The buckets are scanned in parallel by a FakebookParallelScan, in chunks of about equal work
+    (the number of friendships of their members). A pair of users sharing several
+    hometowns is found once per shared bucket, so the pairs of all tasks are sorted and
+    duplicates dropped at the end, which also gives the order of Query 9.
+*/
+final class FakebookSiblingEngine {
+    // [Constructor]
+    public FakebookSiblingEngine(FakebookSnapshot snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    // [Siblings Function]
+    // EFFECTS:  returns the pairs of users (as dense indexes, user1 < user2) of Query 9, as keys
+    //           holding user1 in the high half and user2 in the low half, in ascending order
+    public long[] siblings() {
+        if (members == null) {
+            buckets();
+        }
+        if (bucketCount == 0) {
+            return new long[0];
+        }
+        long[] pairs = new FakebookParallelScan<long[]>(pool) {
+            @Override
+            protected long work(int bucket) {
+                return steps(bucket);
+            }
+
+            @Override
+            protected long[] scan(int from, int to) {
+                return scanBuckets(from, to);
+            }
+
+            @Override
+            protected long[] combine(long[] left, long[] right) {
+                long[] both = Arrays.copyOf(left, left.length + right.length);
+                System.arraycopy(right, 0, both, left.length, right.length);
+                return both;
+            }
+        }.invoke(bucketCount);
+        Arrays.sort(pairs);
+        int distinct = 0;
+        for (int idx = 0; idx < pairs.length; idx++) {
+            if (distinct == 0 || pairs[idx] != pairs[distinct - 1]) {
+                pairs[distinct++] = pairs[idx];
+            }
+        }
+        return Arrays.copyOf(pairs, distinct);
+    }
+
+    // [Buckets Function]
+    // MODIFIES: this
+    // EFFECTS:  puts every user with a last name and a birth year in the bucket of each of its
+    //           hometowns, as the CSR arrays <bucketOffsets> and <members> (with the members of
+    //           each bucket in ascending order); the buckets are built on the first call to
+    //           siblings() and kept by this engine (so once per InMemoryFakebookOracle), since
+    //           the snapshot does not change
+    private void buckets() {
+        int userCount = snapshot.userCount();
+        LongIntHashMap bucketIndexes = new LongIntHashMap();
+        int[] entryBuckets = new int[snapshot.hometownOffset(userCount)];
+        int[] entryUsers = new int[entryBuckets.length];
+        int entries = 0;
+        for (int user = 0; user < userCount; user++) {
+            if (snapshot.lastNameCode(user) < 0 || snapshot.birthYear(user) == FakebookSnapshot.NoValue) {
+                continue;
+            }
+            for (int home = snapshot.hometownOffset(user); home < snapshot.hometownOffset(user + 1); home++) {
+                long key = ((long) snapshot.lastNameCode(user) << 32) | snapshot.hometownAt(home);
+                int bucket = bucketIndexes.get(key, -1);
+                if (bucket < 0) {
+                    bucket = bucketIndexes.size();
+                    bucketIndexes.put(key, bucket);
+                }
+                entryBuckets[entries] = bucket;
+                entryUsers[entries++] = user;
+            }
+        }
+
+        // The entries are in ascending user order, so filling the buckets in entry order keeps
+        // the members of each bucket sorted
+        bucketCount = bucketIndexes.size();
+        bucketOffsets = new int[bucketCount + 1];
+        for (int idx = 0; idx < entries; idx++) {
+            bucketOffsets[entryBuckets[idx] + 1]++;
+        }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            bucketOffsets[bucket + 1] += bucketOffsets[bucket];
+        }
+        members = new int[entries];
+        int[] next = Arrays.copyOf(bucketOffsets, bucketCount);
+        for (int idx = 0; idx < entries; idx++) {
+            members[next[entryBuckets[idx]]++] = entryUsers[idx];
+        }
+    }
+
+    // [Steps Function]
+    // EFFECTS:  returns the number of friendships of the members of <bucket>, plus one per member
+    private long steps(int bucket) {
+        long steps = 0;
+        for (int idx = bucketOffsets[bucket]; idx < bucketOffsets[bucket + 1]; idx++) {
+            steps += 1 + snapshot.friendOffset(members[idx] + 1) - snapshot.friendOffset(members[idx]);
+        }
+        return steps;
+    }
+
+    // [Scan Function]
+    // EFFECTS:  returns the pairs found in the buckets [<from>, <to>), in no particular order
+    private long[] scanBuckets(int from, int to) {
+        long[] pairs = new long[16];
+        int pairCount = 0;
+        for (int bucket = from; bucket < to; bucket++) {
+            int first = bucketOffsets[bucket];
+            int last = bucketOffsets[bucket + 1];
+            if (last - first < 2) {
+                continue;
+            }
+            for (int idx = first; idx < last; idx++) {
+                int user1 = members[idx];
+                int year = snapshot.birthYear(user1);
+                for (int edge = snapshot.friendOffset(user1); edge < snapshot.friendOffset(user1 + 1); edge++) {
+                    int user2 = snapshot.friendAt(edge);
+                    if (user2 > user1 && Math.abs((long) year - snapshot.birthYear(user2)) < 10
+                            && Arrays.binarySearch(members, idx + 1, last, user2) >= 0) {
+                        if (pairCount == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, 2 * pairCount);
+                        }
+                        pairs[pairCount++] = ((long) user1 << 32) | user2;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(pairs, pairCount);
+    }
+
+    // Member Variables
+    private final FakebookSnapshot snapshot;
+    private final ForkJoinPool pool;
+    private int bucketCount;
+    private int[] bucketOffsets; // the members of bucket b are at [bucketOffsets[b], bucketOffsets[b + 1])
+    private int[] members;
+}
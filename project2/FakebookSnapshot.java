@@ -0,0 +1,945 @@
+package project2;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/*
+    The FakebookSnapshot class is an immutable, columnar copy of the parts of the Fakebook
+    tables that the ten queries read, held in primitive arrays. Users and photos are renumbered
+    with dense indexes in ascending ID order, so walking the indexes in order walks the IDs in
+    order; current and hometown city IDs are replaced by dense city codes. The relations of a
+    user or photo (friends, current cities, hometowns, tagged users, and tagged photos) are
+    stored in compressed sparse row (CSR) form: the entries of index i are at the positions
+    [offset(i), offset(i + 1)) of one shared array, sorted in ascending order.
+
+    First names, last names, and genders are dictionary-coded. Each dictionary is sorted in
+    binary (Unicode code point) order, which is how Oracle sorts strings by default, and a
+    NULL string has the code -1. Missing parts of a birth date are stored as <NoValue>. Events
+    are only kept as a count per state, with the states sorted in the same order and a NULL
+    state (if any) last.
+
+    A snapshot is built with a FakebookSnapshot.Builder, which is fed one row at a time (see
+    load()). Rows that refer to a user, photo, or album that is not in the snapshot are dropped,
+    as the foreign keys of the schema rule them out.
+
+    A snapshot can also be saved to a file with save() and opened again with open(), which maps
+    the file into memory instead of reading it: the columns of an opened snapshot are views of
+    the mapped file, outside the Java heap, which the operating system pages in as they are
+    read, so opening takes about as long as mapping the file, whatever its size. The file is a
+    header (a magic number, then the offset and length of each section) followed by one section
+    per column, in little-endian order and aligned to 8 bytes: IDs, dictionary codes, and CSR
+    offsets and entries are 8-byte or 4-byte integers, and a string column (the dictionaries,
+    photo links, album names, and states) is the start and length of each string, followed by
+    their UTF-8 bytes. A snapshot built in memory keeps its columns in heap arrays, wrapped in
+    the same buffer types.
+*/
+public final class FakebookSnapshot {
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  returns a snapshot of the tables, read with one scan of each
+    public static FakebookSnapshot load(Connection connection) throws SQLException {
+        FakebookStatementRegistry statements = new FakebookStatementRegistry(connection);
+        try {
+            Builder builder = new Builder();
+            ResultSet rst = statements.executeQuery("Snapshot: Users",
+                    "SELECT User_ID, First_Name, Last_Name, Year_of_Birth, Month_of_Birth, Day_of_Birth, Gender " +
+                            "FROM " + FakebookOracleConstants.UsersTable);
+            while (rst.next()) {
+                builder.addUser(rst.getLong(1), rst.getString(2), rst.getString(3), intValue(rst, 4),
+                        intValue(rst, 5), intValue(rst, 6), rst.getString(7));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Friends",
+                    "SELECT User1_ID, User2_ID FROM " + FakebookOracleConstants.FriendsTable);
+            while (rst.next()) {
+                builder.addFriendship(rst.getLong(1), rst.getLong(2));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Current Cities",
+                    "SELECT User_ID, Current_City_ID FROM " + FakebookOracleConstants.CurrentCitiesTable + " " +
+                            "WHERE Current_City_ID IS NOT NULL");
+            while (rst.next()) {
+                builder.addCurrentCity(rst.getLong(1), rst.getLong(2));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Hometown Cities",
+                    "SELECT User_ID, Hometown_City_ID FROM " + FakebookOracleConstants.HometownCitiesTable + " " +
+                            "WHERE Hometown_City_ID IS NOT NULL");
+            while (rst.next()) {
+                builder.addHometownCity(rst.getLong(1), rst.getLong(2));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Cities",
+                    "SELECT City_ID, State_Name FROM " + FakebookOracleConstants.CitiesTable);
+            while (rst.next()) {
+                builder.addCity(rst.getLong(1), rst.getString(2));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Events",
+                    "SELECT Event_City_ID FROM " + FakebookOracleConstants.EventsTable + " " +
+                            "WHERE Event_City_ID IS NOT NULL");
+            while (rst.next()) {
+                builder.addEvent(rst.getLong(1));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Albums",
+                    "SELECT Album_ID, Album_Name FROM " + FakebookOracleConstants.AlbumsTable);
+            while (rst.next()) {
+                builder.addAlbum(rst.getLong(1), rst.getString(2));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Photos",
+                    "SELECT Photo_ID, Album_ID, Photo_Link FROM " + FakebookOracleConstants.PhotosTable);
+            while (rst.next()) {
+                builder.addPhoto(rst.getLong(1), rst.getLong(2), rst.getString(3));
+            }
+            rst.close();
+
+            rst = statements.executeQuery("Snapshot: Tags",
+                    "SELECT Tag_Photo_ID, Tag_Subject_ID FROM " + FakebookOracleConstants.TagsTable);
+            while (rst.next()) {
+                builder.addTag(rst.getLong(1), rst.getLong(2));
+            }
+            rst.close();
+
+            return builder.build();
+        } finally {
+            statements.close();
+        }
+    }
+
+    // [Open Function]
+    // EFFECTS:  returns the snapshot saved to the file at <path> by save(), with its columns
+    //           mapped from the file rather than read; throws an IOException if the file is not
+    //           a snapshot
+    public static FakebookSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HeaderBytes) {
+                throw new IOException("not a Fakebook snapshot: " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HeaderBytes).order(FileOrder);
+            if (header.getLong() != Magic || header.getInt() != SectionCount) {
+                throw new IOException("not a Fakebook snapshot: " + path);
+            }
+            ByteBuffer[] sections = new ByteBuffer[SectionCount];
+            for (int section = 0; section < SectionCount; section++) {
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (offset < HeaderBytes || length < 0 || length > Integer.MAX_VALUE || offset + length > channel.size()) {
+                    throw new IOException("corrupt Fakebook snapshot: " + path);
+                }
+                sections[section] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(FileOrder);
+            }
+            return new FakebookSnapshot(sections);
+        }
+    }
+
+    // [Save Function]
+    // MODIFIES: the file at <path>
+    // EFFECTS:  writes this snapshot to the file at <path>, replacing any file there, in the
+    //           format open() maps; the snapshot is written to a temporary file in the same
+    //           directory and then renamed over <path>, so a process that has the old file
+    //           mapped keeps reading it and a crash never leaves a partial file at <path>
+    public void save(Path path) throws IOException {
+        Buffer[] sections = sections();
+        ByteBuffer header = ByteBuffer.allocate(HeaderBytes).order(FileOrder);
+        header.putLong(Magic);
+        header.putInt(SectionCount);
+        long offset = HeaderBytes;
+        for (Buffer section : sections) {
+            offset = align(offset);
+            header.putLong(offset);
+            header.putLong(byteLength(section));
+            offset += byteLength(section);
+        }
+        header.flip();
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                writeFully(channel, header, 0);
+                offset = HeaderBytes;
+                for (Buffer section : sections) {
+                    offset = align(offset);
+                    offset += write(channel, section, offset);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Users
+    // The functions taking a <user> take its dense index, in [0, userCount())
+    public int userCount() {
+        return userIDs.limit();
+    }
+
+    public long userID(int user) {
+        return userIDs.get(user);
+    }
+
+    // EFFECTS:  returns the dense index of the user with ID <userID>, or -1 if there is none
+    public int userIndex(long userID) {
+        int low = 0;
+        int high = userIDs.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = userIDs.get(middle);
+            if (id < userID) {
+                low = middle + 1;
+            } else if (id > userID) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public UserInfo user(int user) {
+        return new UserInfo(userIDs.get(user), firstName(user), lastName(user));
+    }
+
+    public String firstName(int user) {
+        int code = firstNames.get(user);
+        return code < 0 ? null : firstNameDictionary.get(code);
+    }
+
+    public String lastName(int user) {
+        int code = lastNames.get(user);
+        return code < 0 ? null : lastNameDictionary.get(code);
+    }
+
+    public int firstNameCode(int user) {
+        return firstNames.get(user);
+    }
+
+    public int lastNameCode(int user) {
+        return lastNames.get(user);
+    }
+
+    public int genderCode(int user) {
+        return genders.get(user);
+    }
+
+    // EFFECTS:  returns the number of distinct (non-NULL) first names; their codes are
+    //           [0, firstNameCodeCount()), in binary order
+    public int firstNameCodeCount() {
+        return firstNameDictionary.size();
+    }
+
+    public String firstNameForCode(int code) {
+        return firstNameDictionary.get(code);
+    }
+
+    public int birthYear(int user) {
+        return birthYears.get(user);
+    }
+
+    public int birthMonth(int user) {
+        return birthMonths.get(user);
+    }
+
+    public int birthDay(int user) {
+        return birthDays.get(user);
+    }
+
+    // Friends (CSR)
+    // EFFECTS:  returns the position of the first friend of <user>; the friends of <user> are
+    //           at [friendOffset(user), friendOffset(user + 1)), by ascending index
+    public int friendOffset(int user) {
+        return friendOffsets.get(user);
+    }
+
+    public int friendAt(int position) {
+        return friends.get(position);
+    }
+
+    // EFFECTS:  returns whether users <user1> and <user2> are friends
+    public boolean isFriend(int user1, int user2) {
+        int low = friendOffsets.get(user1);
+        int high = friendOffsets.get(user1 + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int friend = friends.get(middle);
+            if (friend < user2) {
+                low = middle + 1;
+            } else if (friend > user2) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Cities (CSR)
+    // The current city and hometown codes of <user> are at [currentCityOffset(user),
+    // currentCityOffset(user + 1)) and [hometownOffset(user), hometownOffset(user + 1))
+    public int currentCityOffset(int user) {
+        return currentCityOffsets.get(user);
+    }
+
+    public int currentCityAt(int position) {
+        return currentCities.get(position);
+    }
+
+    public int hometownOffset(int user) {
+        return hometownOffsets.get(user);
+    }
+
+    public int hometownAt(int position) {
+        return hometowns.get(position);
+    }
+
+    // Photos
+    // The functions taking a <photo> take its dense index, in [0, photoCount())
+    public int photoCount() {
+        return photoIDs.limit();
+    }
+
+    public long photoID(int photo) {
+        return photoIDs.get(photo);
+    }
+
+    public PhotoInfo photo(int photo) {
+        int album = photoAlbums.get(photo);
+        return new PhotoInfo(photoIDs.get(photo), albumIDs.get(album), photoLinks.get(photo), albumNames.get(album));
+    }
+
+    // Tags (CSR)
+    // The users tagged in <photo> are at [photoTagOffset(photo), photoTagOffset(photo + 1)),
+    // and the photos <user> is tagged in at [userTagOffset(user), userTagOffset(user + 1))
+    public int photoTagOffset(int photo) {
+        return photoTagOffsets.get(photo);
+    }
+
+    public int photoTagAt(int position) {
+        return photoTags.get(position);
+    }
+
+    public int userTagOffset(int user) {
+        return userTagOffsets.get(user);
+    }
+
+    public int userTagAt(int position) {
+        return userTags.get(position);
+    }
+
+    // Events
+    // The functions taking a <state> take its index, in [0, stateCount())
+    public int stateCount() {
+        return stateNames.size();
+    }
+
+    public String stateName(int state) {
+        return stateNames.get(state);
+    }
+
+    public long stateEventCount(int state) {
+        return stateEventCounts.get(state);
+    }
+
+    /*
+        The Builder class collects the rows of a snapshot, in any order, and builds it. Only
+        the columns the queries read are passed in; a NULL birth date part is passed as
+        <NoValue>.
+    */
+    public static final class Builder {
+        // [Add Row Functions]
+        // MODIFIES: this
+        // EFFECTS:  adds one row of the table of the same name
+        public void addUser(long userID, String firstName, String lastName, int year, int month, int day,
+                String gender) {
+            userIDs.add(userID);
+            firstNames.add(firstName);
+            lastNames.add(lastName);
+            birthYears.add(year);
+            birthMonths.add(month);
+            birthDays.add(day);
+            genders.add(gender);
+        }
+
+        public void addFriendship(long user1ID, long user2ID) {
+            friendships.add(user1ID);
+            friendships.add(user2ID);
+        }
+
+        public void addCurrentCity(long userID, long cityID) {
+            currentCities.add(userID);
+            currentCities.add(cityID);
+        }
+
+        public void addHometownCity(long userID, long cityID) {
+            hometowns.add(userID);
+            hometowns.add(cityID);
+        }
+
+        public void addCity(long cityID, String stateName) {
+            cityStates.put(cityID, stateName);
+        }
+
+        public void addEvent(long cityID) {
+            eventCities.add(cityID);
+        }
+
+        public void addAlbum(long albumID, String albumName) {
+            albumIDs.add(albumID);
+            albumNames.add(albumName);
+        }
+
+        public void addPhoto(long photoID, long albumID, String link) {
+            photos.add(photoID);
+            photos.add(albumID);
+            photoLinks.add(link);
+        }
+
+        public void addTag(long photoID, long userID) {
+            tags.add(photoID);
+            tags.add(userID);
+        }
+
+        // [Build Function]
+        // EFFECTS:  returns a snapshot of the rows added so far
+        public FakebookSnapshot build() {
+            return new FakebookSnapshot(this);
+        }
+
+        private final LongColumn userIDs = new LongColumn();
+        private final ArrayList<String> firstNames = new ArrayList<String>();
+        private final ArrayList<String> lastNames = new ArrayList<String>();
+        private final IntColumn birthYears = new IntColumn();
+        private final IntColumn birthMonths = new IntColumn();
+        private final IntColumn birthDays = new IntColumn();
+        private final ArrayList<String> genders = new ArrayList<String>();
+        private final LongColumn friendships = new LongColumn(); // (user1, user2) pairs
+        private final LongColumn currentCities = new LongColumn(); // (user, city) pairs
+        private final LongColumn hometowns = new LongColumn(); // (user, city) pairs
+        private final HashMap<Long, String> cityStates = new HashMap<Long, String>();
+        private final LongColumn eventCities = new LongColumn();
+        private final LongColumn albumIDs = new LongColumn();
+        private final ArrayList<String> albumNames = new ArrayList<String>();
+        private final LongColumn photos = new LongColumn(); // (photo, album) pairs
+        private final ArrayList<String> photoLinks = new ArrayList<String>();
+        private final LongColumn tags = new LongColumn(); // (photo, user) pairs
+    }
+
+    // [Constructor]
+    private FakebookSnapshot(Builder builder) {
+        // Users, renumbered in ascending ID order
+        int userCount = builder.userIDs.size;
+        long[] ids = Arrays.copyOf(builder.userIDs.values, userCount);
+        Arrays.sort(ids);
+        LongIntHashMap userIndexes = new LongIntHashMap(userCount);
+        for (int user = 0; user < userCount; user++) {
+            userIndexes.put(ids[user], user);
+        }
+        userIDs = LongBuffer.wrap(ids);
+        int[] order = new int[userCount]; // the dense index of each added user row
+        for (int row = 0; row < userCount; row++) {
+            order[row] = userIndexes.get(builder.userIDs.values[row], -1);
+        }
+        String[] firstNameValues = dictionary(builder.firstNames);
+        String[] lastNameValues = dictionary(builder.lastNames);
+        String[] genderValues = dictionary(builder.genders);
+        firstNameDictionary = new Strings(firstNameValues);
+        lastNameDictionary = new Strings(lastNameValues);
+        firstNames = IntBuffer.wrap(encode(builder.firstNames, firstNameValues, order));
+        lastNames = IntBuffer.wrap(encode(builder.lastNames, lastNameValues, order));
+        genders = IntBuffer.wrap(encode(builder.genders, genderValues, order));
+        int[] years = new int[userCount];
+        int[] months = new int[userCount];
+        int[] days = new int[userCount];
+        for (int row = 0; row < userCount; row++) {
+            years[order[row]] = builder.birthYears.values[row];
+            months[order[row]] = builder.birthMonths.values[row];
+            days[order[row]] = builder.birthDays.values[row];
+        }
+        birthYears = IntBuffer.wrap(years);
+        birthMonths = IntBuffer.wrap(months);
+        birthDays = IntBuffer.wrap(days);
+
+        // Friends, in both directions
+        IntColumn sources = new IntColumn();
+        IntColumn targets = new IntColumn();
+        for (int idx = 0; idx < builder.friendships.size; idx += 2) {
+            int user1 = userIndexes.get(builder.friendships.values[idx], -1);
+            int user2 = userIndexes.get(builder.friendships.values[idx + 1], -1);
+            if (user1 >= 0 && user2 >= 0) {
+                sources.add(user1);
+                targets.add(user2);
+                sources.add(user2);
+                targets.add(user1);
+            }
+        }
+        int[] offsets = offsets(sources, userCount);
+        friendOffsets = IntBuffer.wrap(offsets);
+        friends = IntBuffer.wrap(fill(sources, targets, offsets));
+
+        // Cities, coded densely in the order they are first seen
+        LongIntHashMap cityCodes = new LongIntHashMap();
+        sources = new IntColumn();
+        targets = new IntColumn();
+        offsets = cityOffsets(builder.currentCities, userIndexes, cityCodes, sources, targets);
+        currentCityOffsets = IntBuffer.wrap(offsets);
+        currentCities = IntBuffer.wrap(fill(sources, targets, offsets));
+        sources = new IntColumn();
+        targets = new IntColumn();
+        offsets = cityOffsets(builder.hometowns, userIndexes, cityCodes, sources, targets);
+        hometownOffsets = IntBuffer.wrap(offsets);
+        hometowns = IntBuffer.wrap(fill(sources, targets, offsets));
+
+        // Albums and photos; photos are renumbered in ascending ID order
+        LongIntHashMap albumIndexes = new LongIntHashMap(builder.albumIDs.size);
+        for (int album = 0; album < builder.albumIDs.size; album++) {
+            albumIndexes.put(builder.albumIDs.values[album], album);
+        }
+        albumIDs = LongBuffer.wrap(Arrays.copyOf(builder.albumIDs.values, builder.albumIDs.size));
+        albumNames = new Strings(builder.albumNames.toArray(new String[0]));
+        LongColumn photoIDColumn = new LongColumn();
+        for (int idx = 0; idx < builder.photos.size; idx += 2) {
+            if (albumIndexes.containsKey(builder.photos.values[idx + 1])) {
+                photoIDColumn.add(builder.photos.values[idx]);
+            }
+        }
+        long[] photoIDValues = Arrays.copyOf(photoIDColumn.values, photoIDColumn.size);
+        Arrays.sort(photoIDValues);
+        int photoCount = photoIDValues.length;
+        LongIntHashMap photoIndexes = new LongIntHashMap(photoCount);
+        for (int photo = 0; photo < photoCount; photo++) {
+            photoIndexes.put(photoIDValues[photo], photo);
+        }
+        int[] albums = new int[photoCount];
+        String[] links = new String[photoCount];
+        for (int idx = 0; idx < builder.photos.size; idx += 2) {
+            int album = albumIndexes.get(builder.photos.values[idx + 1], -1);
+            if (album >= 0) {
+                int photo = photoIndexes.get(builder.photos.values[idx], -1);
+                albums[photo] = album;
+                links[photo] = builder.photoLinks.get(idx / 2);
+            }
+        }
+        photoIDs = LongBuffer.wrap(photoIDValues);
+        photoAlbums = IntBuffer.wrap(albums);
+        photoLinks = new Strings(links);
+
+        // Tags, indexed both by photo and by user
+        IntColumn tagPhotos = new IntColumn();
+        IntColumn tagUsers = new IntColumn();
+        for (int idx = 0; idx < builder.tags.size; idx += 2) {
+            int photo = photoIndexes.get(builder.tags.values[idx], -1);
+            int user = userIndexes.get(builder.tags.values[idx + 1], -1);
+            if (photo >= 0 && user >= 0) {
+                tagPhotos.add(photo);
+                tagUsers.add(user);
+            }
+        }
+        offsets = offsets(tagPhotos, photoCount);
+        photoTagOffsets = IntBuffer.wrap(offsets);
+        photoTags = IntBuffer.wrap(fill(tagPhotos, tagUsers, offsets));
+        offsets = offsets(tagUsers, userCount);
+        userTagOffsets = IntBuffer.wrap(offsets);
+        userTags = IntBuffer.wrap(fill(tagUsers, tagPhotos, offsets));
+
+        // Events, counted per state
+        HashMap<String, long[]> stateCounts = new HashMap<String, long[]>();
+        for (int idx = 0; idx < builder.eventCities.size; idx++) {
+            Long cityID = builder.eventCities.values[idx];
+            if (!builder.cityStates.containsKey(cityID)) {
+                continue;
+            }
+            String state = builder.cityStates.get(cityID);
+            long[] count = stateCounts.get(state);
+            if (count == null) {
+                stateCounts.put(state, count = new long[1]);
+            }
+            count[0]++;
+        }
+        String[] states = dictionary(stateCounts.keySet());
+        if (stateCounts.containsKey(null)) {
+            states = Arrays.copyOf(states, states.length + 1); // NULL sorts last
+        }
+        long[] eventCounts = new long[states.length];
+        for (int state = 0; state < states.length; state++) {
+            eventCounts[state] = stateCounts.get(states[state])[0];
+        }
+        stateNames = new Strings(states);
+        stateEventCounts = LongBuffer.wrap(eventCounts);
+    }
+
+    // [Constructor]
+    // REQUIRES: <sections> are the sections of a snapshot file, in order (see sections())
+    private FakebookSnapshot(ByteBuffer[] sections) {
+        userIDs = sections[0].asLongBuffer();
+        firstNames = sections[1].asIntBuffer();
+        lastNames = sections[2].asIntBuffer();
+        genders = sections[3].asIntBuffer();
+        birthYears = sections[4].asIntBuffer();
+        birthMonths = sections[5].asIntBuffer();
+        birthDays = sections[6].asIntBuffer();
+        firstNameDictionary = new Strings(sections[7].asIntBuffer(), sections[8].asIntBuffer(), sections[9]);
+        lastNameDictionary = new Strings(sections[10].asIntBuffer(), sections[11].asIntBuffer(), sections[12]);
+        friendOffsets = sections[13].asIntBuffer();
+        friends = sections[14].asIntBuffer();
+        currentCityOffsets = sections[15].asIntBuffer();
+        currentCities = sections[16].asIntBuffer();
+        hometownOffsets = sections[17].asIntBuffer();
+        hometowns = sections[18].asIntBuffer();
+        photoIDs = sections[19].asLongBuffer();
+        photoAlbums = sections[20].asIntBuffer();
+        photoLinks = new Strings(sections[21].asIntBuffer(), sections[22].asIntBuffer(), sections[23]);
+        albumIDs = sections[24].asLongBuffer();
+        albumNames = new Strings(sections[25].asIntBuffer(), sections[26].asIntBuffer(), sections[27]);
+        photoTagOffsets = sections[28].asIntBuffer();
+        photoTags = sections[29].asIntBuffer();
+        userTagOffsets = sections[30].asIntBuffer();
+        userTags = sections[31].asIntBuffer();
+        stateNames = new Strings(sections[32].asIntBuffer(), sections[33].asIntBuffer(), sections[34]);
+        stateEventCounts = sections[35].asLongBuffer();
+    }
+
+    // [Sections Function]
+    // EFFECTS:  returns the columns of this snapshot in the order of the sections of its file,
+    //           each string column as its starts, lengths, and bytes
+    private Buffer[] sections() {
+        ArrayList<Buffer> sections = new ArrayList<Buffer>();
+        sections.addAll(Arrays.<Buffer>asList(userIDs, firstNames, lastNames, genders, birthYears, birthMonths,
+                birthDays));
+        sections.addAll(Arrays.asList(firstNameDictionary.sections()));
+        sections.addAll(Arrays.asList(lastNameDictionary.sections()));
+        sections.addAll(Arrays.<Buffer>asList(friendOffsets, friends, currentCityOffsets, currentCities,
+                hometownOffsets, hometowns, photoIDs, photoAlbums));
+        sections.addAll(Arrays.asList(photoLinks.sections()));
+        sections.add(albumIDs);
+        sections.addAll(Arrays.asList(albumNames.sections()));
+        sections.addAll(Arrays.<Buffer>asList(photoTagOffsets, photoTags, userTagOffsets, userTags));
+        sections.addAll(Arrays.asList(stateNames.sections()));
+        sections.add(stateEventCounts);
+        return sections.toArray(new Buffer[0]);
+    }
+
+    // [Write Function]
+    // MODIFIES: the file of <channel>
+    // EFFECTS:  writes the elements of <section> to <channel> from byte <position> on, in the
+    //           byte order of the file, and returns the number of bytes written
+    private static long write(FileChannel channel, Buffer section, long position) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(WriteChunkBytes).order(FileOrder);
+        long written = 0;
+        for (int idx = 0; idx < section.limit(); idx++) {
+            if (chunk.remaining() < 8) {
+                chunk.flip();
+                written += writeFully(channel, chunk, position + written);
+                chunk.clear();
+            }
+            if (section instanceof LongBuffer) {
+                chunk.putLong(((LongBuffer) section).get(idx));
+            } else if (section instanceof IntBuffer) {
+                chunk.putInt(((IntBuffer) section).get(idx));
+            } else {
+                chunk.put(((ByteBuffer) section).get(idx));
+            }
+        }
+        chunk.flip();
+        return written + writeFully(channel, chunk, position + written);
+    }
+
+    // [Write Fully Function]
+    // MODIFIES: the file of <channel>, <bytes>
+    // EFFECTS:  writes the remaining bytes of <bytes> to <channel> from byte <position> on, and
+    //           returns how many there were
+    private static long writeFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        long written = 0;
+        while (bytes.hasRemaining()) {
+            written += channel.write(bytes, position + written);
+        }
+        return written;
+    }
+
+    // [Byte Length Function]
+    // EFFECTS:  returns the number of bytes the elements of <section> take in the file
+    private static long byteLength(Buffer section) {
+        int width = section instanceof LongBuffer ? 8 : section instanceof IntBuffer ? 4 : 1;
+        return (long) width * section.limit();
+    }
+
+    // [Align Function]
+    // EFFECTS:  returns the first multiple of 8 that is not less than <offset>, so that every
+    //           section can be viewed as 8-byte or 4-byte integers
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    // [Integer Column Function]
+    // EFFECTS:  returns the integer in column <column> of the current row of <rst>, or
+    //           <NoValue> if it is NULL
+    private static int intValue(ResultSet rst, int column) throws SQLException {
+        int value = rst.getInt(column);
+        return rst.wasNull() ? NoValue : value;
+    }
+
+    // [Dictionary Function]
+    // EFFECTS:  returns the distinct non-NULL strings of <values>, in binary order
+    private static String[] dictionary(Iterable<String> values) {
+        HashSet<String> distinct = new HashSet<String>();
+        for (String value : values) {
+            if (value != null) {
+                distinct.add(value);
+            }
+        }
+        String[] dictionary = distinct.toArray(new String[0]);
+        Arrays.sort(dictionary, BinaryOrder);
+        return dictionary;
+    }
+
+    // [Encode Function]
+    // EFFECTS:  returns the code of each string of <values> in <dictionary> (-1 for NULL), stored
+    //           at the position <order> gives for its row
+    private static int[] encode(ArrayList<String> values, String[] dictionary, int[] order) {
+        HashMap<String, Integer> codes = new HashMap<String, Integer>();
+        for (int code = 0; code < dictionary.length; code++) {
+            codes.put(dictionary[code], code);
+        }
+        int[] encoded = new int[values.size()];
+        for (int row = 0; row < encoded.length; row++) {
+            String value = values.get(row);
+            encoded[order[row]] = value == null ? -1 : codes.get(value);
+        }
+        return encoded;
+    }
+
+    // [City Offsets Function]
+    // MODIFIES: <cityCodes>, <sources>, <targets>
+    // EFFECTS:  adds the user index and city code of each (user, city) pair in <pairs> whose
+    //           user is in <userIndexes> to <sources> and <targets>, coding new cities in
+    //           <cityCodes>, and returns the CSR offsets of the users
+    private static int[] cityOffsets(LongColumn pairs, LongIntHashMap userIndexes, LongIntHashMap cityCodes,
+            IntColumn sources, IntColumn targets) {
+        for (int idx = 0; idx < pairs.size; idx += 2) {
+            int user = userIndexes.get(pairs.values[idx], -1);
+            if (user < 0) {
+                continue;
+            }
+            int code = cityCodes.get(pairs.values[idx + 1], -1);
+            if (code < 0) {
+                code = cityCodes.size();
+                cityCodes.put(pairs.values[idx + 1], code);
+            }
+            sources.add(user);
+            targets.add(code);
+        }
+        return offsets(sources, userIndexes.size());
+    }
+
+    // [Offsets Function]
+    // REQUIRES: every element of <keys> is in [0, <count>)
+    // EFFECTS:  returns the CSR offsets of <count> keys holding the elements of <keys>
+    private static int[] offsets(IntColumn keys, int count) {
+        int[] offsets = new int[count + 1];
+        for (int idx = 0; idx < keys.size; idx++) {
+            offsets[keys.values[idx] + 1]++;
+        }
+        for (int key = 0; key < count; key++) {
+            offsets[key + 1] += offsets[key];
+        }
+        return offsets;
+    }
+
+    // [Fill Function]
+    // REQUIRES: <offsets> was computed from <keys>
+    // EFFECTS:  returns the CSR entries holding each element of <values> under the matching
+    //           element of <keys>, sorted in ascending order under each key
+    private static int[] fill(IntColumn keys, IntColumn values, int[] offsets) {
+        int[] entries = new int[keys.size];
+        int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int idx = 0; idx < keys.size; idx++) {
+            entries[next[keys.values[idx]]++] = values.values[idx];
+        }
+        for (int key = 0; key + 1 < offsets.length; key++) {
+            Arrays.sort(entries, offsets[key], offsets[key + 1]);
+        }
+        return entries;
+    }
+
+    /*
+        The LongColumn and IntColumn classes are growable arrays of primitive values.
+    */
+    private static final class LongColumn {
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        long[] values = new long[16];
+        int size;
+    }
+
+    private static final class IntColumn {
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int[] values = new int[16];
+        int size;
+    }
+
+    /*
+        The Strings class is a column of strings, held either as an array of strings (in a
+        snapshot built in memory) or as the UTF-8 bytes of every string, with the start and
+        length (-1 for NULL) of each (in a snapshot opened from a file), which are decoded as
+        they are read.
+    */
+    private static final class Strings {
+        Strings(String[] values) {
+            this.values = values;
+            starts = null;
+            lengths = null;
+            bytes = null;
+        }
+
+        Strings(IntBuffer starts, IntBuffer lengths, ByteBuffer bytes) {
+            values = null;
+            this.starts = starts;
+            this.lengths = lengths;
+            this.bytes = bytes;
+        }
+
+        int size() {
+            return values != null ? values.length : lengths.limit();
+        }
+
+        String get(int idx) {
+            if (values != null) {
+                return values[idx];
+            }
+            int length = lengths.get(idx);
+            if (length < 0) {
+                return null;
+            }
+            byte[] utf8 = new byte[length];
+            ByteBuffer source = bytes.duplicate();
+            source.position(starts.get(idx));
+            source.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        // EFFECTS:  returns the starts, lengths, and bytes of the strings, encoding them if
+        //           they are held as strings
+        Buffer[] sections() {
+            if (values == null) {
+                return new Buffer[] { starts, lengths, bytes };
+            }
+            byte[][] encoded = new byte[values.length][];
+            int[] startValues = new int[values.length];
+            int[] lengthValues = new int[values.length];
+            int total = 0;
+            for (int idx = 0; idx < values.length; idx++) {
+                startValues[idx] = total;
+                lengthValues[idx] = -1;
+                if (values[idx] != null) {
+                    encoded[idx] = values[idx].getBytes(StandardCharsets.UTF_8);
+                    lengthValues[idx] = encoded[idx].length;
+                    total += encoded[idx].length;
+                }
+            }
+            ByteBuffer all = ByteBuffer.allocate(total);
+            for (byte[] utf8 : encoded) {
+                if (utf8 != null) {
+                    all.put(utf8);
+                }
+            }
+            return new Buffer[] { IntBuffer.wrap(startValues), IntBuffer.wrap(lengthValues), all };
+        }
+
+        private final String[] values;
+        private final IntBuffer starts;
+        private final IntBuffer lengths;
+        private final ByteBuffer bytes;
+    }
+
+    // Constants
+    public static final int NoValue = FakebookAgeIndex.NoDate; // a NULL birth date part
+    private static final long Magic = 0x46424B534E415031L; // "FBKSNAP1"
+    private static final int SectionCount = 36;
+    private static final int HeaderBytes = 8 + 4 + 16 * SectionCount; // magic, count, (offset, length)s
+    private static final ByteOrder FileOrder = ByteOrder.LITTLE_ENDIAN;
+    private static final int WriteChunkBytes = 1 << 16;
+    static final Comparator<String> BinaryOrder = new Comparator<String>() {
+        // Compares by Unicode code point, as Oracle's BINARY sort of AL32UTF8 strings does
+        public int compare(String str1, String str2) {
+            int idx1 = 0;
+            int idx2 = 0;
+            while (idx1 < str1.length() && idx2 < str2.length()) {
+                int ch1 = str1.codePointAt(idx1);
+                int ch2 = str2.codePointAt(idx2);
+                if (ch1 != ch2) {
+                    return Integer.compare(ch1, ch2);
+                }
+                idx1 += Character.charCount(ch1);
+                idx2 += Character.charCount(ch2);
+            }
+            return Integer.compare(str1.length() - idx1, str2.length() - idx2);
+        }
+    };
+
+    // Member Variables
+    private final LongBuffer userIDs;
+    private final IntBuffer firstNames;
+    private final IntBuffer lastNames;
+    private final IntBuffer genders;
+    private final Strings firstNameDictionary;
+    private final Strings lastNameDictionary;
+    private final IntBuffer birthYears;
+    private final IntBuffer birthMonths;
+    private final IntBuffer birthDays;
+    private final IntBuffer friendOffsets;
+    private final IntBuffer friends;
+    private final IntBuffer currentCityOffsets;
+    private final IntBuffer currentCities;
+    private final IntBuffer hometownOffsets;
+    private final IntBuffer hometowns;
+    private final LongBuffer photoIDs;
+    private final IntBuffer photoAlbums;
+    private final Strings photoLinks;
+    private final LongBuffer albumIDs;
+    private final Strings albumNames;
+    private final IntBuffer photoTagOffsets;
+    private final IntBuffer photoTags;
+    private final IntBuffer userTagOffsets;
+    private final IntBuffer userTags;
+    private final Strings stateNames;
+    private final LongBuffer stateEventCounts;
+}
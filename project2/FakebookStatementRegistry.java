@@ -0,0 +1,221 @@
+package project2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+
+/*
+    The FakebookStatementRegistry class owns the prepared statements used by a FakebookOracle
+    implementation on one JDBC connection. Each query template is prepared (and therefore parsed
+    by the server) only the first time it is requested; later requests re-bind the parameters
+    of the same cursor and execute it again. The registry also counts, per template, how many
+    times it was parsed and executed and how many rows were fetched through it.
+*/
+final class FakebookStatementRegistry {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    public FakebookStatementRegistry(Connection connection) {
+        this.connection = connection;
+        templates = new LinkedHashMap<String, Template>();
+        resultSetType = FakebookOracleConstants.ForwardOnly;
+        fetchSize = FakebookOracleConstants.DefaultFetchSize;
+    }
+
+    // [Set Cursor Mode Function]
+    // REQUIRES: <resultSetType> is one of the ResultSet.TYPE_* constants and <fetchSize> is
+    //           positive
+    // MODIFIES: this
+    // EFFECTS:  sets the cursor type and fetch size used for templates prepared from now on;
+    //           if the mode changes, every template prepared so far is closed (its counts are
+    //           kept) so that it is prepared again in the new mode on its next execution
+    public void setCursorMode(int resultSetType, int fetchSize) throws SQLException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetch size must be positive: " + fetchSize);
+        }
+        if (resultSetType == this.resultSetType && fetchSize == this.fetchSize) {
+            return;
+        }
+        this.resultSetType = resultSetType;
+        this.fetchSize = fetchSize;
+        closeStatements();
+    }
+
+    // [Execute Query Function]
+    // REQUIRES: every use of <name> is paired with the same <sql>, and <sql> contains exactly
+    //           one placeholder per element of <binds>
+    // MODIFIES: this
+    // EFFECTS:  prepares <sql> if <name> has not been seen on this connection, binds <binds>
+    //           to its placeholders in order, executes it, and returns the result set; executing
+    //           a template again closes the result set returned by its previous execution
+    public ResultSet executeQuery(String name, String sql, Object... binds) throws SQLException {
+        long beginTime = System.nanoTime();
+        Template template = templates.get(name);
+        if (template == null) {
+            template = new Template();
+            templates.put(name, template);
+        }
+        if (template.statement == null) {
+            template.statement = connection.prepareStatement(sql, resultSetType, FakebookOracleConstants.ReadOnly);
+            template.statement.setFetchSize(fetchSize);
+            template.parses++;
+        }
+
+        PreparedStatement statement = template.statement;
+        for (int idx = 0; idx < binds.length; idx++) {
+            statement.setObject(idx + 1, binds[idx]);
+        }
+        active = statement;
+        ResultSet rst = statement.executeQuery();
+        template.executes++;
+        executeNanos += System.nanoTime() - beginTime;
+        return countingResultSet(rst, template);
+    }
+
+    // [Cancel Function]
+    // EFFECTS:  asks the database to abort the statement most recently executed through this
+    //           registry, if it is still executing or being fetched from; may be called from
+    //           any thread
+    public void cancel() throws SQLException {
+        PreparedStatement statement = active;
+        if (statement != null) {
+            statement.cancel();
+        }
+    }
+
+    // [Phase Times Function]
+    // EFFECTS:  returns the nanoseconds spent, since the last resetPhaseTimes(), in preparing
+    //           and executing statements ([0]) and in advancing result sets with next() ([1])
+    public long[] phaseTimes() {
+        return new long[] { executeNanos, fetchNanos };
+    }
+
+    // [Reset Phase Times Function]
+    // MODIFIES: this
+    // EFFECTS:  sets both phase times to zero
+    public void resetPhaseTimes() {
+        executeNanos = 0;
+        fetchNanos = 0;
+    }
+
+    // [Statistics Printing Function]
+    // EFFECTS:  writes one line per template with its parse, execute, and fetch counts, in the
+    //           order the templates were first prepared
+    public void printStatistics(Writer writer) throws IOException {
+        writer.write(String.format("%sStatement Statistics%s%n",
+                FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration));
+        for (String name : templates.keySet()) {
+            Template template = templates.get(name);
+            writer.write(String.format("%s: %d parse(s), %d execute(s), %d row(s) fetched%n",
+                    name, template.parses, template.executes, template.fetches));
+        }
+        writer.write(String.format("%n"));
+        writer.flush();
+    }
+
+    // [Close Function]
+    // MODIFIES: this
+    // EFFECTS:  closes every prepared statement and forgets all templates and their counts
+    public void close() throws SQLException {
+        try {
+            closeStatements();
+        } finally {
+            templates.clear();
+        }
+    }
+
+    // [Padded Size Function]
+    // REQUIRES: 0 < <count> <= <maxSize>
+    // EFFECTS:  returns the smallest of 1, 8, 64, and <maxSize> that is at least <count>; IN
+    //           lists of <count> values padded to it share one template per size, and a short
+    //           list is not padded all the way to <maxSize>
+    public static int paddedSize(int count, int maxSize) {
+        for (int size : PaddedSizes) {
+            if (count <= size && size < maxSize) {
+                return size;
+            }
+        }
+        return maxSize;
+    }
+
+    // [Close Statements Function]
+    // MODIFIES: this
+    // EFFECTS:  closes the prepared statement of every template, keeping the templates and
+    //           their counts
+    private void closeStatements() throws SQLException {
+        active = null;
+        SQLException failure = null;
+        for (Template template : templates.values()) {
+            if (template.statement == null) {
+                continue;
+            }
+            try {
+                template.statement.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+            template.statement = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // [Counting Result Set Function]
+    // EFFECTS:  returns a view of <rst> that adds one to the fetch count of <template> for each
+    //           row that next() advances to, and the time spent in next() to the fetch phase
+    private ResultSet countingResultSet(final ResultSet rst, final Template template) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                boolean next = method.getName().equals("next");
+                long beginTime = next ? System.nanoTime() : 0L;
+                try {
+                    Object value = method.invoke(rst, args);
+                    if (next && Boolean.TRUE.equals(value)) {
+                        template.fetches++;
+                    }
+                    return value;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    if (next) {
+                        fetchNanos += System.nanoTime() - beginTime;
+                    }
+                }
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, handler);
+    }
+
+    /*
+        The Template class pairs a prepared statement (NULL until it is prepared) with its
+        usage counters.
+    */
+    private static final class Template {
+        PreparedStatement statement;
+        long parses;
+        long executes;
+        long fetches;
+    }
+
+    // Constants
+    private static final int[] PaddedSizes = { 1, 8, 64 };
+
+    // Member Variables
+    private Connection connection;
+    private LinkedHashMap<String, Template> templates;
+    private int resultSetType;
+    private int fetchSize;
+    private long executeNanos;
+    private long fetchNanos;
+    private volatile PreparedStatement active;
+}
@@ -0,0 +1,383 @@
+package project2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/*
+    The FakebookSuggestionIndex class maintains the answer to Query 6 while friendships are
+    added and removed, so that the top pairs can be read without recomputing them. It keeps
+    the number of common friends of every pair of users that has at least one, keyed by the
+    pair in a primitive map, and ranks the pairs that are not friends in buckets by count: the
+    keys of bucket c are in a growable long array, in no particular order, and a second
+    primitive map holds the position of each ranked key in its bucket, so that a pair moves
+    between buckets in constant time.
+
+    Adding or removing the friendship (u, v) only changes the pairs (v, w) for the friends w
+    of u and the pairs (u, w) for the friends w of v, by one each, so an update costs time in
+    proportion to the number of friends of its two users. Reading the top <num> pairs offers
+    the pairs of the buckets from the highest count down to a bounded top-<num> heap, which
+    orders them as Query 6 does, and stops after the bucket that brings the total to <num>.
+
+    The users are those of the FakebookSnapshot the index is built from, which also provides
+    their names; its friendships are the initial ones, and catchUp() brings them up to date
+    with the Friends table. checkConsistency() recomputes every count from the current
+    friendships and compares them with the maintained ones.
+*/
+final class FakebookSuggestionIndex {
+    // [Constructor]
+    // EFFECTS:  creates an index of the friendships of <snapshot>
+    public FakebookSuggestionIndex(FakebookSnapshot snapshot) {
+        this.snapshot = snapshot;
+        int userCount = snapshot.userCount();
+        friends = new int[userCount][];
+        degrees = new int[userCount];
+        friendships = new LongIntHashMap(snapshot.friendOffset(userCount) / 2);
+        for (int user = 0; user < userCount; user++) {
+            friends[user] = new int[Math.max(4, snapshot.friendOffset(user + 1) - snapshot.friendOffset(user))];
+            for (int edge = snapshot.friendOffset(user); edge < snapshot.friendOffset(user + 1); edge++) {
+                int friend = snapshot.friendAt(edge);
+                friends[user][degrees[user]++] = friend;
+                if (user < friend) {
+                    friendships.put(pairKey(user, friend), 1);
+                }
+            }
+        }
+
+        counts = new LongIntHashMap();
+        positions = new LongIntHashMap();
+        bucketKeys = new long[1][];
+        bucketSizes = new int[1];
+        int[][] exact = commonFriendCounts();
+        for (int user1 = 0; user1 < userCount; user1++) {
+            for (int idx = 0; idx < exact[user1].length; idx += 2) {
+                long key = pairKey(user1, exact[user1][idx]);
+                counts.put(key, exact[user1][idx + 1]);
+                if (!friendships.containsKey(key)) {
+                    rank(key, exact[user1][idx + 1]);
+                }
+            }
+        }
+    }
+
+    // [Add Friendship Function]
+    // REQUIRES: both users are in the snapshot and are different users (or else an
+    //           IllegalArgumentException is thrown)
+    // MODIFIES: this
+    // EFFECTS:  makes users <user1ID> and <user2ID> friends and returns true, or returns false
+    //           if they already are
+    public synchronized boolean addFriendship(long user1ID, long user2ID) {
+        int user1 = index(user1ID);
+        int user2 = index(user2ID);
+        if (user1 == user2) {
+            throw new IllegalArgumentException("a user cannot be their own friend: " + user1ID);
+        }
+        return add(user1, user2);
+    }
+
+    // [Remove Friendship Function]
+    // REQUIRES: both users are in the snapshot and are different users (or else an
+    //           IllegalArgumentException is thrown)
+    // MODIFIES: this
+    // EFFECTS:  makes users <user1ID> and <user2ID> no longer friends and returns true, or
+    //           returns false if they were not friends
+    public synchronized boolean removeFriendship(long user1ID, long user2ID) {
+        int user1 = index(user1ID);
+        int user2 = index(user2ID);
+        if (user1 == user2) {
+            throw new IllegalArgumentException("a user cannot be their own friend: " + user1ID);
+        }
+        return remove(user1, user2);
+    }
+
+    // [Catch Up Function]
+    // MODIFIES: this
+    // EFFECTS:  reads the friendships of the Friends table through <statements> and adds and
+    //           removes friendships until the index holds the same ones, skipping those of
+    //           users that are not in the snapshot; returns the number of friendships added
+    //           and removed
+    public synchronized int catchUp(FakebookStatementRegistry statements) throws SQLException {
+        LongIntHashMap current = new LongIntHashMap(friendships.size());
+        int changes = 0;
+        ResultSet rst = statements.executeQuery("Suggestion Index: Friends",
+                "SELECT User1_ID, User2_ID FROM " + FakebookOracleConstants.FriendsTable);
+        while (rst.next()) {
+            int user1 = snapshot.userIndex(rst.getLong(1));
+            int user2 = snapshot.userIndex(rst.getLong(2));
+            if (user1 >= 0 && user2 >= 0 && user1 != user2) {
+                current.put(pairKey(user1, user2), 1);
+                changes += add(user1, user2) ? 1 : 0;
+            }
+        }
+        rst.close();
+        for (long key : friendships.keys()) {
+            if (!current.containsKey(key)) {
+                changes += remove((int) (key >>> 32), (int) key) ? 1 : 0;
+            }
+        }
+        return changes;
+    }
+
+    // [Common Friends Function]
+    // REQUIRES: both users are in the snapshot and are different users
+    // EFFECTS:  returns the number of friends users <user1ID> and <user2ID> have in common
+    public synchronized int commonFriends(long user1ID, long user2ID) {
+        return counts.get(pairKey(index(user1ID), index(user2ID)), 0);
+    }
+
+    // [Suggest Friends Function]
+    // EFFECTS:  returns the result of Query 6 for the current friendships
+    public synchronized FakebookArrayList<UsersPair> suggestFriends(int num) {
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        FakebookTopPairs top = new FakebookTopPairs(Math.max(num, 0));
+        long offered = 0;
+        for (int count = bucketSizes.length - 1; count > 0 && offered < num; count--) {
+            for (int idx = 0; idx < bucketSizes[count]; idx++) {
+                long key = bucketKeys[count][idx];
+                top.offer(count, (int) (key >>> 32), (int) key);
+            }
+            offered += bucketSizes[count];
+        }
+
+        for (int rank = 0; rank < top.size(); rank++) {
+            int user1 = top.user1(rank);
+            int user2 = top.user2(rank);
+            UsersPair pair = new UsersPair(snapshot.user(user1), snapshot.user(user2));
+            int[] friends1 = Arrays.copyOf(friends[user1], degrees[user1]);
+            int[] friends2 = Arrays.copyOf(friends[user2], degrees[user2]);
+            Arrays.sort(friends1);
+            Arrays.sort(friends2);
+            for (int idx1 = 0, idx2 = 0; idx1 < friends1.length && idx2 < friends2.length; ) {
+                if (friends1[idx1] == friends2[idx2]) {
+                    pair.addSharedFriend(snapshot.user(friends1[idx1]));
+                }
+                int friend1 = friends1[idx1];
+                idx1 += friend1 <= friends2[idx2] ? 1 : 0;
+                idx2 += friends2[idx2] <= friend1 ? 1 : 0;
+            }
+            results.add(pair);
+        }
+        return results;
+    }
+
+    // [Check Consistency Function]
+    // EFFECTS:  recomputes the common friend counts of all pairs from the current friendships
+    //           and throws an IllegalStateException describing the first difference from the
+    //           maintained counts or rankings, if there is one
+    public synchronized void checkConsistency() {
+        int[][] exact = commonFriendCounts();
+        long pairs = 0;
+        long ranked = 0;
+        for (int user1 = 0; user1 < exact.length; user1++) {
+            for (int idx = 0; idx < exact[user1].length; idx += 2) {
+                int user2 = exact[user1][idx];
+                int count = exact[user1][idx + 1];
+                long key = pairKey(user1, user2);
+                if (counts.get(key, 0) != count) {
+                    throw new IllegalStateException(String.format("users %d and %d have %d common friend(s), not %d",
+                            snapshot.userID(user1), snapshot.userID(user2), count, counts.get(key, 0)));
+                }
+                if (!friendships.containsKey(key)) {
+                    int position = positions.get(key, -1);
+                    if (count >= bucketSizes.length || position < 0 || position >= bucketSizes[count]
+                            || bucketKeys[count][position] != key) {
+                        throw new IllegalStateException(String.format("users %d and %d are not ranked with %d",
+                                snapshot.userID(user1), snapshot.userID(user2), count));
+                    }
+                    ranked++;
+                }
+                pairs++;
+            }
+        }
+        if (pairs != counts.size()) {
+            throw new IllegalStateException(String.format("%d pair(s) have common friends, not %d", pairs,
+                    counts.size()));
+        }
+        long rankedSize = 0;
+        for (int size : bucketSizes) {
+            rankedSize += size;
+        }
+        if (ranked != rankedSize || ranked != positions.size()) {
+            throw new IllegalStateException(String.format("%d pair(s) should be ranked, not %d", ranked, rankedSize));
+        }
+    }
+
+    // [Add Function]
+    // REQUIRES: <user1> and <user2> are different
+    // MODIFIES: this
+    // EFFECTS:  makes <user1> and <user2> friends and returns true, or returns false if they
+    //           already are
+    private boolean add(int user1, int user2) {
+        long key = pairKey(user1, user2);
+        if (friendships.containsKey(key)) {
+            return false;
+        }
+        for (int idx = 0; idx < degrees[user1]; idx++) {
+            adjust(user2, friends[user1][idx], 1);
+        }
+        for (int idx = 0; idx < degrees[user2]; idx++) {
+            adjust(user1, friends[user2][idx], 1);
+        }
+        unrank(key, counts.get(key, 0));
+        friendships.put(key, 1);
+        link(user1, user2);
+        link(user2, user1);
+        return true;
+    }
+
+    // [Remove Function]
+    // REQUIRES: <user1> and <user2> are different
+    // MODIFIES: this
+    // EFFECTS:  makes <user1> and <user2> no longer friends and returns true, or returns false
+    //           if they were not friends
+    private boolean remove(int user1, int user2) {
+        long key = pairKey(user1, user2);
+        if (!friendships.remove(key)) {
+            return false;
+        }
+        unlink(user1, user2);
+        unlink(user2, user1);
+        rank(key, counts.get(key, 0));
+        for (int idx = 0; idx < degrees[user1]; idx++) {
+            adjust(user2, friends[user1][idx], -1);
+        }
+        for (int idx = 0; idx < degrees[user2]; idx++) {
+            adjust(user1, friends[user2][idx], -1);
+        }
+        return true;
+    }
+
+    // [Common Friend Counts Function]
+    // EFFECTS:  returns, for each user, the users after it that it has common friends with and
+    //           how many, as (user, count) pairs, computed from the current friendships
+    private int[][] commonFriendCounts() {
+        int userCount = friends.length;
+        int[] pairCounts = new int[userCount]; // all zero between users
+        int[] touched = new int[userCount];
+        int[][] exact = new int[userCount][];
+        for (int user1 = 0; user1 < userCount; user1++) {
+            int touchedCount = 0;
+            for (int idx = 0; idx < degrees[user1]; idx++) {
+                int friend = friends[user1][idx];
+                for (int hop = 0; hop < degrees[friend]; hop++) {
+                    int user2 = friends[friend][hop];
+                    if (user2 > user1 && pairCounts[user2]++ == 0) {
+                        touched[touchedCount++] = user2;
+                    }
+                }
+            }
+            exact[user1] = new int[2 * touchedCount];
+            for (int idx = 0; idx < touchedCount; idx++) {
+                exact[user1][2 * idx] = touched[idx];
+                exact[user1][2 * idx + 1] = pairCounts[touched[idx]];
+                pairCounts[touched[idx]] = 0;
+            }
+        }
+        return exact;
+    }
+
+    // [Adjust Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <delta> to the common friend count of <user1> and <user2>, re-ranking the
+    //           pair if they are not friends
+    private void adjust(int user1, int user2, int delta) {
+        long key = pairKey(user1, user2);
+        int count = counts.get(key, 0);
+        if (count + delta == 0) {
+            counts.remove(key);
+        } else {
+            counts.put(key, count + delta);
+        }
+        if (!friendships.containsKey(key)) {
+            unrank(key, count);
+            rank(key, count + delta);
+        }
+    }
+
+    // [Rank Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <key> to the bucket of <count>, unless <count> is 0
+    private void rank(long key, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count >= bucketSizes.length) {
+            bucketKeys = Arrays.copyOf(bucketKeys, Math.max(count + 1, 2 * bucketSizes.length));
+            bucketSizes = Arrays.copyOf(bucketSizes, bucketKeys.length);
+        }
+        if (bucketKeys[count] == null) {
+            bucketKeys[count] = new long[4];
+        } else if (bucketSizes[count] == bucketKeys[count].length) {
+            bucketKeys[count] = Arrays.copyOf(bucketKeys[count], 2 * bucketSizes[count]);
+        }
+        positions.put(key, bucketSizes[count]);
+        bucketKeys[count][bucketSizes[count]++] = key;
+    }
+
+    // [Unrank Function]
+    // REQUIRES: <key> is in the bucket of <count>, unless <count> is 0
+    // MODIFIES: this
+    // EFFECTS:  removes <key> from the bucket of <count>, moving the last key of the bucket
+    //           into its place
+    private void unrank(long key, int count) {
+        if (count == 0) {
+            return;
+        }
+        int position = positions.get(key, -1);
+        long last = bucketKeys[count][--bucketSizes[count]];
+        bucketKeys[count][position] = last;
+        positions.put(last, position);
+        positions.remove(key);
+    }
+
+    // [Link Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <friend> to the friends of <user>
+    private void link(int user, int friend) {
+        if (degrees[user] == friends[user].length) {
+            friends[user] = Arrays.copyOf(friends[user], 2 * degrees[user]);
+        }
+        friends[user][degrees[user]++] = friend;
+    }
+
+    // [Unlink Function]
+    // MODIFIES: this
+    // EFFECTS:  removes <friend> from the friends of <user>, moving the last friend into its place
+    private void unlink(int user, int friend) {
+        for (int idx = 0; idx < degrees[user]; idx++) {
+            if (friends[user][idx] == friend) {
+                friends[user][idx] = friends[user][--degrees[user]];
+                return;
+            }
+        }
+    }
+
+    // [Index Function]
+    // EFFECTS:  returns the dense index of user <userID>; throws IllegalArgumentException if
+    //           the user is not in the snapshot
+    private int index(long userID) {
+        int user = snapshot.userIndex(userID);
+        if (user < 0) {
+            throw new IllegalArgumentException("unknown user: " + userID);
+        }
+        return user;
+    }
+
+    // [Pair Key Function]
+    // REQUIRES: <user1> and <user2> are different
+    // EFFECTS:  returns a key identifying the unordered pair of users; keys sort by the smaller
+    //           user, then by the larger one
+    private static long pairKey(int user1, int user2) {
+        return user1 < user2 ? ((long) user1 << 32) | user2 : ((long) user2 << 32) | user1;
+    }
+
+    // Member Variables
+    private final FakebookSnapshot snapshot;
+    private final int[][] friends; // the friends of each user, in no particular order
+    private final int[] degrees; // the number of friends of each user
+    private final LongIntHashMap friendships; // pair keys of the current friendships
+    private final LongIntHashMap counts; // common friend count of each pair that has any
+    private final LongIntHashMap positions; // position of each ranked pair in its bucket
+    private long[][] bucketKeys; // the non-friend pairs with each count, in no particular order
+    private int[] bucketSizes; // the number of pairs in each bucket
+}
@@ -0,0 +1,79 @@
+package project2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+    The FakebookTimingStatistics class collects the timings of repeated runs of one query.
+    Each run is split into three phases: executing statements (including preparing them),
+    fetching and iterating over result rows, and everything else the query does, which is
+    mostly constructing its result objects. The summary of every phase (min, median, p95, p99,
+    and max, in milliseconds) is written as a single line of JSON so that runs can be
+    collected and compared over time; numbers are formatted in the root locale, so the JSON is
+    the same whatever the default locale is.
+*/
+final class FakebookTimingStatistics {
+    // [Constructor]
+    // REQUIRES: <iterations> is positive
+    public FakebookTimingStatistics(int query, int warmupIterations, int iterations) {
+        this.query = query;
+        this.warmupIterations = warmupIterations;
+        totalNanos = new long[iterations];
+        executeNanos = new long[iterations];
+        fetchNanos = new long[iterations];
+        constructNanos = new long[iterations];
+    }
+
+    // [Add Sample Function]
+    // REQUIRES: fewer samples than <iterations> have been added
+    // MODIFIES: this
+    // EFFECTS:  records one run that took <total> nanoseconds, <execute> of them executing
+    //           statements and <fetch> of them fetching rows
+    public void addSample(long total, long execute, long fetch) {
+        totalNanos[samples] = total;
+        executeNanos[samples] = execute;
+        fetchNanos[samples] = fetch;
+        constructNanos[samples] = Math.max(0L, total - execute - fetch);
+        samples++;
+    }
+
+    // [JSON Writing Function]
+    // EFFECTS:  writes the summary of the recorded runs as one line of JSON
+    public void writeJSON(Writer writer, long timestamp) throws IOException {
+        writer.write(String.format(Locale.ROOT, "{\"timestamp\": %d, \"query\": %d, \"warmup\": %d, \"iterations\": %d, "
+                + "\"unit\": \"ms\", \"total\": %s, \"execute\": %s, \"fetch\": %s, \"construct\": %s}%n",
+                timestamp, query, warmupIterations, samples, summary(totalNanos), summary(executeNanos),
+                summary(fetchNanos), summary(constructNanos)));
+        writer.flush();
+    }
+
+    // [Summary Function]
+    // EFFECTS:  returns the min, median, p95, p99, and max of the recorded elements of <nanos>
+    //           as a JSON object, in milliseconds
+    private String summary(long[] nanos) {
+        long[] sorted = Arrays.copyOf(nanos, samples);
+        Arrays.sort(sorted);
+        return String.format(Locale.ROOT, "{\"min\": %.3f, \"median\": %.3f, \"p95\": %.3f, \"p99\": %.3f, \"max\": %.3f}",
+                sorted[0] / 1e6, percentile(sorted, 50) / 1e6, percentile(sorted, 95) / 1e6,
+                percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    // [Percentile Function]
+    // REQUIRES: <sorted> is sorted in ascending order and not empty
+    // EFFECTS:  returns the <percent>-th percentile of <sorted> by the nearest-rank method
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    // Member Variables
+    private final int query;
+    private final int warmupIterations;
+    private final long[] totalNanos;
+    private final long[] executeNanos;
+    private final long[] fetchNanos;
+    private final long[] constructNanos;
+    private int samples;
+}
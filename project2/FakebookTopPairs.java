@@ -0,0 +1,128 @@
+package project2;
+
+/*
+    The FakebookTopPairs class keeps the best <capacity> of the (count, user1, user2) triples
+    offered to it, ranked by count (descending), then user1, then user2 (ascending), which is
+    the order of Queries 5 and 6. The triples live in three parallel arrays that form a binary
+    heap whose root is the worst triple kept, so a triple that does not make the cut is
+    rejected after a single comparison.
+*/
+final class FakebookTopPairs {
+    // [Constructor]
+    // REQUIRES: <capacity> is not negative
+    public FakebookTopPairs(int capacity) {
+        counts = new int[capacity];
+        users1 = new int[capacity];
+        users2 = new int[capacity];
+    }
+
+    // [Offer Function]
+    // REQUIRES: no pair has been read with user1() or user2() yet
+    // MODIFIES: this
+    // EFFECTS:  keeps the triple (<count>, <user1>, <user2>) if it is among the best
+    //           <capacity> offered so far
+    public void offer(int count, int user1, int user2) {
+        if (size < counts.length) {
+            set(size, count, user1, user2);
+            for (int child = size++; child > 0 && worse(child, (child - 1) / 2); child = (child - 1) / 2) {
+                swap(child, (child - 1) / 2);
+            }
+        } else if (size > 0 && ranksBefore(count, user1, user2, counts[0], users1[0], users2[0])) {
+            set(0, count, user1, user2);
+            siftDown(0, size);
+        }
+    }
+
+    // [Offer All Function]
+    // REQUIRES: no pair has been read from this instance with user1() or user2() yet
+    // MODIFIES: this
+    // EFFECTS:  offers every triple kept by <other>
+    public void offerAll(FakebookTopPairs other) {
+        for (int idx = 0; idx < other.size; idx++) {
+            offer(other.counts[idx], other.users1[idx], other.users2[idx]);
+        }
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of triples kept
+    public int size() {
+        return size;
+    }
+
+    // [Pair Functions]
+    // REQUIRES: <rank> is in [0, size())
+    // EFFECTS:  return the parts of the triple at <rank>, the best one being at rank 0; the
+    //           first call sorts the heap in place, after which no more triples may be offered
+    public int count(int rank) {
+        rank();
+        return counts[rank];
+    }
+
+    public int user1(int rank) {
+        rank();
+        return users1[rank];
+    }
+
+    public int user2(int rank) {
+        rank();
+        return users2[rank];
+    }
+
+    private void rank() {
+        if (ranked) {
+            return;
+        }
+        for (int end = size - 1; end > 0; end--) { // heapsort: the worst triple moves to the end
+            swap(0, end);
+            siftDown(0, end);
+        }
+        ranked = true;
+    }
+
+    private void siftDown(int parent, int end) {
+        while (2 * parent + 1 < end) {
+            int child = 2 * parent + 1;
+            if (child + 1 < end && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, parent)) {
+                return;
+            }
+            swap(child, parent);
+            parent = child;
+        }
+    }
+
+    // EFFECTS:  returns whether the triple at <idx1> ranks after the one at <idx2>
+    private boolean worse(int idx1, int idx2) {
+        return ranksBefore(counts[idx2], users1[idx2], users2[idx2], counts[idx1], users1[idx1], users2[idx1]);
+    }
+
+    private static boolean ranksBefore(int count1, int user11, int user12, int count2, int user21, int user22) {
+        if (count1 != count2) {
+            return count1 > count2;
+        }
+        return user11 != user21 ? user11 < user21 : user12 < user22;
+    }
+
+    private void set(int idx, int count, int user1, int user2) {
+        counts[idx] = count;
+        users1[idx] = user1;
+        users2[idx] = user2;
+    }
+
+    private void swap(int idx1, int idx2) {
+        int count = counts[idx1];
+        int user1 = users1[idx1];
+        int user2 = users2[idx1];
+        set(idx1, counts[idx2], users1[idx2], users2[idx2]);
+        set(idx2, count, user1, user2);
+    }
+
+    // Member Variables
+    private final int[] counts;
+    private final int[] users1;
+    private final int[] users2;
+    private int size;
+    private boolean ranked;
+}
@@ -0,0 +1,110 @@
+package project2;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+    The FakebookTwoHopEngine class finds the top pairs of Query 6 (users who are not friends,
+    ranked by their number of common friends) over the friend adjacency of a FakebookSnapshot.
+    For each source user, the common friends shared with every later user are counted by
+    walking the friends of the source's friends into a sparse accumulator, which is reset by
+    walking the users it touched; the candidate pairs never exist all at once, and each is
+    offered to a bounded top-<num> heap as soon as its source is done.
+
+    The source users are scanned in parallel by a FakebookParallelScan, in chunks of about equal
+    work (the number of two-hop steps from their sources). Each chunk keeps its own top-<num>
+    heap, and the heaps are merged as the tasks join. The accumulators belong to one call: a
+    task takes a free set or allocates one and returns it when done, so a call allocates at
+    most one set per worker running at once, and none outlives it.
+*/
+final class FakebookTwoHopEngine {
+    // [Constructor]
+    public FakebookTwoHopEngine(FakebookSnapshot snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    // [Top Pairs Function]
+    // EFFECTS:  returns the best <num> pairs of users (as dense indexes, user1 < user2) who are
+    //           not friends but have at least one friend in common, with their common friend
+    //           counts, in the order of Query 6
+    public FakebookTopPairs topPairs(final int num) {
+        if (num <= 0 || snapshot.userCount() == 0) {
+            return new FakebookTopPairs(0);
+        }
+        final ConcurrentLinkedQueue<int[][]> scratch = new ConcurrentLinkedQueue<int[][]>();
+        return new FakebookParallelScan<FakebookTopPairs>(pool) {
+            @Override
+            protected long work(int user) {
+                return steps(user);
+            }
+
+            @Override
+            protected FakebookTopPairs scan(int from, int to) {
+                return scanSources(from, to, num, scratch);
+            }
+
+            @Override
+            protected FakebookTopPairs combine(FakebookTopPairs left, FakebookTopPairs right) {
+                right.offerAll(left);
+                return right;
+            }
+        }.invoke(snapshot.userCount());
+    }
+
+    // [Steps Function]
+    // EFFECTS:  returns the number of two-hop steps taken from <user>, plus one
+    private long steps(int user) {
+        long steps = 1;
+        for (int edge = snapshot.friendOffset(user); edge < snapshot.friendOffset(user + 1); edge++) {
+            int friend = snapshot.friendAt(edge);
+            steps += snapshot.friendOffset(friend + 1) - snapshot.friendOffset(friend);
+        }
+        return steps;
+    }
+
+    // [Scan Function]
+    // MODIFIES: <scratch>
+    // EFFECTS:  returns the best <num> pairs whose first user is in [<from>, <to>), using (and
+    //           then returning) a set of accumulators from <scratch> if there is one free
+    private FakebookTopPairs scanSources(int from, int to, int num, ConcurrentLinkedQueue<int[][]> scratch) {
+        int[][] arrays = scratch.poll();
+        if (arrays == null) {
+            int userCount = snapshot.userCount();
+            arrays = new int[][] { new int[userCount], new int[userCount], new int[userCount] };
+        }
+        int[] counts = arrays[0]; // all zero between sources
+        int[] marks = arrays[1]; // friends of the source, all zero between sources
+        int[] touched = arrays[2]; // the users whose count is not zero
+        FakebookTopPairs top = new FakebookTopPairs(num);
+        for (int user1 = from; user1 < to; user1++) {
+            int touchedCount = 0;
+            for (int edge = snapshot.friendOffset(user1); edge < snapshot.friendOffset(user1 + 1); edge++) {
+                int friend = snapshot.friendAt(edge);
+                marks[friend] = 1;
+                for (int hop = snapshot.friendOffset(friend); hop < snapshot.friendOffset(friend + 1); hop++) {
+                    int user2 = snapshot.friendAt(hop);
+                    if (user2 > user1 && counts[user2]++ == 0) {
+                        touched[touchedCount++] = user2;
+                    }
+                }
+            }
+            for (int idx = 0; idx < touchedCount; idx++) {
+                int user2 = touched[idx];
+                if (marks[user2] == 0) {
+                    top.offer(counts[user2], user1, user2);
+                }
+                counts[user2] = 0;
+            }
+            for (int edge = snapshot.friendOffset(user1); edge < snapshot.friendOffset(user1 + 1); edge++) {
+                marks[snapshot.friendAt(edge)] = 0;
+            }
+        }
+        scratch.add(arrays);
+        return top;
+    }
+
+    // Member Variables
+    private final FakebookSnapshot snapshot;
+    private final ForkJoinPool pool;
+}
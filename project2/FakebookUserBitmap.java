@@ -0,0 +1,285 @@
+package project2;
+
+import java.util.Arrays;
+
+/*
+    The FakebookUserBitmap class is a compressed set of user IDs in the style of a roaring
+    bitmap. An ID is split into its high bits (the key of a chunk of 65536 IDs) and its low 16
+    bits; the chunks that hold any ID are kept in ascending key order, and each holds its low
+    halves either as a sorted array (while it holds at most <ArrayMax> of them, 2 bytes each) or
+    as a bitmap of 65536 bits (8 KB, fixed), whichever is smaller. Dense runs of IDs therefore
+    cost one bit each, and sparse ones two bytes each.
+
+    Sets are combined with the bulk operations and() and andNot(), which work chunk by chunk:
+    two bitmaps are combined a 64-bit word at a time, and an array with either kind by merging
+    or probing, and toArray() returns the IDs in ascending order.
+*/
+final class FakebookUserBitmap {
+    // [Constructor]
+    // EFFECTS:  creates an empty set
+    public FakebookUserBitmap() {
+        keys = new long[4];
+        chunks = new Chunk[4];
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <userID> to this set and returns true, or returns false if it already was
+    public boolean add(long userID) {
+        long key = userID >> 16;
+        int idx = find(key);
+        if (idx < 0) {
+            idx = -idx - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                chunks = Arrays.copyOf(chunks, 2 * size);
+            }
+            System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+            System.arraycopy(chunks, idx, chunks, idx + 1, size - idx);
+            keys[idx] = key;
+            chunks[idx] = new Chunk(new char[4], null, 0);
+            size++;
+        }
+        return chunks[idx].add((char) userID);
+    }
+
+    // [Contains Function]
+    // EFFECTS:  returns whether <userID> is in this set
+    public boolean contains(long userID) {
+        int idx = find(userID >> 16);
+        return idx >= 0 && chunks[idx].contains((char) userID);
+    }
+
+    // [Cardinality Function]
+    // EFFECTS:  returns the number of IDs in this set
+    public long cardinality() {
+        long cardinality = 0;
+        for (int idx = 0; idx < size; idx++) {
+            cardinality += chunks[idx].cardinality;
+        }
+        return cardinality;
+    }
+
+    // [And Function]
+    // EFFECTS:  returns a new set of the IDs in both this set and <other>
+    public FakebookUserBitmap and(FakebookUserBitmap other) {
+        FakebookUserBitmap result = new FakebookUserBitmap();
+        for (int idx1 = 0, idx2 = 0; idx1 < size && idx2 < other.size; ) {
+            if (keys[idx1] < other.keys[idx2]) {
+                idx1++;
+            } else if (keys[idx1] > other.keys[idx2]) {
+                idx2++;
+            } else {
+                result.append(keys[idx1], chunks[idx1].and(other.chunks[idx2]));
+                idx1++;
+                idx2++;
+            }
+        }
+        return result;
+    }
+
+    // [And Not Function]
+    // EFFECTS:  returns a new set of the IDs in this set that are not in <other>
+    public FakebookUserBitmap andNot(FakebookUserBitmap other) {
+        FakebookUserBitmap result = new FakebookUserBitmap();
+        int idx2 = 0;
+        for (int idx1 = 0; idx1 < size; idx1++) {
+            while (idx2 < other.size && other.keys[idx2] < keys[idx1]) {
+                idx2++;
+            }
+            if (idx2 < other.size && other.keys[idx2] == keys[idx1]) {
+                result.append(keys[idx1], chunks[idx1].andNot(other.chunks[idx2]));
+            } else {
+                result.append(keys[idx1], chunks[idx1].copy());
+            }
+        }
+        return result;
+    }
+
+    // [To Array Function]
+    // EFFECTS:  returns the IDs in this set, in ascending order
+    public long[] toArray() {
+        long[] userIDs = new long[(int) cardinality()];
+        int count = 0;
+        for (int idx = 0; idx < size; idx++) {
+            count = chunks[idx].copyTo(keys[idx] << 16, userIDs, count);
+        }
+        return userIDs;
+    }
+
+    // [Find Function]
+    // EFFECTS:  returns the index of the chunk of <key>, or (-(insertion point) - 1) if there is
+    //           none
+    private int find(long key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    // [Append Function]
+    // REQUIRES: <key> is larger than every key of this set
+    // MODIFIES: this
+    // EFFECTS:  adds <chunk> as the chunk of <key>, unless it is empty
+    private void append(long key, Chunk chunk) {
+        if (chunk.cardinality == 0) {
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            chunks = Arrays.copyOf(chunks, 2 * size);
+        }
+        keys[size] = key;
+        chunks[size++] = chunk;
+    }
+
+    /*
+        A Chunk holds the low halves of the IDs of one key, either as the sorted array <values>
+        (of which the first <cardinality> are used) or as the bitmap <bits>; the other is NULL.
+    */
+    private static final class Chunk {
+        Chunk(char[] values, long[] bits, int cardinality) {
+            this.values = values;
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        boolean add(char low) {
+            if (bits != null) {
+                long word = bits[low >>> 6];
+                if ((word & (1L << low)) != 0) {
+                    return false;
+                }
+                bits[low >>> 6] = word | (1L << low);
+                cardinality++;
+                return true;
+            }
+            int idx = Arrays.binarySearch(values, 0, cardinality, low);
+            if (idx >= 0) {
+                return false;
+            }
+            if (cardinality == ArrayMax) {
+                toBitmap();
+                return add(low);
+            }
+            idx = -idx - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(2 * cardinality, ArrayMax)));
+            }
+            System.arraycopy(values, idx, values, idx + 1, cardinality - idx);
+            values[idx] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        Chunk and(Chunk other) {
+            if (bits != null && other.bits != null) {
+                long[] words = new long[BitmapWords];
+                for (int word = 0; word < BitmapWords; word++) {
+                    words[word] = bits[word] & other.bits[word];
+                }
+                return fromBits(words);
+            }
+            Chunk array = bits == null ? this : other;
+            Chunk probed = array == this ? other : this;
+            char[] result = new char[array.cardinality];
+            int count = 0;
+            for (int idx = 0; idx < array.cardinality; idx++) {
+                if (probed.contains(array.values[idx])) {
+                    result[count++] = array.values[idx];
+                }
+            }
+            return new Chunk(result, null, count);
+        }
+
+        Chunk andNot(Chunk other) {
+            if (bits == null) {
+                char[] result = new char[cardinality];
+                int count = 0;
+                for (int idx = 0; idx < cardinality; idx++) {
+                    if (!other.contains(values[idx])) {
+                        result[count++] = values[idx];
+                    }
+                }
+                return new Chunk(result, null, count);
+            }
+            long[] words = Arrays.copyOf(bits, BitmapWords);
+            if (other.bits != null) {
+                for (int word = 0; word < BitmapWords; word++) {
+                    words[word] &= ~other.bits[word];
+                }
+            } else {
+                for (int idx = 0; idx < other.cardinality; idx++) {
+                    words[other.values[idx] >>> 6] &= ~(1L << other.values[idx]);
+                }
+            }
+            return fromBits(words);
+        }
+
+        Chunk copy() {
+            return bits != null ? new Chunk(null, bits.clone(), cardinality)
+                    : new Chunk(Arrays.copyOf(values, cardinality), null, cardinality);
+        }
+
+        // EFFECTS:  stores <high> plus each low half in <out> from position <from> on, in
+        //           ascending order, and returns the position after the last one
+        int copyTo(long high, long[] out, int from) {
+            if (bits == null) {
+                for (int idx = 0; idx < cardinality; idx++) {
+                    out[from++] = high | values[idx];
+                }
+                return from;
+            }
+            for (int word = 0; word < BitmapWords; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    out[from++] = high | (word << 6) | Long.numberOfTrailingZeros(remaining);
+                }
+            }
+            return from;
+        }
+
+        private void toBitmap() {
+            bits = new long[BitmapWords];
+            for (int idx = 0; idx < cardinality; idx++) {
+                bits[values[idx] >>> 6] |= 1L << values[idx];
+            }
+            values = null;
+        }
+
+        // EFFECTS:  returns a chunk of the bits set in <words>, as an array if it is small enough
+        private static Chunk fromBits(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ArrayMax) {
+                return new Chunk(null, words, cardinality);
+            }
+            Chunk chunk = new Chunk(null, words, cardinality);
+            char[] values = new char[cardinality];
+            long[] lows = new long[cardinality];
+            chunk.copyTo(0, lows, 0);
+            for (int idx = 0; idx < cardinality; idx++) {
+                values[idx] = (char) lows[idx];
+            }
+            return new Chunk(values, null, cardinality);
+        }
+
+        private char[] values;
+        private long[] bits;
+        private int cardinality;
+    }
+
+    // Constants
+    private static final int ArrayMax = 4096; // an array of 4096 chars is as large as a bitmap
+    private static final int BitmapWords = 65536 / 64;
+
+    // Member Variables
+    private long[] keys; // the keys of the chunks, in ascending order
+    private Chunk[] chunks;
+    private int size; // the number of chunks
+}
@@ -0,0 +1,200 @@
+package project2;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/*
+    The FakebookUserCache class holds the user dimension of the Fakebook data, i.e. the first
+    and last name of each user ID, so that queries only need to fetch user IDs and can turn
+    them into UserInfo instances locally. The cache is either loaded in full with one scan of
+    the Users table (loadAll()) or filled on demand: a query collects the user IDs it is about
+    to hydrate in a Batch, and resolving the batch looks up every ID the cache does not hold
+    with IN-list queries of at most <UserFaultBatchSize> IDs each. IDs that turn out not to exist are
+    not remembered, so that a user inserted later is found by the next batch that needs it,
+    even after loadAll().
+
+    One cache may be shared by several FakebookOracle instances on different connections; the
+    lookups are issued through the statement registry of the instance that needs them. The
+    cache never refreshes a name it already holds; call clear() after the Users table changes
+    (FakebookOracleMain has the CachingFakebookOracle do so whenever it sees a new data version).
+*/
+final class FakebookUserCache {
+    /*
+        A Batch collects the user IDs that a query is going to hydrate.
+    */
+    final class Batch {
+        // Adds <userID> to this batch
+        void add(long userID) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * count);
+            }
+            ids[count++] = userID;
+        }
+
+        // Looks up the UserInfo of every ID added to this batch, through the cache
+        void resolve(FakebookStatementRegistry statements) throws SQLException {
+            resolved = new UserInfo[count];
+            fault(statements, ids, count, resolved, true);
+        }
+
+        // Returns the number of IDs added to this batch
+        int size() {
+            return count;
+        }
+
+        // Returns the <idx>-th ID added to this batch
+        long id(int idx) {
+            return ids[idx];
+        }
+
+        // Returns the UserInfo of the <idx>-th ID added to this batch, or NULL if no such user
+        // existed when the batch was last resolved (or it has not been resolved yet)
+        UserInfo user(int idx) {
+            return resolved != null && idx < resolved.length ? resolved[idx] : null;
+        }
+
+        private long[] ids = new long[16];
+        private int count;
+        private UserInfo[] resolved; // the users of <ids>, as of the last resolve()
+    }
+
+    // [Constructor]
+    public FakebookUserCache() {
+        index = new LongIntHashMap();
+        users = new UserInfo[16];
+    }
+
+    // [Batch Function]
+    // EFFECTS:  returns a new, empty batch of user IDs to resolve against this cache
+    public Batch batch() {
+        return new Batch();
+    }
+
+    // [Load All Function]
+    // MODIFIES: this
+    // EFFECTS:  loads the name of every user with a single scan of the Users table
+    public void loadAll(FakebookStatementRegistry statements) throws SQLException {
+        ResultSet rst = statements.executeQuery("User Cache: All Users",
+                "SELECT User_ID, First_Name, Last_Name FROM " + FakebookOracleConstants.UsersTable);
+        while (rst.next()) {
+            store(rst.getLong(1), rst.getString(2), rst.getString(3));
+        }
+        rst.close();
+    }
+
+    // [Get Function]
+    // EFFECTS:  returns the UserInfo of <userID>, or NULL if the cache does not hold it
+    public synchronized UserInfo get(long userID) {
+        int slot = index.get(userID, Absent);
+        return slot == Absent ? null : users[slot];
+    }
+
+    // [Look Up Function]
+    // MODIFIES: <results>
+    // EFFECTS:  sets <results>[i] to the UserInfo of <userIDs>[i] for each of the first <count>
+    //           elements, or to NULL if there is no such user, like resolving a batch of them
+    //           does; the names it looks up are not added to this cache, so that streaming
+    //           callers do not fill it
+    public void lookUp(FakebookStatementRegistry statements, long[] userIDs, int count, UserInfo[] results)
+            throws SQLException {
+        fault(statements, userIDs, count, results, false);
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of users whose names are held
+    public synchronized int size() {
+        return size;
+    }
+
+    // [Clear Function]
+    // MODIFIES: this
+    // EFFECTS:  forgets every user
+    public synchronized void clear() {
+        index.clear();
+        Arrays.fill(users, 0, size, null);
+        size = 0;
+    }
+
+    // [Fault Function]
+    // MODIFIES: this
+    // EFFECTS:  sets <results>[i] to the UserInfo of <userIDs>[i] for each of the first <count>
+    //           elements, looking up the names that this cache does not hold,
+    //           <UserFaultBatchSize> at a time, and keeping them if <keep>; elements whose user
+    //           does not exist are NULL
+    private void fault(FakebookStatementRegistry statements, long[] userIDs, int count, UserInfo[] results,
+            boolean keep) throws SQLException {
+        long[] missing = new long[count];
+        int missingCount = 0;
+        LongIntHashMap queued = new LongIntHashMap(); // position of each ID in <missing>
+        synchronized (this) {
+            for (int idx = 0; idx < count; idx++) {
+                int slot = index.get(userIDs[idx], Absent);
+                if (slot != Absent) {
+                    results[idx] = users[slot];
+                } else if (!queued.containsKey(userIDs[idx])) {
+                    queued.put(userIDs[idx], missingCount);
+                    missing[missingCount++] = userIDs[idx];
+                }
+            }
+        }
+        if (missingCount == 0) {
+            return;
+        }
+        UserInfo[] found = new UserInfo[missingCount];
+
+        int maxBatchSize = FakebookOracleConstants.UserFaultBatchSize;
+        for (int from = 0; from < missingCount; from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, missingCount);
+
+            // Short batches are padded by repeating their last ID to one of a few fixed sizes,
+            // so that lookups share one prepared statement per size
+            int batchSize = FakebookStatementRegistry.paddedSize(to - from, maxBatchSize);
+            StringBuilder inList = new StringBuilder();
+            Object[] binds = new Object[batchSize];
+            for (int idx = 0; idx < batchSize; idx++) {
+                inList.append(idx == 0 ? "?" : ", ?");
+                binds[idx] = missing[Math.min(from + idx, to - 1)];
+            }
+            ResultSet rst = statements.executeQuery("User Cache: Users x" + batchSize,
+                    "SELECT User_ID, First_Name, Last_Name FROM " + FakebookOracleConstants.UsersTable + " " +
+                            "WHERE User_ID IN (" + inList + ")",
+                    binds);
+            while (rst.next()) {
+                found[queued.get(rst.getLong(1), 0)] = keep ? store(rst.getLong(1), rst.getString(2), rst.getString(3))
+                        : new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
+            }
+            rst.close();
+        }
+        for (int idx = 0; idx < count; idx++) {
+            if (results[idx] == null) {
+                results[idx] = found[queued.get(userIDs[idx], 0)];
+            }
+        }
+    }
+
+    // [Store Function]
+    // MODIFIES: this
+    // EFFECTS:  remembers that user <userID> is named <firstName> <lastName> and returns its
+    //           UserInfo
+    private synchronized UserInfo store(long userID, String firstName, String lastName) {
+        int slot = index.get(userID, Absent);
+        if (slot == Absent) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, 2 * size);
+            }
+            slot = size++;
+            index.put(userID, slot);
+        }
+        users[slot] = new UserInfo(userID, firstName, lastName);
+        return users[slot];
+    }
+
+    // Constants
+    private static final int Absent = -1;
+
+    // Member Variables
+    private final LongIntHashMap index;
+    private UserInfo[] users;
+    private int size;
+}
@@ -0,0 +1,389 @@
+package project2;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+    The InMemoryFakebookOracle class is derived from the FakebookOracle class and answers the
+    ten queries from a FakebookSnapshot held in memory, without any round trip to the database.
+    Its results are the same as those of StudentFakebookOracle over the data the snapshot was
+    loaded from, down to the order of the elements of each result; the one exception is the
+    order of the states of Query 7, which the database returns in no particular order and which
+    are returned here in ascending order.
+
+    Since the snapshot is immutable, one snapshot can be shared by any number of instances and
+    threads; each instance only keeps scratch arrays of its own, so a single instance must not
+    run two queries at once. Queries 6 and 9 run in parallel on a fork-join pool (see
+    FakebookTwoHopEngine and FakebookSiblingEngine). Alternatively, Queries 4 and 6 can be
+    answered from a FakebookPhotoTagIndex and a FakebookSuggestionIndex, which follow the tags
+    and the friendships made and ended since the snapshot was taken.
+*/
+public final class InMemoryFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    public InMemoryFakebookOracle(FakebookSnapshot snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    // [Constructor]
+    // EFFECTS:  creates an instance that runs its parallel work on <pool>
+    public InMemoryFakebookOracle(FakebookSnapshot snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        twoHops = new FakebookTwoHopEngine(snapshot, pool);
+        siblings = new FakebookSiblingEngine(snapshot, pool);
+        counts = new int[snapshot.userCount()];
+        touched = new int[snapshot.userCount()];
+    }
+
+    // [Set Suggestion Index Function]
+    // MODIFIES: this
+    // EFFECTS:  answers Query 6 from <index> (built over the same snapshot, and which may be
+    //           shared between instances) if it is not NULL, and from the snapshot otherwise
+    public void setSuggestionIndex(FakebookSuggestionIndex index) {
+        suggestionIndex = index;
+    }
+
+    // [Set Photo Tag Index Function]
+    // MODIFIES: this
+    // EFFECTS:  answers Query 4 from <index> (built over the same snapshot, and which may be
+    //           shared between instances) if it is not NULL, and from the snapshot otherwise
+    public void setPhotoTagIndex(FakebookPhotoTagIndex index) {
+        photoTagIndex = index;
+    }
+
+    // [Snapshot Function]
+    // EFFECTS:  returns the snapshot this instance answers from
+    public FakebookSnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    // Query 0
+    // -----------------------------------------------------------------------------------
+    // The birth months are sorted and counted run by run, in ascending order, so the first of
+    // the months with the most users and the last of the months with the fewest users win
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        int userCount = snapshot.userCount();
+        int[] months = new int[userCount];
+        int total = 0;
+        for (int user = 0; user < userCount; user++) {
+            if (snapshot.birthMonth(user) != FakebookSnapshot.NoValue) {
+                months[total++] = snapshot.birthMonth(user);
+            }
+        }
+        Arrays.sort(months, 0, total);
+
+        int mostMonth = 0;
+        int leastMonth = 0;
+        int mostCount = 0;
+        int leastCount = Integer.MAX_VALUE;
+        for (int from = 0, to; from < total; from = to) {
+            for (to = from + 1; to < total && months[to] == months[from]; to++) {
+            }
+            if (to - from > mostCount) {
+                mostCount = to - from;
+                mostMonth = months[from];
+            }
+            if (to - from <= leastCount) {
+                leastCount = to - from;
+                leastMonth = months[from];
+            }
+        }
+
+        BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+        for (int user = 0; user < userCount; user++) {
+            if (snapshot.birthMonth(user) == mostMonth) {
+                info.addMostPopularBirthMonthUser(snapshot.user(user));
+            }
+        }
+        for (int user = 0; user < userCount; user++) {
+            if (snapshot.birthMonth(user) == leastMonth) {
+                info.addLeastPopularBirthMonthUser(snapshot.user(user));
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 1
+    // -----------------------------------------------------------------------------------
+    // The first names are counted by dictionary code, and the dictionary is already in the
+    // order the names are listed in; a NULL first name has no length but forms a group of its
+    // own, which sorts after every name
+    public FirstNameInfo findNameInfo() throws SQLException {
+        FirstNameInfo info = new FirstNameInfo();
+        int codeCount = snapshot.firstNameCodeCount();
+        long[] nameCounts = new long[codeCount];
+        long nullCount = 0;
+        for (int user = 0; user < snapshot.userCount(); user++) {
+            int code = snapshot.firstNameCode(user);
+            if (code < 0) {
+                nullCount++;
+            } else {
+                nameCounts[code]++;
+            }
+        }
+
+        int longest = 0;
+        int shortest = Integer.MAX_VALUE;
+        long commonCount = nullCount;
+        for (int code = 0; code < codeCount; code++) {
+            String name = snapshot.firstNameForCode(code);
+            int length = name.codePointCount(0, name.length());
+            longest = Math.max(longest, length);
+            shortest = Math.min(shortest, length);
+            commonCount = Math.max(commonCount, nameCounts[code]);
+        }
+        for (int code = 0; code < codeCount; code++) {
+            String name = snapshot.firstNameForCode(code);
+            if (name.codePointCount(0, name.length()) == longest) {
+                info.addLongName(name);
+            }
+        }
+        for (int code = 0; code < codeCount; code++) {
+            String name = snapshot.firstNameForCode(code);
+            if (name.codePointCount(0, name.length()) == shortest) {
+                info.addShortName(name);
+            }
+        }
+        if (commonCount > 0) {
+            info.setCommonNameCount(commonCount);
+            for (int code = 0; code < codeCount; code++) {
+                if (nameCounts[code] == commonCount) {
+                    info.addCommonName(snapshot.firstNameForCode(code));
+                }
+            }
+            if (nullCount == commonCount) {
+                info.addCommonName(null);
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 2
+    // -----------------------------------------------------------------------------------
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        for (int user = 0; user < snapshot.userCount(); user++) {
+            if (snapshot.friendOffset(user) == snapshot.friendOffset(user + 1)) {
+                results.add(snapshot.user(user));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    // Query 3
+    // -----------------------------------------------------------------------------------
+    // A user is listed once for each (current city, hometown) pair that differs, as the join
+    // does
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
+        for (int user = 0; user < snapshot.userCount(); user++) {
+            for (int current = snapshot.currentCityOffset(user); current < snapshot.currentCityOffset(user + 1);
+                    current++) {
+                for (int home = snapshot.hometownOffset(user); home < snapshot.hometownOffset(user + 1); home++) {
+                    if (snapshot.currentCityAt(current) != snapshot.hometownAt(home)) {
+                        results.add(snapshot.user(user));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    // Query 4
+    // -----------------------------------------------------------------------------------
+    // Every tagged photo is offered to a bounded top-<num> heap, ranked by its tag count and then
+    // by its index (i.e. its ID order), so the tagged photos are never sorted all together
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        if (photoTagIndex != null) {
+            return photoTagIndex.findPhotosWithMostTags(num);
+        }
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        FakebookTopPairs top = new FakebookTopPairs(Math.max(num, 0));
+        for (int photo = 0; photo < snapshot.photoCount() && num > 0; photo++) {
+            int tags = snapshot.photoTagOffset(photo + 1) - snapshot.photoTagOffset(photo);
+            if (tags > 0) {
+                top.offer(tags, photo, 0);
+            }
+        }
+
+        for (int rank = 0; rank < top.size(); rank++) {
+            int photo = top.user1(rank);
+            TaggedPhotoInfo info = new TaggedPhotoInfo(snapshot.photo(photo));
+            for (int tag = snapshot.photoTagOffset(photo); tag < snapshot.photoTagOffset(photo + 1); tag++) {
+                info.addTaggedUser(snapshot.user(snapshot.photoTagAt(tag)));
+            }
+            results.add(info);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 5
+    // -----------------------------------------------------------------------------------
+    // For each user, the photos shared with every later user of the same gender and a close
+    // enough birth year are counted in a sparse accumulator by walking the user's photos and
+    // their tags; the pairs that are not friends are then offered to a bounded top-<num> heap
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        FakebookTopPairs top = new FakebookTopPairs(Math.max(num, 0));
+        for (int user1 = 0; user1 < snapshot.userCount() && num > 0; user1++) {
+            int gender = snapshot.genderCode(user1);
+            int year = snapshot.birthYear(user1);
+            if (gender < 0 || year == FakebookSnapshot.NoValue) {
+                continue;
+            }
+            int touchedCount = 0;
+            for (int tag = snapshot.userTagOffset(user1); tag < snapshot.userTagOffset(user1 + 1); tag++) {
+                int photo = snapshot.userTagAt(tag);
+                for (int other = snapshot.photoTagOffset(photo); other < snapshot.photoTagOffset(photo + 1); other++) {
+                    int user2 = snapshot.photoTagAt(other);
+                    if (user2 <= user1 || snapshot.genderCode(user2) != gender
+                            || snapshot.birthYear(user2) == FakebookSnapshot.NoValue
+                            || Math.abs((long) year - snapshot.birthYear(user2)) > yearDiff) {
+                        continue;
+                    }
+                    if (counts[user2]++ == 0) {
+                        touched[touchedCount++] = user2;
+                    }
+                }
+            }
+            for (int idx = 0; idx < touchedCount; idx++) {
+                int user2 = touched[idx];
+                if (!snapshot.isFriend(user1, user2)) {
+                    top.offer(counts[user2], user1, user2);
+                }
+                counts[user2] = 0;
+            }
+        }
+
+        for (int rank = 0; rank < top.size(); rank++) {
+            int user1 = top.user1(rank);
+            int user2 = top.user2(rank);
+            MatchPair pair = new MatchPair(snapshot.user(user1), snapshot.birthYear(user1), snapshot.user(user2),
+                    snapshot.birthYear(user2));
+            int tag1 = snapshot.userTagOffset(user1);
+            int tag2 = snapshot.userTagOffset(user2);
+            while (tag1 < snapshot.userTagOffset(user1 + 1) && tag2 < snapshot.userTagOffset(user2 + 1)) {
+                int photo1 = snapshot.userTagAt(tag1);
+                int photo2 = snapshot.userTagAt(tag2);
+                if (photo1 == photo2) {
+                    pair.addSharedPhoto(snapshot.photo(photo1));
+                }
+                tag1 += photo1 <= photo2 ? 1 : 0;
+                tag2 += photo2 <= photo1 ? 1 : 0;
+            }
+            results.add(pair);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 6
+    // -----------------------------------------------------------------------------------
+    // The top pairs are found by FakebookTwoHopEngine, and the common friends of each are then
+    // listed by merging the two users' sorted friend lists
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        if (suggestionIndex != null) {
+            return suggestionIndex.suggestFriends(num);
+        }
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        FakebookTopPairs top = twoHops.topPairs(num);
+        for (int rank = 0; rank < top.size(); rank++) {
+            int user1 = top.user1(rank);
+            int user2 = top.user2(rank);
+            UsersPair pair = new UsersPair(snapshot.user(user1), snapshot.user(user2));
+            int edge1 = snapshot.friendOffset(user1);
+            int edge2 = snapshot.friendOffset(user2);
+            while (edge1 < snapshot.friendOffset(user1 + 1) && edge2 < snapshot.friendOffset(user2 + 1)) {
+                int friend1 = snapshot.friendAt(edge1);
+                int friend2 = snapshot.friendAt(edge2);
+                if (friend1 == friend2) {
+                    pair.addSharedFriend(snapshot.user(friend1));
+                }
+                edge1 += friend1 <= friend2 ? 1 : 0;
+                edge2 += friend2 <= friend1 ? 1 : 0;
+            }
+            results.add(pair);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 7
+    // -----------------------------------------------------------------------------------
+    public EventStateInfo findEventStates() throws SQLException {
+        long eventCount = 0;
+        for (int state = 0; state < snapshot.stateCount(); state++) {
+            eventCount = Math.max(eventCount, snapshot.stateEventCount(state));
+        }
+        EventStateInfo info = new EventStateInfo(eventCount);
+        for (int state = 0; state < snapshot.stateCount(); state++) {
+            if (snapshot.stateEventCount(state) == eventCount) {
+                info.addState(snapshot.stateName(state));
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 8
+    // -----------------------------------------------------------------------------------
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        int user = snapshot.userIndex(userID);
+        if (user < 0 || snapshot.friendOffset(user) == snapshot.friendOffset(user + 1)) {
+            return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+        }
+        int oldest = snapshot.friendAt(snapshot.friendOffset(user));
+        int youngest = oldest;
+        for (int edge = snapshot.friendOffset(user) + 1; edge < snapshot.friendOffset(user + 1); edge++) {
+            int friend = snapshot.friendAt(edge);
+            if (compareAges(friend, oldest) < 0) {
+                oldest = friend;
+            }
+            if (compareAges(friend, youngest) > 0) {
+                youngest = friend;
+            }
+        }
+        return new AgeInfo(snapshot.user(oldest), snapshot.user(youngest));
+    }
+
+    @Override
+    // Query 9
+    // -----------------------------------------------------------------------------------
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
+        for (long pair : siblings.siblings()) {
+            results.add(new SiblingInfo(snapshot.user((int) (pair >>> 32)), snapshot.user((int) pair)));
+        }
+        return results;
+    }
+
+    // [Compare Ages Function]
+    // EFFECTS:  returns a negative number if <user1> comes before <user2> in the order of
+    //           Query 8 (by year, month, and day of birth, missing parts last, then larger IDs
+    //           first), and a positive number if it comes after
+    private int compareAges(int user1, int user2) {
+        int cmp = Integer.compare(snapshot.birthYear(user1), snapshot.birthYear(user2));
+        if (cmp == 0) {
+            cmp = Integer.compare(snapshot.birthMonth(user1), snapshot.birthMonth(user2));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(snapshot.birthDay(user1), snapshot.birthDay(user2));
+        }
+        return cmp != 0 ? cmp : Integer.compare(user2, user1);
+    }
+
+    // Member Variables
+    private final FakebookSnapshot snapshot;
+    private final FakebookTwoHopEngine twoHops;
+    private final FakebookSiblingEngine siblings;
+    private FakebookPhotoTagIndex photoTagIndex; // NULL unless Query 4 is answered from one
+    private FakebookSuggestionIndex suggestionIndex; // NULL unless Query 6 is answered from one
+    private final int[] counts; // sparse accumulator of Query 5, all zero between uses
+    private final int[] touched; // the users whose count is not zero
+}
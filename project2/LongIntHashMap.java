@@ -0,0 +1,159 @@
+package project2;
+
+import java.util.Arrays;
+
+/*
+    The LongIntHashMap class maps primitive long keys to primitive int values without boxing
+    either. Entries live in two parallel arrays and collisions are resolved by linear probing;
+    the arrays double in size whenever they become more than half full, so a lookup touches
+    only a handful of adjacent slots. Removing a key shifts the entries after it in its probe
+    run back into the gap, so no tombstones are left behind.
+*/
+final class LongIntHashMap {
+    // [Constructor]
+    // EFFECTS:  creates an empty map sized for <expectedSize> keys without resizing
+    public LongIntHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < 2L * expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public LongIntHashMap() {
+        this(8);
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of keys in this map
+    public int size() {
+        return size;
+    }
+
+    // [Contains Key Function]
+    // EFFECTS:  returns whether <key> is in this map
+    public boolean containsKey(long key) {
+        return used[slot(key)];
+    }
+
+    // [Get Function]
+    // EFFECTS:  returns the value of <key>, or <missing> if <key> is not in this map
+    public int get(long key, int missing) {
+        int slot = slot(key);
+        return used[slot] ? values[slot] : missing;
+    }
+
+    // [Put Function]
+    // MODIFIES: this
+    // EFFECTS:  maps <key> to <value>, replacing any previous value of <key>
+    public void put(long key, int value) {
+        int slot = slot(key);
+        if (!used[slot]) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                slot = slot(key);
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <delta> to the value of <key> (treating a missing key as 0) and returns
+    //           the new value
+    public int add(long key, int delta) {
+        int value = get(key, 0) + delta;
+        put(key, value);
+        return value;
+    }
+
+    // [Remove Function]
+    // MODIFIES: this
+    // EFFECTS:  removes <key> and returns whether it was in this map
+    public boolean remove(long key) {
+        int hole = slot(key);
+        if (!used[hole]) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        for (int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+            // the entry at <next> may fill the hole only if its home slot is not after the hole
+            if (((next - home(keys[next])) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        used[hole] = false;
+        size--;
+        return true;
+    }
+
+    // [Clear Function]
+    // MODIFIES: this
+    // EFFECTS:  removes every key
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    // [Keys Function]
+    // EFFECTS:  returns the keys of this map, in no particular order
+    public long[] keys() {
+        long[] result = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                result[count++] = keys[slot];
+            }
+        }
+        return result;
+    }
+
+    // [Slot Function]
+    // EFFECTS:  returns the slot holding <key>, or the empty slot where it would be inserted
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = home(key);
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // [Home Function]
+    // EFFECTS:  returns the slot at which the probe for <key> starts
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(2 * oldKeys.length);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldUsed[slot]) {
+                int newSlot = slot(oldKeys[slot]);
+                used[newSlot] = true;
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    // Member Variables
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+}
@@ -30,8 +30,23 @@ final class FakebookOracleConstants {
 
     // Result Set Constants Renamed
     public static final int AllScroll = ResultSet.TYPE_SCROLL_INSENSITIVE;
+    public static final int ForwardOnly = ResultSet.TYPE_FORWARD_ONLY;
     public static final int ReadOnly = ResultSet.CONCUR_READ_ONLY;
 
+    // Cursor Constants
+    public static final int DefaultFetchSize = 100;
+
+    // Batching Constants
+    public static final int MatchPhotoBatchSize = 100;
+    public static final int UserFaultBatchSize = 500;
+    public static final int AgeInfoBatchSize = 500;
+    public static final int PhotoFaultBatchSize = 500;
+
+    // Caching Constants
+    public static final int CacheMaxEntries = 64;
+    public static final long CacheTTLMillis = 60 * 1000L;
+    public static final long CacheProbeIntervalMillis = 1000L;
+
     // [Constructor]
     // EFFECTS: throws an AssertionError
     private FakebookOracleConstants() {
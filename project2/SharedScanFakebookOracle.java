@@ -0,0 +1,573 @@
+package project2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    The SharedScanFakebookOracle class is a FakebookOracle that computes the queries which only
+    aggregate over whole tables (Queries 0, 1, 2, 3, 7, and 9) together, reading each table they
+    need once. The queries of a run are planned up front; the first call to any planned query
+    scans the union of the tables they read, one table at a time, and feeds every row to the
+    partial state of each planned query interested in that table (for the Users table: the
+    birth month histogram of Query 0, the first name counts of Query 1, and the user columns
+    Queries 0, 2, 3, and 9 list or filter on). Every planned query is then finished from its
+    partial state, and its result is held until it is asked for. A result is handed out once;
+    asking for the same query again starts a new shared scan.
+
+    The other queries, and the queries that were not planned, are passed on to a delegate.
+    The results are the same as those of StudentFakebookOracle, except that the states of
+    Query 7 are in ascending order rather than in the database's order.
+*/
+public final class SharedScanFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  creates an instance that computes the queries of <queries> that isShared()
+    //           accepts from shared scans on <connection>, and passes every other query on to
+    //           <delegate>
+    public SharedScanFakebookOracle(FakebookOracle delegate, Connection connection, int... queries) {
+        this.delegate = delegate;
+        statements = new FakebookStatementRegistry(connection);
+        planned = new boolean[QueryCount];
+        for (int query : queries) {
+            planned[query] = isShared(query);
+        }
+        results = new Object[QueryCount];
+    }
+
+    // [Is Shared Function]
+    // EFFECTS:  returns whether query number <query> can be computed from shared scans
+    public static boolean isShared(int query) {
+        return query == 0 || query == 1 || query == 2 || query == 3 || query == 7 || query == 9;
+    }
+
+    // [Delegate Function]
+    // EFFECTS:  returns the FakebookOracle that the queries which are not shared are passed to
+    public FakebookOracle delegate() {
+        return delegate;
+    }
+
+    // [Print Statistics Function]
+    // EFFECTS:  writes the number of shared scans run so far and the statement statistics of
+    //           their tables to <writer>
+    public void printStatistics(Writer writer) throws IOException {
+        String output;
+        synchronized (this) {
+            output = String.format("%sShared Scan Statistics%s%n%d scan(s) of the tables of Queries %s%n%n",
+                    FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, scans,
+                    plannedQueries());
+        }
+        writer.write(output);
+        statements.printStatistics(writer);
+    }
+
+    @Override
+    // [Failure Count Function]
+    // EFFECTS:  returns the failure count of the delegate; a shared scan throws its errors
+    public long failureCount() {
+        return delegate.failureCount();
+    }
+
+    @Override
+    // [Cancel Function]
+    // EFFECTS:  cancels the shared scan or delegated query that is running, if any
+    public void cancel() throws SQLException {
+        statements.cancel();
+        delegate.cancel();
+    }
+
+    // [Close Function]
+    // EFFECTS:  closes the statements of the shared scans; the connection stays open
+    public void close() throws SQLException {
+        statements.close();
+    }
+
+    // Query Functions
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        return planned[0] ? (BirthMonthInfo) take(0) : delegate.findMonthOfBirthInfo();
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        return planned[1] ? (FirstNameInfo) take(1) : delegate.findNameInfo();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return planned[2] ? (FakebookArrayList<UserInfo>) take(2) : delegate.lonelyUsers();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return planned[3] ? (FakebookArrayList<UserInfo>) take(3) : delegate.liveAwayFromHome();
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return delegate.findPhotosWithMostTags(num);
+    }
+
+    @Override
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        return delegate.matchMaker(num, yearDiff);
+    }
+
+    @Override
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        return delegate.suggestFriends(num);
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        return planned[7] ? (EventStateInfo) take(7) : delegate.findEventStates();
+    }
+
+    @Override
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        return delegate.findAgeInfo(userID);
+    }
+
+    @Override
+    public AgeInfo[] findAgeInfo(long[] userIDs) throws SQLException {
+        return delegate.findAgeInfo(userIDs);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return planned[9] ? (FakebookArrayList<SiblingInfo>) take(9) : delegate.findPotentialSiblings();
+    }
+
+    @Override
+    public FakebookCursor<UserInfo> lonelyUsersCursor() throws SQLException {
+        return planned[2] ? FakebookCursor.of(lonelyUsers()) : delegate.lonelyUsersCursor();
+    }
+
+    @Override
+    public FakebookCursor<UserInfo> liveAwayFromHomeCursor() throws SQLException {
+        return planned[3] ? FakebookCursor.of(liveAwayFromHome()) : delegate.liveAwayFromHomeCursor();
+    }
+
+    // [Take Function]
+    // REQUIRES: <query> is planned
+    // MODIFIES: this
+    // EFFECTS:  returns the held result of <query>, running a shared scan first if there is
+    //           none, and stops holding it
+    private synchronized Object take(int query) throws SQLException {
+        if (results[query] == null) {
+            scan();
+        }
+        Object result = results[query];
+        results[query] = null;
+        return result;
+    }
+
+    // [Planned Queries Function]
+    // EFFECTS:  returns the numbers of the planned queries, separated by commas
+    private String plannedQueries() {
+        StringBuilder queries = new StringBuilder();
+        for (int query = 0; query < QueryCount; query++) {
+            if (planned[query]) {
+                queries.append(queries.length() > 0 ? ", " : "").append(query);
+            }
+        }
+        return queries.toString();
+    }
+
+    // [Scan Function]
+    // MODIFIES: this
+    // EFFECTS:  reads every table the planned queries need once and replaces the held result
+    //           of every planned query with one computed from the rows read
+    private void scan() throws SQLException {
+        boolean readUsers = planned[0] || planned[1] || planned[2] || planned[3] || planned[9];
+        boolean readFriends = planned[2] || planned[9];
+        boolean readHometowns = planned[3] || planned[9];
+        scans++;
+
+        // Users, in ascending ID order, so that the index of a user in the scan is its rank by ID
+        LongIntHashMap userIndexes = new LongIntHashMap();
+        ArrayList<UserInfo> users = new ArrayList<UserInfo>();
+        int[] months = new int[16];
+        int[] years = new int[16];
+        ArrayList<String> lastNames = new ArrayList<String>();
+        TreeMap<Integer, long[]> monthCounts = new TreeMap<Integer, long[]>(); // Query 0
+        HashMap<String, long[]> nameCounts = new HashMap<String, long[]>(); // Query 1
+        if (readUsers) {
+            ResultSet rst = statements.executeQuery("Shared Scan: Users",
+                    "SELECT User_ID, First_Name, Last_Name, Year_of_Birth, Month_of_Birth " +
+                            "FROM " + FakebookOracleConstants.UsersTable + " " +
+                            "ORDER BY User_ID");
+            while (rst.next()) {
+                int user = users.size();
+                long userID = rst.getLong(1);
+                String firstName = rst.getString(2);
+                String lastName = rst.getString(3);
+                int year = rst.getInt(4);
+                year = rst.wasNull() ? FakebookSnapshot.NoValue : year;
+                int month = rst.getInt(5);
+                month = rst.wasNull() ? FakebookSnapshot.NoValue : month;
+
+                userIndexes.put(userID, user);
+                users.add(new UserInfo(userID, firstName, lastName));
+                if (user == months.length) {
+                    months = Arrays.copyOf(months, 2 * user);
+                    years = Arrays.copyOf(years, 2 * user);
+                }
+                months[user] = month;
+                years[user] = year;
+                lastNames.add(lastName);
+                if (planned[0] && month != FakebookSnapshot.NoValue) {
+                    count(monthCounts, month);
+                }
+                if (planned[1]) {
+                    count(nameCounts, firstName);
+                }
+            }
+            rst.close();
+        }
+        int userCount = users.size();
+
+        // Friends: the users who have any (Query 2), and the friendships between known users
+        // from the smaller ID to the larger one (Query 9)
+        boolean[] hasFriends = new boolean[userCount];
+        long[] friendships = new long[16];
+        int friendshipCount = 0;
+        if (readFriends) {
+            ResultSet rst = statements.executeQuery("Shared Scan: Friends",
+                    "SELECT User1_ID, User2_ID FROM " + FakebookOracleConstants.FriendsTable);
+            while (rst.next()) {
+                int user1 = userIndexes.get(rst.getLong(1), -1);
+                int user2 = userIndexes.get(rst.getLong(2), -1);
+                if (user1 >= 0) {
+                    hasFriends[user1] = true;
+                }
+                if (user2 >= 0) {
+                    hasFriends[user2] = true;
+                }
+                if (planned[9] && user1 >= 0 && user1 < user2) {
+                    friendships = append(friendships, friendshipCount++, pairKey(user1, user2));
+                }
+            }
+            rst.close();
+        }
+
+        // Cities of the known users, as (user, city code) keys
+        LongIntHashMap cityCodes = new LongIntHashMap();
+        long[] currentCities = new long[16];
+        int currentCityCount = 0;
+        if (planned[3]) {
+            ResultSet rst = statements.executeQuery("Shared Scan: Current Cities",
+                    "SELECT User_ID, Current_City_ID FROM " + FakebookOracleConstants.CurrentCitiesTable + " " +
+                            "WHERE Current_City_ID IS NOT NULL");
+            while (rst.next()) {
+                int user = userIndexes.get(rst.getLong(1), -1);
+                if (user >= 0) {
+                    currentCities = append(currentCities, currentCityCount++,
+                            pairKey(user, code(cityCodes, rst.getLong(2))));
+                }
+            }
+            rst.close();
+        }
+        long[] hometowns = new long[16];
+        int hometownCount = 0;
+        if (readHometowns) {
+            ResultSet rst = statements.executeQuery("Shared Scan: Hometown Cities",
+                    "SELECT User_ID, Hometown_City_ID FROM " + FakebookOracleConstants.HometownCitiesTable + " " +
+                            "WHERE Hometown_City_ID IS NOT NULL");
+            while (rst.next()) {
+                int user = userIndexes.get(rst.getLong(1), -1);
+                if (user >= 0) {
+                    hometowns = append(hometowns, hometownCount++, pairKey(user, code(cityCodes, rst.getLong(2))));
+                }
+            }
+            rst.close();
+        }
+
+        // Cities and events (Query 7): the state of every city and the events held in each city
+        HashMap<Long, String> cityStates = new HashMap<Long, String>();
+        LongIntHashMap cityEvents = new LongIntHashMap();
+        if (planned[7]) {
+            ResultSet rst = statements.executeQuery("Shared Scan: Cities",
+                    "SELECT City_ID, State_Name FROM " + FakebookOracleConstants.CitiesTable);
+            while (rst.next()) {
+                cityStates.put(rst.getLong(1), rst.getString(2));
+            }
+            rst.close();
+            rst = statements.executeQuery("Shared Scan: Events",
+                    "SELECT Event_City_ID FROM " + FakebookOracleConstants.EventsTable + " " +
+                            "WHERE Event_City_ID IS NOT NULL");
+            while (rst.next()) {
+                cityEvents.add(rst.getLong(1), 1);
+            }
+            rst.close();
+        }
+
+        // Finish every planned query from its partial state
+        if (planned[0]) {
+            results[0] = finishMonthOfBirthInfo(monthCounts, users, months);
+        }
+        if (planned[1]) {
+            results[1] = finishNameInfo(nameCounts);
+        }
+        if (planned[2]) {
+            FakebookArrayList<UserInfo> lonely = new FakebookArrayList<UserInfo>(", ");
+            for (int user = 0; user < userCount; user++) {
+                if (!hasFriends[user]) {
+                    lonely.add(users.get(user));
+                }
+            }
+            results[2] = lonely;
+        }
+        Arrays.sort(currentCities, 0, currentCityCount);
+        Arrays.sort(hometowns, 0, hometownCount);
+        int[] currentOffsets = offsets(currentCities, currentCityCount, userCount);
+        int[] hometownOffsets = offsets(hometowns, hometownCount, userCount);
+        if (planned[3]) {
+            FakebookArrayList<UserInfo> away = new FakebookArrayList<UserInfo>(", ");
+            for (int user = 0; user < userCount; user++) {
+                for (int current = currentOffsets[user]; current < currentOffsets[user + 1]; current++) {
+                    for (int home = hometownOffsets[user]; home < hometownOffsets[user + 1]; home++) {
+                        if ((int) currentCities[current] != (int) hometowns[home]) {
+                            away.add(users.get(user));
+                        }
+                    }
+                }
+            }
+            results[3] = away;
+        }
+        if (planned[7]) {
+            results[7] = finishEventStates(cityStates, cityEvents);
+        }
+        if (planned[9]) {
+            Arrays.sort(friendships, 0, friendshipCount);
+            FakebookArrayList<SiblingInfo> siblings = new FakebookArrayList<SiblingInfo>("\n");
+            for (int idx = 0; idx < friendshipCount; idx++) {
+                if (idx > 0 && friendships[idx] == friendships[idx - 1]) {
+                    continue; // DISTINCT
+                }
+                int user1 = (int) (friendships[idx] >>> 32);
+                int user2 = (int) friendships[idx];
+                String lastName = lastNames.get(user1);
+                if (lastName != null && lastName.equals(lastNames.get(user2))
+                        && years[user1] != FakebookSnapshot.NoValue && years[user2] != FakebookSnapshot.NoValue
+                        && Math.abs((long) years[user1] - years[user2]) < 10
+                        && shareCity(hometowns, hometownOffsets, user1, user2)) {
+                    siblings.add(new SiblingInfo(users.get(user1), users.get(user2)));
+                }
+            }
+            results[9] = siblings;
+        }
+    }
+
+    // [Finish Query 0 Function]
+    // EFFECTS:  returns the result of Query 0 from the users born in each month (<monthCounts>,
+    //           in ascending month order) and the month of birth of each user
+    private static BirthMonthInfo finishMonthOfBirthInfo(TreeMap<Integer, long[]> monthCounts,
+            ArrayList<UserInfo> users, int[] months) {
+        long total = 0;
+        long mostCount = 0;
+        long leastCount = Long.MAX_VALUE;
+        int mostMonth = 0;
+        int leastMonth = 0;
+        for (Map.Entry<Integer, long[]> entry : monthCounts.entrySet()) {
+            long count = entry.getValue()[0];
+            total += count;
+            if (count > mostCount) { // the earliest of the months with the most users
+                mostCount = count;
+                mostMonth = entry.getKey();
+            }
+            if (count <= leastCount) { // the latest of the months with the fewest users
+                leastCount = count;
+                leastMonth = entry.getKey();
+            }
+        }
+
+        BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+        for (int user = 0; user < users.size(); user++) {
+            if (months[user] == mostMonth) {
+                info.addMostPopularBirthMonthUser(users.get(user));
+            }
+        }
+        for (int user = 0; user < users.size(); user++) {
+            if (months[user] == leastMonth) {
+                info.addLeastPopularBirthMonthUser(users.get(user));
+            }
+        }
+        return info;
+    }
+
+    // [Finish Query 1 Function]
+    // EFFECTS:  returns the result of Query 1 from the number of users with each first name
+    //           (including NULL, which has no length and sorts after every name)
+    private static FirstNameInfo finishNameInfo(HashMap<String, long[]> nameCounts) {
+        FirstNameInfo info = new FirstNameInfo();
+        ArrayList<String> names = new ArrayList<String>();
+        for (String name : nameCounts.keySet()) {
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        names.sort(FakebookSnapshot.BinaryOrder);
+
+        int longest = 0;
+        int shortest = Integer.MAX_VALUE;
+        long commonCount = 0;
+        for (String name : names) {
+            int length = name.codePointCount(0, name.length());
+            longest = Math.max(longest, length);
+            shortest = Math.min(shortest, length);
+        }
+        for (long[] count : nameCounts.values()) {
+            commonCount = Math.max(commonCount, count[0]);
+        }
+        for (String name : names) {
+            if (name.codePointCount(0, name.length()) == longest) {
+                info.addLongName(name);
+            }
+        }
+        for (String name : names) {
+            if (name.codePointCount(0, name.length()) == shortest) {
+                info.addShortName(name);
+            }
+        }
+        if (commonCount > 0) {
+            info.setCommonNameCount(commonCount);
+            for (String name : names) {
+                if (nameCounts.get(name)[0] == commonCount) {
+                    info.addCommonName(name);
+                }
+            }
+            if (nameCounts.containsKey(null) && nameCounts.get(null)[0] == commonCount) {
+                info.addCommonName(null);
+            }
+        }
+        return info;
+    }
+
+    // [Finish Query 7 Function]
+    // EFFECTS:  returns the result of Query 7 from the state of each city and the number of
+    //           events held in each city, with the states in ascending order (NULL last)
+    private static EventStateInfo finishEventStates(HashMap<Long, String> cityStates, LongIntHashMap cityEvents) {
+        HashMap<String, long[]> stateCounts = new HashMap<String, long[]>();
+        for (long cityID : cityEvents.keys()) {
+            if (cityStates.containsKey(cityID)) {
+                String state = cityStates.get(cityID);
+                long[] count = stateCounts.get(state);
+                if (count == null) {
+                    stateCounts.put(state, count = new long[1]);
+                }
+                count[0] += cityEvents.get(cityID, 0);
+            }
+        }
+        long eventCount = 0;
+        ArrayList<String> states = new ArrayList<String>();
+        for (Map.Entry<String, long[]> entry : stateCounts.entrySet()) {
+            if (entry.getValue()[0] > eventCount) {
+                eventCount = entry.getValue()[0];
+                states.clear();
+            }
+            if (entry.getValue()[0] == eventCount) {
+                states.add(entry.getKey());
+            }
+        }
+        boolean nullState = states.remove(null);
+        states.sort(FakebookSnapshot.BinaryOrder);
+
+        EventStateInfo info = new EventStateInfo(eventCount);
+        for (String state : states) {
+            info.addState(state);
+        }
+        if (nullState) {
+            info.addState(null);
+        }
+        return info;
+    }
+
+    // [Count Function]
+    // MODIFIES: <counts>
+    // EFFECTS:  adds one to the count of <key>
+    private static <K> void count(Map<K, long[]> counts, K key) {
+        long[] count = counts.get(key);
+        if (count == null) {
+            counts.put(key, count = new long[1]);
+        }
+        count[0]++;
+    }
+
+    // [Code Function]
+    // MODIFIES: <codes>
+    // EFFECTS:  returns the code of <id> in <codes>, giving it the next code if it has none
+    private static int code(LongIntHashMap codes, long id) {
+        int code = codes.get(id, -1);
+        if (code < 0) {
+            code = codes.size();
+            codes.put(id, code);
+        }
+        return code;
+    }
+
+    // [Append Function]
+    // EFFECTS:  stores <value> at position <size> of <values>, which is grown first if full,
+    //           and returns the array holding it
+    private static long[] append(long[] values, int size, long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        values[size] = value;
+        return values;
+    }
+
+    // [Pair Key Function]
+    // EFFECTS:  returns a key ordered by <high>, then by <low>
+    private static long pairKey(int high, int low) {
+        return ((long) high << 32) | low;
+    }
+
+    // [Offsets Function]
+    // REQUIRES: the first <count> elements of <keys> are sorted pair keys whose high parts are
+    //           in [0, <userCount>)
+    // EFFECTS:  returns the offsets at which the keys of each user start, followed by <count>
+    private static int[] offsets(long[] keys, int count, int userCount) {
+        int[] offsets = new int[userCount + 1];
+        for (int idx = 0; idx < count; idx++) {
+            offsets[(int) (keys[idx] >>> 32) + 1]++;
+        }
+        for (int user = 0; user < userCount; user++) {
+            offsets[user + 1] += offsets[user];
+        }
+        return offsets;
+    }
+
+    // [Share City Function]
+    // EFFECTS:  returns whether <user1> and <user2> have a city in common among <cities>
+    private static boolean shareCity(long[] cities, int[] offsets, int user1, int user2) {
+        for (int city1 = offsets[user1]; city1 < offsets[user1 + 1]; city1++) {
+            for (int city2 = offsets[user2]; city2 < offsets[user2 + 1]; city2++) {
+                if ((int) cities[city1] == (int) cities[city2]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Constants
+    private static final int QueryCount = 10;
+
+    // Member Variables
+    private final FakebookOracle delegate;
+    private final FakebookStatementRegistry statements;
+    private final boolean[] planned;
+    private final Object[] results; // the result of each planned query, until it is taken
+    private long scans;
+}
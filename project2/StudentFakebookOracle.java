@@ -1,10 +1,14 @@
 package project2;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 /*
     The StudentFakebookOracle class is derived from the FakebookOracle class and implements
@@ -15,7 +19,77 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // [Constructor]
     // REQUIRES: <connection> is a valid JDBC connection
     public StudentFakebookOracle(Connection connection) {
+        this(connection, new FakebookUserCache());
+    }
+
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  creates an instance that takes user names from <userCache>, which may be shared
+    //           with other instances
+    public StudentFakebookOracle(Connection connection, FakebookUserCache userCache) {
         oracle = connection;
+        statements = new FakebookStatementRegistry(connection);
+        this.userCache = userCache;
+    }
+
+    // [Preload Users Function]
+    // MODIFIES: the user cache of this instance
+    // EFFECTS:  loads the name of every user into the user cache with a single scan, instead of
+    //           looking names up as the queries need them
+    public void preloadUsers() throws SQLException {
+        userCache.loadAll(statements);
+    }
+
+    // [Set Cursor Mode Function]
+    // REQUIRES: <resultSetType> is one of the ResultSet.TYPE_* constants and <fetchSize> is
+    //           positive
+    // MODIFIES: this
+    // EFFECTS:  sets the type and fetch size of the cursors used by every query; statements
+    //           already prepared with another mode are closed and prepared again on next use
+    public void setCursorMode(int resultSetType, int fetchSize) throws SQLException {
+        statements.setCursorMode(resultSetType, fetchSize);
+    }
+
+    // [Statement Statistics Printing Function]
+    // EFFECTS:  writes the parse, execute, and fetch counts of every query template this
+    //           instance has prepared on its connection
+    public void printStatementStatistics(Writer writer) throws IOException {
+        statements.printStatistics(writer);
+    }
+
+    // [Phase Times Function]
+    // EFFECTS:  returns the nanoseconds spent, since the last resetPhaseTimes(), executing
+    //           statements ([0]) and fetching result rows ([1])
+    public long[] phaseTimes() {
+        return statements.phaseTimes();
+    }
+
+    // [Reset Phase Times Function]
+    // EFFECTS:  sets both phase times to zero
+    public void resetPhaseTimes() {
+        statements.resetPhaseTimes();
+    }
+
+    @Override
+    // [Failure Count Function]
+    // EFFECTS:  returns the number of queries that caught an SQLException and returned what
+    //           they had gathered (or a placeholder) instead
+    public long failureCount() {
+        return failures;
+    }
+
+    @Override
+    // [Cancel Function]
+    // EFFECTS:  asks the database to abort the statement this instance is running, if any; the
+    //           interrupted query returns whatever it has gathered so far
+    public void cancel() throws SQLException {
+        statements.cancel();
+    }
+
+    // [Close Function]
+    // EFFECTS:  closes every statement prepared by this instance; the connection stays open
+    public void close() throws SQLException {
+        statements.close();
     }
 
     @Override
@@ -33,14 +107,13 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // mechanisms for opening up a statement, executing a query, walking through results, extracting
     // data, and more things that you will need to do for the remaining nine queries
     public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             // Step 1
             // ------------
             // * Find the total number of users with birth month info
             // * Find the month in which the most users were born
             // * Find the month in which the fewest (but at least 1) users were born
-            ResultSet rst = stmt.executeQuery(
+            ResultSet rst = statements.executeQuery("Query 0: Birth Month Counts",
                     "SELECT COUNT(*) AS Birthed, Month_of_Birth " + // select birth months and number of uses with that birth month
                             "FROM " + UsersTable + " " + // from all users
                             "WHERE Month_of_Birth IS NOT NULL " + // for which a birth month is available
@@ -50,53 +123,74 @@ public final class StudentFakebookOracle extends FakebookOracle {
             int mostMonth = 0;
             int leastMonth = 0;
             int total = 0;
+            boolean first = true;
             while (rst.next()) { // step through result rows/records one by one
-                if (rst.isFirst()) { // if first record
-                    mostMonth = rst.getInt(2); //   it is the month with the most
-                }
-                if (rst.isLast()) { // if last record
-                    leastMonth = rst.getInt(2); //   it is the month with the least
+                int month = rst.getInt(2);
+                if (first) { // if first record
+                    mostMonth = month; //   it is the month with the most
+                    first = false;
                 }
+                leastMonth = month; // the last record seen is the month with the least
                 total += rst.getInt(1); // get the first field's value as an integer
             }
             BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
 
             // Step 2
             // ------------
-            // * Get the names of users born in the most popular birth month
-            rst = stmt.executeQuery(
-                    "SELECT User_ID, First_Name, Last_Name " + // select ID, first name, and last name
+            // * Get the IDs of users born in the most popular birth month
+            rst = statements.executeQuery("Query 0: Users Born In Month",
+                    "SELECT User_ID " + // select ID; names come from the user cache
                             "FROM " + UsersTable + " " + // from all users
-                            "WHERE Month_of_Birth = " + mostMonth + " " + // born in the most popular birth month
-                            "ORDER BY User_ID"); // sort smaller IDs first
+                            "WHERE Month_of_Birth = ? " + // born in the most popular birth month
+                            "ORDER BY User_ID", // sort smaller IDs first
+                    mostMonth); // bound to the placeholder, so both steps share one parsed statement
 
+            FakebookUserCache.Batch mostUsers = userCache.batch();
             while (rst.next()) {
-                info.addMostPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                mostUsers.add(rst.getLong(1));
             }
 
             // Step 3
             // ------------
-            // * Get the names of users born in the least popular birth month
-            rst = stmt.executeQuery(
-                    "SELECT User_ID, First_Name, Last_Name " + // select ID, first name, and last name
+            // * Get the IDs of users born in the least popular birth month
+            rst = statements.executeQuery("Query 0: Users Born In Month",
+                    "SELECT User_ID " + // select ID; names come from the user cache
                             "FROM " + UsersTable + " " + // from all users
-                            "WHERE Month_of_Birth = " + leastMonth + " " + // born in the least popular birth month
-                            "ORDER BY User_ID"); // sort smaller IDs first
+                            "WHERE Month_of_Birth = ? " + // born in the least popular birth month
+                            "ORDER BY User_ID", // sort smaller IDs first
+                    leastMonth);
 
+            FakebookUserCache.Batch leastUsers = userCache.batch();
             while (rst.next()) {
-                info.addLeastPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                leastUsers.add(rst.getLong(1));
             }
 
             // Step 4
             // ------------
             // * Close resources being used
-            rst.close();
-            stmt.close(); // if you close the statement first, the result set gets closed automatically
+            rst.close(); // the statements themselves stay open in the registry for reuse
+
+            // Step 5
+            // ------------
+            // * Hydrate the names of both sets of users from the user cache
+            mostUsers.resolve(statements);
+            for (int idx = 0; idx < mostUsers.size(); idx++) {
+                if (mostUsers.user(idx) != null) {
+                    info.addMostPopularBirthMonthUser(mostUsers.user(idx));
+                }
+            }
+            leastUsers.resolve(statements);
+            for (int idx = 0; idx < leastUsers.size(); idx++) {
+                if (leastUsers.user(idx) != null) {
+                    info.addLeastPopularBirthMonthUser(leastUsers.user(idx));
+                }
+            }
 
             return info;
 
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
             return new BirthMonthInfo(-1, -1, -1);
         }
     }
@@ -110,8 +204,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (D) The number of users whose first name is that identified in (C)
     public FirstNameInfo findNameInfo() throws SQLException {
         FirstNameInfo info = new FirstNameInfo();
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -126,8 +219,8 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 info.setCommonNameCount(42);
                 return info;
             */
-            ResultSet rst = stmt.executeQuery(
-                    "SELECT DISTINCT First_Name " + 
+            ResultSet rst = statements.executeQuery("Query 1: Longest First Names",
+                    "SELECT DISTINCT First_Name " +
                             "FROM " + UsersTable + " " +
                             "WHERE LENGTH(First_Name) = (SELECT MAX(LENGTH(First_Name)) FROM " + UsersTable + ") " +
                             "ORDER BY First_Name ASC");
@@ -135,7 +228,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
             while (rst.next()) {
                 info.addLongName(rst.getString(1));
             }
-            rst = stmt.executeQuery(
+            rst = statements.executeQuery("Query 1: Shortest First Names",
                     "SELECT DISTINCT First_Name " +
                             "FROM " + UsersTable + " " +
                             "WHERE LENGTH(First_Name) = (SELECT MIN(LENGTH(First_Name)) FROM " + UsersTable + ") " +
@@ -144,7 +237,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
             while (rst.next()) {
                 info.addShortName(rst.getString(1));
             }
-            rst = stmt.executeQuery(
+            rst = statements.executeQuery("Query 1: First Name Counts",
                     "SELECT First_Name, COUNT(*) AS count " +
                             "FROM " + UsersTable + " " +
                             "GROUP BY First_Name " +
@@ -157,10 +250,10 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 } while (rst.next() && rst.getLong(2) == count);
             }
             rst.close();
-            stmt.close();
             return info;
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
             return new FirstNameInfo();
         }
     }
@@ -175,8 +268,15 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
+            if (bitmapSets) {
+                FakebookUserCache.Batch users = userCache.batch();
+                for (long userID : lonelyUserIDsByBitmaps()) {
+                    users.add(userID);
+                }
+                addUsers(users, results);
+                return results;
+            }
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -185,21 +285,23 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(u1);
                 results.add(u2);
             */
-            ResultSet rst = stmt.executeQuery(
-                    "SELECT U.User_ID, U.First_Name, U.Last_Name " +
+            ResultSet rst = statements.executeQuery("Query 2: Lonely Users",
+                    "SELECT U.User_ID " +
                             "FROM " + UsersTable + " U " +
                             "WHERE NOT EXISTS (" +
                             "    SELECT 1 FROM " + FriendsTable + " F " +
                             "    WHERE F.User1_ID = U.User_ID OR F.User2_ID = U.User_ID" +
                             ") " +
                             "ORDER BY U.User_ID ASC");
+            FakebookUserCache.Batch users = userCache.batch();
             while (rst.next()) {
-                results.add(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                users.add(rst.getLong(1));
             }
             rst.close();
-            stmt.close();
+            addUsers(users, results);
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
         }
         return results;
     }
@@ -212,8 +314,15 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
+            if (bitmapSets) {
+                FakebookUserCache.Batch users = userCache.batch();
+                for (long userID : awayFromHomeUserIDsByBitmaps()) {
+                    users.add(userID);
+                }
+                addUsers(users, results);
+                return results;
+            }
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -222,25 +331,274 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 results.add(u1);
                 results.add(u2);
             */
-            ResultSet rst = stmt.executeQuery(
-                    "SELECT U.User_ID, U.First_Name, U.Last_Name " +
+            ResultSet rst = statements.executeQuery("Query 3: Users Living Away From Home",
+                    "SELECT U.User_ID " +
                             "FROM " + UsersTable + " U " +
                             "JOIN " + CurrentCitiesTable + " CC ON CC.User_ID = U.User_ID " +
                             "JOIN " + HometownCitiesTable + " HC ON HC.User_ID = U.User_ID " +
                             "AND CC.Current_City_ID <> HC.Hometown_City_ID " +
                             "ORDER BY U.User_ID ASC");
 
+            FakebookUserCache.Batch users = userCache.batch();
             while (rst.next()) {
-                results.add(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                users.add(rst.getLong(1));
             }
             rst.close();
-            stmt.close();
+            addUsers(users, results);
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
         }
         return results;
     }
 
+    // [Lonely User IDs By Bitmaps Function]
+    // EFFECTS:  returns the IDs of the users of Query 2 in ascending order, computed as the set
+    //           of all users minus the set of users in any friendship, each read with one scan
+    private long[] lonelyUserIDsByBitmaps() throws SQLException {
+        FakebookUserBitmap users = loadUserBitmap();
+        FakebookUserBitmap befriended = new FakebookUserBitmap();
+        ResultSet rst = statements.executeQuery("Query 2: Bitmap Friends",
+                "SELECT User1_ID, User2_ID FROM " + FriendsTable);
+        while (rst.next()) {
+            befriended.add(rst.getLong(1));
+            befriended.add(rst.getLong(2));
+        }
+        rst.close();
+
+        return users.andNot(befriended).toArray();
+    }
+
+    // [Away From Home User IDs By Bitmaps Function]
+    // EFFECTS:  returns the IDs of the users of Query 3 in ascending order, computed as the set
+    //           of all users and the set of users with a current city that differs from a hometown; the second set
+    //           is built by merging the two city tables, both read in user order, and a user
+    //           with several differing (current city, hometown) pairs is listed once per pair,
+    //           as in the join
+    private long[] awayFromHomeUserIDsByBitmaps() throws SQLException {
+        FakebookUserBitmap users = loadUserBitmap();
+        FakebookUserBitmap away = new FakebookUserBitmap();
+        LongIntHashMap repeats = new LongIntHashMap(); // users with more than one differing pair
+        ResultSet current = statements.executeQuery("Query 3: Bitmap Current Cities",
+                "SELECT User_ID, Current_City_ID FROM " + CurrentCitiesTable + " " +
+                        "WHERE Current_City_ID IS NOT NULL ORDER BY User_ID");
+        ResultSet hometown = statements.executeQuery("Query 3: Bitmap Hometown Cities",
+                "SELECT User_ID, Hometown_City_ID FROM " + HometownCitiesTable + " " +
+                        "WHERE Hometown_City_ID IS NOT NULL ORDER BY User_ID");
+        boolean moreCurrent = current.next();
+        boolean moreHometown = hometown.next();
+        long[] currentCities = new long[4]; // the cities of the user being merged
+        long[] hometowns = new long[4];
+        while (moreCurrent && moreHometown) {
+            long userID = Math.min(current.getLong(1), hometown.getLong(1));
+            int currentCount = 0;
+            while (moreCurrent && current.getLong(1) == userID) {
+                if (currentCount == currentCities.length) {
+                    currentCities = Arrays.copyOf(currentCities, 2 * currentCount);
+                }
+                currentCities[currentCount++] = current.getLong(2);
+                moreCurrent = current.next();
+            }
+            int hometownCount = 0;
+            while (moreHometown && hometown.getLong(1) == userID) {
+                if (hometownCount == hometowns.length) {
+                    hometowns = Arrays.copyOf(hometowns, 2 * hometownCount);
+                }
+                hometowns[hometownCount++] = hometown.getLong(2);
+                moreHometown = hometown.next();
+            }
+            int differing = 0;
+            for (int idx1 = 0; idx1 < currentCount; idx1++) {
+                for (int idx2 = 0; idx2 < hometownCount; idx2++) {
+                    differing += currentCities[idx1] != hometowns[idx2] ? 1 : 0;
+                }
+            }
+            if (differing > 0) {
+                away.add(userID);
+            }
+            if (differing > 1) {
+                repeats.put(userID, differing);
+            }
+        }
+        current.close();
+        hometown.close();
+
+        long[] awayIDs = users.and(away).toArray();
+        if (repeats.size() == 0) {
+            return awayIDs;
+        }
+        long[] userIDs = new long[awayIDs.length];
+        int count = 0;
+        for (long userID : awayIDs) {
+            for (int copy = repeats.get(userID, 1); copy > 0; copy--) {
+                if (count == userIDs.length) {
+                    userIDs = Arrays.copyOf(userIDs, 2 * count);
+                }
+                userIDs[count++] = userID;
+            }
+        }
+        return Arrays.copyOf(userIDs, count);
+    }
+
+    // [Load User Bitmap Function]
+    // EFFECTS:  returns the set of the IDs of all users, read with one scan
+    private FakebookUserBitmap loadUserBitmap() throws SQLException {
+        FakebookUserBitmap users = new FakebookUserBitmap();
+        ResultSet rst = statements.executeQuery("Bitmaps: Users", "SELECT User_ID FROM " + UsersTable);
+        while (rst.next()) {
+            users.add(rst.getLong(1));
+        }
+        rst.close();
+        return users;
+    }
+
+    @Override
+    // Query 2 (Streaming)
+    // -----------------------------------------------------------------------------------
+    // Streams the users of Query 2 instead of materializing them. The names are selected along
+    // with the IDs rather than taken from the user cache, which would otherwise end up holding
+    // every streamed user, and the total is computed by the database as an analytic COUNT on
+    // the same rows, so it is consistent with them and known from the first row on. Opening
+    // another cursor over the same query on this instance closes this one. With bitmap sets,
+    // the IDs are computed with bitmaps up front and their names looked up chunk by chunk.
+    public FakebookCursor<UserInfo> lonelyUsersCursor() throws SQLException {
+        try {
+            if (bitmapSets) {
+                return new UserIDCursor(lonelyUserIDsByBitmaps());
+            }
+            return new UserCursor(statements.executeQuery("Query 2: Lonely Users Stream",
+                    "SELECT U.User_ID, U.First_Name, U.Last_Name, COUNT(*) OVER () " +
+                            "FROM " + UsersTable + " U " +
+                            "WHERE NOT EXISTS (" +
+                            "    SELECT 1 FROM " + FriendsTable + " F " +
+                            "    WHERE F.User1_ID = U.User_ID OR F.User2_ID = U.User_ID" +
+                            ") " +
+                            "ORDER BY U.User_ID ASC"));
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            failures++;
+            return FakebookCursor.of(new FakebookArrayList<UserInfo>(", "));
+        }
+    }
+
+    @Override
+    // Query 3 (Streaming)
+    // -----------------------------------------------------------------------------------
+    // Streams the users of Query 3 instead of materializing them, in the same way as Query 2
+    public FakebookCursor<UserInfo> liveAwayFromHomeCursor() throws SQLException {
+        try {
+            if (bitmapSets) {
+                return new UserIDCursor(awayFromHomeUserIDsByBitmaps());
+            }
+            return new UserCursor(statements.executeQuery("Query 3: Users Living Away From Home Stream",
+                    "SELECT U.User_ID, U.First_Name, U.Last_Name, COUNT(*) OVER () " +
+                            "FROM " + UsersTable + " U " +
+                            "JOIN " + CurrentCitiesTable + " CC ON CC.User_ID = U.User_ID " +
+                            "JOIN " + HometownCitiesTable + " HC ON HC.User_ID = U.User_ID " +
+                            "AND CC.Current_City_ID <> HC.Hometown_City_ID " +
+                            "ORDER BY U.User_ID ASC"));
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            failures++;
+            return FakebookCursor.of(new FakebookArrayList<UserInfo>(", "));
+        }
+    }
+
+    /*
+        The UserCursor class streams the users in a result set of (User_ID, First_Name,
+        Last_Name, total) rows, fetching rows only as they are asked for.
+    */
+    private static final class UserCursor implements FakebookCursor<UserInfo> {
+        UserCursor(ResultSet rst) throws SQLException {
+            this.rst = rst;
+            pending = rst.next(); // the first row carries the total
+            exhausted = !pending;
+            count = pending ? rst.getLong(4) : 0;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public boolean next() throws SQLException {
+            if (pending) {
+                pending = false;
+            } else if (exhausted || !rst.next()) {
+                exhausted = true;
+                current = null;
+                return false;
+            }
+            current = new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
+            return true;
+        }
+
+        public UserInfo current() {
+            return current;
+        }
+
+        public void close() throws SQLException {
+            rst.close();
+        }
+
+        private final ResultSet rst;
+        private final long count;
+        private boolean pending;
+        private boolean exhausted;
+        private UserInfo current;
+    }
+
+    /*
+        The UserIDCursor class streams the users of an array of user IDs, looking up their names
+        <UserFaultBatchSize> at a time as next() reaches them. The names are looked up through
+        the user cache but not added to it, for the same reason as with UserCursor, so only one
+        chunk of users is held at a time. An ID whose user was deleted since the array was
+        computed is skipped, so the cursor may then yield fewer users than count().
+    */
+    private final class UserIDCursor implements FakebookCursor<UserInfo> {
+        UserIDCursor(long[] userIDs) {
+            this.userIDs = userIDs;
+            chunk = new UserInfo[Math.min(userIDs.length, FakebookOracleConstants.UserFaultBatchSize)];
+            position = -1;
+        }
+
+        public long count() {
+            return userIDs.length;
+        }
+
+        public boolean next() throws SQLException {
+            while (position + 1 < userIDs.length) {
+                position++;
+                if (position == chunkEnd) {
+                    chunkStart = position;
+                    chunkEnd = Math.min(position + chunk.length, userIDs.length);
+                    Arrays.fill(chunk, null);
+                    userCache.lookUp(statements, Arrays.copyOfRange(userIDs, chunkStart, chunkEnd),
+                            chunkEnd - chunkStart, chunk);
+                }
+                current = chunk[position - chunkStart];
+                if (current != null) {
+                    return true;
+                }
+            }
+            current = null;
+            return false;
+        }
+
+        public UserInfo current() {
+            return current;
+        }
+
+        public void close() {
+        }
+
+        private final long[] userIDs;
+        private final UserInfo[] chunk; // the users of the IDs [chunkStart, chunkEnd)
+        private int chunkStart;
+        private int chunkEnd;
+        private int position;
+        private UserInfo current;
+    }
+
     @Override
     // Query 4
     // -----------------------------------------------------------------------------------
@@ -251,8 +609,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
         FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -266,45 +623,55 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 tp.addTaggedUser(u3);
                 results.add(tp);
             */
-             ResultSet rst = stmt.executeQuery(
-                    "SELECT P.Photo_ID, P.Album_ID, P.Photo_Link, A.Album_Name, COUNT(DISTINCT T.Tag_Subject_ID) AS tag_count " +
-                            "FROM " + PhotosTable + " P, " + TagsTable + " T, " + AlbumsTable + " A " +
-                            "WHERE P.Photo_ID = T.Tag_Photo_ID " +
-                            "AND P.Album_ID = A.Album_ID " +
-                            "GROUP BY P.Photo_ID, P.Album_ID, P.Photo_Link, A.Album_Name " +
-                            "ORDER BY tag_count DESC, P.Photo_ID ASC " +
-                            "FETCH FIRST " + num + " ROWS ONLY");
+            // The top <num> photos and all of their tagged users are fetched in a single round
+            // trip: the ranked photos form an inline view that is joined back to the tags, and
+            // the rows come back grouped by photo (in rank order) so they can be assembled here.
+            // Only the IDs of the tagged users are fetched; their names come from the user cache
+            ResultSet rst = statements.executeQuery("Query 4: Most Tagged Photos",
+                    "SELECT TP.Photo_ID, TP.Album_ID, TP.Photo_Link, TP.Album_Name, T.Tag_Subject_ID " +
+                            "FROM (" +
+                            "    SELECT P.Photo_ID, P.Album_ID, P.Photo_Link, A.Album_Name, " +
+                            "           COUNT(DISTINCT T.Tag_Subject_ID) AS tag_count " +
+                            "    FROM " + PhotosTable + " P, " + TagsTable + " T, " + AlbumsTable + " A " +
+                            "    WHERE P.Photo_ID = T.Tag_Photo_ID " +
+                            "    AND P.Album_ID = A.Album_ID " +
+                            "    GROUP BY P.Photo_ID, P.Album_ID, P.Photo_Link, A.Album_Name " +
+                            "    ORDER BY tag_count DESC, P.Photo_ID ASC " +
+                            "    FETCH FIRST ? ROWS ONLY" +
+                            ") TP " +
+                            "JOIN " + TagsTable + " T ON T.Tag_Photo_ID = TP.Photo_ID " +
+                            "ORDER BY TP.tag_count DESC, TP.Photo_ID ASC, T.Tag_Subject_ID ASC",
+                    num);
+
+            TaggedPhotoInfo taggedPhotoInfo = null;
+            long currentPhotoID = -1;
+            FakebookUserCache.Batch taggedUsers = userCache.batch();
+            ArrayList<TaggedPhotoInfo> taggedPhotos = new ArrayList<TaggedPhotoInfo>(); // the photo of each tagged user
             while (rst.next()) {
                 long photoID = rst.getLong(1);
-                long albumID = rst.getLong(2);
-                String link = rst.getString(3);
-                String albumName = rst.getString(4);
-                PhotoInfo photo = new PhotoInfo(photoID, albumID, link, albumName);
-                TaggedPhotoInfo taggedPhotoInfo = new TaggedPhotoInfo(photo);
-                try (Statement userStmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
-                    ResultSet userRST = userStmt.executeQuery(
-                            "SELECT U.User_ID, U.First_Name, U.Last_Name " +
-                                    "FROM " + UsersTable + " U " +
-                                    "JOIN " + TagsTable + " T ON U.User_ID = T.Tag_Subject_ID " +
-                                    "WHERE T.Tag_Photo_ID = " + photoID + " " +
-                                    "ORDER BY U.User_ID ASC");
-
-                    while (userRST.next()) {
-                        long userID = userRST.getLong(1);
-                        String firstName = userRST.getString(2);
-                        String lastName = userRST.getString(3);
-                        taggedPhotoInfo.addTaggedUser(new UserInfo(userID, firstName, lastName));
-                    }
-                    userRST.close();
-                } catch (SQLException e) {
-                    System.err.println("Error fetching tagged users: " + e.getMessage());
+                if (taggedPhotoInfo == null || photoID != currentPhotoID) { // first row of a new photo
+                    long albumID = rst.getLong(2);
+                    String link = rst.getString(3);
+                    String albumName = rst.getString(4);
+                    taggedPhotoInfo = new TaggedPhotoInfo(new PhotoInfo(photoID, albumID, link, albumName));
+                    currentPhotoID = photoID;
+                    results.add(taggedPhotoInfo);
                 }
-                results.add(taggedPhotoInfo);
+                taggedUsers.add(rst.getLong(5));
+                taggedPhotos.add(taggedPhotoInfo);
             }
             rst.close();
-            stmt.close();
+
+            taggedUsers.resolve(statements);
+            for (int idx = 0; idx < taggedUsers.size(); idx++) {
+                UserInfo user = taggedUsers.user(idx);
+                if (user != null) { // the photo is kept even if a tag does not resolve to a user
+                    taggedPhotos.get(idx).addTaggedUser(user);
+                }
+            }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
         }
         return results;
     }
@@ -323,9 +690,11 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //            the containing album of each photo in which they are tagged together
     public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
         FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        if (coTags != null) {
+            return matchByCoTags(num, yearDiff);
+        }
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -336,9 +705,9 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 mp.addSharedPhoto(p);
                 results.add(mp);
             */
-            ResultSet rst = stmt.executeQuery(
-                    "SELECT U1.User_ID AS U1ser_ID, U1.First_Name AS User1_First, U1.Last_Name AS User1_Last, U1.Year_of_Birth AS User1_Birth, " +
-                            "U2.User_ID AS U2ser_ID, U2.First_Name AS User2_First, U2.Last_Name AS User2_Last, U2.Year_of_Birth AS User2_Birth, " +
+            ResultSet rst = statements.executeQuery("Query 5: Match Pairs",
+                    "SELECT U1.User_ID AS U1ser_ID, U1.Year_of_Birth AS User1_Birth, " +
+                            "U2.User_ID AS U2ser_ID, U2.Year_of_Birth AS User2_Birth, " +
                             "COUNT(T1.Tag_Photo_ID) AS shared_photos " +
                             "FROM " + UsersTable + " U1 " +
                             "JOIN " + TagsTable + " T1 ON U1.User_ID = T1.Tag_Subject_ID " +
@@ -346,56 +715,143 @@ public final class StudentFakebookOracle extends FakebookOracle {
                             "JOIN " + UsersTable + " U2 ON U2.User_ID = T2.Tag_Subject_ID AND U1.User_ID < U2.User_ID " +
                             "LEFT JOIN " + FriendsTable + " F ON U1.User_ID = F.User1_ID AND U2.User_ID = F.User2_ID " +
                             "WHERE U1.Gender = U2.Gender " +
-                            "AND ABS(U1.Year_of_Birth - U2.Year_of_Birth) <= " + yearDiff + " " +
+                            "AND ABS(U1.Year_of_Birth - U2.Year_of_Birth) <= ? " +
                             "AND F.User1_ID IS NULL " +
-                            "GROUP BY U1.User_ID, U1.First_Name, U1.Last_Name, U1.Year_of_Birth, " +
-                            "U2.User_ID, U2.First_Name, U2.Last_Name, U2.Year_of_Birth " +
+                            "GROUP BY U1.User_ID, U1.Year_of_Birth, U2.User_ID, U2.Year_of_Birth " +
                             "ORDER BY shared_photos DESC, U1ser_ID ASC, U2ser_ID ASC " +
-                            "FETCH FIRST " + num + " ROWS ONLY");
+                            "FETCH FIRST ? ROWS ONLY",
+                    yearDiff, num);
 
+            HashMap<String, MatchPair> pairs = new HashMap<String, MatchPair>();
+            ArrayList<long[]> pairIDs = new ArrayList<long[]>();
+            ArrayList<long[]> pairYears = new ArrayList<long[]>();
+            FakebookUserCache.Batch users = userCache.batch();
             while (rst.next()) {
-                long user1ID = rst.getLong(1);
-                String user1FirstName = rst.getString(2);
-                String user1LastName = rst.getString(3);
-                long user1Year = rst.getLong(4);
-                long user2ID = rst.getLong(5);
-                String user2FirstName = rst.getString(6);
-                String user2LastName = rst.getString(7);
-                long user2Year = rst.getLong(8);
-                UserInfo user1 = new UserInfo(user1ID, user1FirstName, user1LastName);
-                UserInfo user2 = new UserInfo(user2ID, user2FirstName, user2LastName);
-                MatchPair matchPair = new MatchPair(user1, user1Year, user2, user2Year);
-                try (Statement photoStmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
-                    ResultSet photoRST = photoStmt.executeQuery(
-                            "SELECT P.Photo_ID, A.Album_ID, P.Photo_Link, A.Album_Name " +
-                                    "FROM " + TagsTable + " T1 " +
-                                    "JOIN " + TagsTable + " T2 ON T1.Tag_Photo_ID = T2.Tag_Photo_ID " +
-                                    "JOIN " + PhotosTable + " P ON T1.Tag_Photo_ID = P.Photo_ID " +
-                                    "JOIN " + AlbumsTable + " A ON P.Album_ID = A.Album_ID " +
-                                    "WHERE T1.Tag_Subject_ID = " + user1ID + " AND T2.Tag_Subject_ID = " + user2ID + " " +
-                                    "ORDER BY P.Photo_ID ASC");
-
-                    while (photoRST.next()) {
-                        PhotoInfo photo = new PhotoInfo(photoRST.getLong(1), photoRST.getLong(2), photoRST.getString(3), photoRST.getString(4));
-                        matchPair.addSharedPhoto(photo);
-                    }
+                users.add(rst.getLong(1));
+                users.add(rst.getLong(3));
+                pairIDs.add(new long[] { rst.getLong(1), rst.getLong(3) });
+                pairYears.add(new long[] { rst.getLong(2), rst.getLong(4) });
+            }
+            users.resolve(statements);
+            for (int idx = 0; idx < pairIDs.size(); idx++) {
+                long[] years = pairYears.get(idx);
+                MatchPair matchPair = new MatchPair(users.user(2 * idx), years[0], users.user(2 * idx + 1), years[1]);
+                pairs.put(pairKey(pairIDs.get(idx)[0], pairIDs.get(idx)[1]), matchPair);
+                if (users.user(2 * idx) != null && users.user(2 * idx + 1) != null) {
+                    results.add(matchPair);
+                }
+            }
 
-                    photoRST.close();
+            // The shared photos of every selected pair are fetched with one set-based query per
+            // batch of <matchPhotoBatchSize> pairs and distributed to the pairs here
+            for (int from = 0; from < pairIDs.size(); from += matchPhotoBatchSize) {
+                int to = Math.min(from + matchPhotoBatchSize, pairIDs.size());
+                try {
+                    fetchSharedPhotos(pairIDs.subList(from, to), pairs);
                 } catch (SQLException e) {
                     System.err.println("Error fetching shared photos: " + e.getMessage());
+                    failures++;
                 }
-
-                results.add(matchPair);
             }
-            rst.close(); 
-            stmt.close();
+            rst.close();
         } catch (SQLException e) {
             System.err.println("Error fetching match results: " + e.getMessage());
+            failures++;
         }
 
         return results;
     }
 
+    // [Match By Co-Tags Function]
+    // EFFECTS:  returns the result of Query 5, with the pairs ranked by the FakebookCoTagEngine
+    //           of this instance instead of the database
+    private FakebookArrayList<MatchPair> matchByCoTags(int num, int yearDiff) {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        try {
+            FakebookTopPairs top = coTags.topPairs(num, yearDiff);
+            HashMap<String, MatchPair> pairs = new HashMap<String, MatchPair>();
+            ArrayList<long[]> pairIDs = new ArrayList<long[]>();
+            FakebookUserCache.Batch users = userCache.batch();
+            for (int rank = 0; rank < top.size(); rank++) {
+                users.add(coTags.userID(top.user1(rank)));
+                users.add(coTags.userID(top.user2(rank)));
+                pairIDs.add(new long[] { coTags.userID(top.user1(rank)), coTags.userID(top.user2(rank)) });
+            }
+            users.resolve(statements);
+            for (int rank = 0; rank < top.size(); rank++) {
+                MatchPair matchPair = new MatchPair(users.user(2 * rank), coTags.birthYear(top.user1(rank)),
+                        users.user(2 * rank + 1), coTags.birthYear(top.user2(rank)));
+                pairs.put(pairKey(pairIDs.get(rank)[0], pairIDs.get(rank)[1]), matchPair);
+                if (users.user(2 * rank) != null && users.user(2 * rank + 1) != null) {
+                    results.add(matchPair);
+                }
+            }
+            for (int from = 0; from < pairIDs.size(); from += matchPhotoBatchSize) {
+                fetchSharedPhotos(pairIDs.subList(from, Math.min(from + matchPhotoBatchSize, pairIDs.size())), pairs);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error fetching match results: " + e.getMessage());
+            failures++;
+        }
+        return results;
+    }
+
+    // [Shared Photo Batch Function]
+    // REQUIRES: <batch> is not empty and every pair in it has an entry in <pairs>
+    // MODIFIES: the MatchPair instances in <pairs>
+    // EFFECTS:  adds to each pair in <batch> the photos in which both of its users are tagged,
+    //           in ascending photo ID order, using a single query for the whole batch; short
+    //           batches are padded by repeating their last pair, so every batch binds the same
+    //           <matchPhotoBatchSize> pairs and shares a single prepared statement
+    private void fetchSharedPhotos(List<long[]> batch, HashMap<String, MatchPair> pairs) throws SQLException {
+        StringBuilder inList = new StringBuilder();
+        Object[] binds = new Object[2 * matchPhotoBatchSize];
+        for (int idx = 0; idx < matchPhotoBatchSize; idx++) {
+            long[] pair = batch.get(Math.min(idx, batch.size() - 1));
+            if (idx != 0) {
+                inList.append(", ");
+            }
+            inList.append("(?, ?)");
+            binds[2 * idx] = pair[0];
+            binds[2 * idx + 1] = pair[1];
+        }
+
+        ResultSet photoRST = statements.executeQuery("Query 5: Shared Photos x" + matchPhotoBatchSize,
+                "SELECT T1.Tag_Subject_ID, T2.Tag_Subject_ID, P.Photo_ID, A.Album_ID, P.Photo_Link, A.Album_Name " +
+                        "FROM " + TagsTable + " T1 " +
+                        "JOIN " + TagsTable + " T2 ON T1.Tag_Photo_ID = T2.Tag_Photo_ID " +
+                        "JOIN " + PhotosTable + " P ON T1.Tag_Photo_ID = P.Photo_ID " +
+                        "JOIN " + AlbumsTable + " A ON P.Album_ID = A.Album_ID " +
+                        "WHERE (T1.Tag_Subject_ID, T2.Tag_Subject_ID) IN (" + inList + ") " +
+                        "ORDER BY T1.Tag_Subject_ID ASC, T2.Tag_Subject_ID ASC, P.Photo_ID ASC",
+                binds);
+
+        while (photoRST.next()) {
+            MatchPair matchPair = pairs.get(pairKey(photoRST.getLong(1), photoRST.getLong(2)));
+            PhotoInfo photo = new PhotoInfo(photoRST.getLong(3), photoRST.getLong(4), photoRST.getString(5),
+                    photoRST.getString(6));
+            matchPair.addSharedPhoto(photo);
+        }
+        photoRST.close();
+    }
+
+    // [Pair Key Function]
+    // EFFECTS:  returns a key identifying the ordered pair of users (<user1ID>, <user2ID>)
+    private static String pairKey(long user1ID, long user2ID) {
+        return user1ID + ":" + user2ID;
+    }
+
+    // [Set Batch Size Function]
+    // REQUIRES: <batchSize> is positive
+    // MODIFIES: <matchPhotoBatchSize>
+    // EFFECTS:  sets how many pairs Query 5 looks up shared photos for in a single query
+    public void setMatchPhotoBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        matchPhotoBatchSize = batchSize;
+    }
+
 
     @Override
     // Query 6
@@ -408,8 +864,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
         FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -420,95 +875,74 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 up.addSharedFriend(u3);
                 results.add(up);
             */
-  
-            stmt.executeUpdate("CREATE VIEW Bi_Friend AS "+
-                                    "SELECT F.user1_id, F.user2_id "+
-                                        "FROM "+FriendsTable+" F "+
-                                    "UNION "+
-                                    "SELECT F1.user2_id, F1.user1_id "+
-                                        "FROM "+FriendsTable+" F1"
-                                );
-
-            ResultSet rst = stmt.executeQuery("SELECT user1_id,user2_id "+
-                                "FROM ( "+
-                                "SELECT user1_id, user2_id "+
-                                "FROM "+
-                                    "( SELECT B1.user1_id AS user1_id, B2.user2_id AS user2_id "+
-                                        "FROM Bi_Friend B1, Bi_Friend B2 "+
-                                        "WHERE B1.user1_id < B2.user2_id "+
-                                        "AND B1.user2_id = B2.user1_id "+
-                                        "AND NOT EXISTS ("+
-                                        "SELECT 1 "+
-                                        "FROM "+FriendsTable+" F "+ 
-                                        "WHERE F.user1_id = B1.user1_id "+
-                                        "AND F.user2_id = B2.user2_id)  "+
-                                ") GROUP BY user1_id, user2_id "+
-                                "ORDER BY COUNT(*) DESC, user1_id, user2_id )"+
-                                "WHERE ROWNUM <= " + num 
-                                );
 
-            while (rst.next()) {
-                long mutual1_friendID = -1;
-                String mutual1_firstName = "ERROR";
-                String mutual1_lastName = "ERROR";
-                long mutual2_friendID = -1;
-                String mutual2_firstName = "ERROR";
-                String mutual2_lastName = "ERROR";   
-                try (Statement stmt2 = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
-                    ResultSet rst1 = stmt2.executeQuery(
-                            "SELECT U.user_ID, U.first_name, U.last_name " +
-                            "FROM " + UsersTable + " U " +
-                            "WHERE U.user_id = " + rst.getLong(1)
-                    );
-                    if (rst1.next()) {
-                        mutual1_friendID = rst1.getLong(1);
-                        mutual1_firstName = rst1.getString(2);
-                        mutual1_lastName = rst1.getString(3);
-                    }
-                    rst1.close();
-                    
-
-                    UserInfo user1 = new UserInfo(mutual1_friendID, mutual1_firstName, mutual1_lastName);
-
-
-                    ResultSet rst2 = stmt2.executeQuery(
-                            "SELECT U.user_ID, U.first_name, U.last_name " +
-                            "FROM " + UsersTable + " U " +
-                            "WHERE U.user_id = " + rst.getLong(2)
-                    );
-                    if (rst2.next()) {
-                        mutual2_friendID = rst2.getLong(1);
-                        mutual2_firstName = rst2.getString(2);
-                        mutual2_lastName = rst2.getString(3);
-                    }
-                    rst2.close();
-
-
-                    UserInfo user2 = new UserInfo(mutual2_friendID, mutual2_firstName, mutual2_lastName);
-                    UsersPair info = new UsersPair(user1, user2);
+            // The top <num> pairs and all of their common friends are resolved by a single
+            // set-based query that returns user IDs only (names come from the user cache); the
+            // bidirectional friendship relation is factored into a WITH clause instead of a CREATE VIEW / DROP VIEW pair.
+            // UNION ALL is sufficient since each friendship is stored only once as (U1, U2), U1 < U2
+            ResultSet rst = statements.executeQuery("Query 6: Suggested Friend Pairs",
+                    "WITH Bi_Friend AS (" +
+                            "    SELECT F.User1_ID, F.User2_ID FROM " + FriendsTable + " F " +
+                            "    UNION ALL " +
+                            "    SELECT F.User2_ID, F.User1_ID FROM " + FriendsTable + " F" +
+                            "), Top_Pairs AS (" +
+                            "    SELECT User1_ID, User2_ID, Mutual_Count, ROWNUM AS Pair_Rank " +
+                            "    FROM (" +
+                            "        SELECT B1.User1_ID AS User1_ID, B2.User2_ID AS User2_ID, COUNT(*) AS Mutual_Count " +
+                            "        FROM Bi_Friend B1, Bi_Friend B2 " +
+                            "        WHERE B1.User1_ID < B2.User2_ID " +
+                            "        AND B1.User2_ID = B2.User1_ID " +
+                            "        AND NOT EXISTS (" +
+                            "            SELECT 1 FROM " + FriendsTable + " F " +
+                            "            WHERE F.User1_ID = B1.User1_ID AND F.User2_ID = B2.User2_ID" +
+                            "        ) " +
+                            "        GROUP BY B1.User1_ID, B2.User2_ID " +
+                            "        ORDER BY Mutual_Count DESC, User1_ID, User2_ID" +
+                            "    ) " +
+                            "    WHERE ROWNUM <= ?" +
+                            ") " +
+                            "SELECT TP.User1_ID, TP.User2_ID, B1.User2_ID " +
+                            "FROM Top_Pairs TP " +
+                            "JOIN Bi_Friend B1 ON B1.User1_ID = TP.User1_ID " +
+                            "JOIN Bi_Friend B2 ON B2.User1_ID = B1.User2_ID AND B2.User2_ID = TP.User2_ID " +
+                            "ORDER BY TP.Pair_Rank, B1.User2_ID",
+                    num);
 
+            // Each row contributes the pair and one common friend, in that order
+            FakebookUserCache.Batch users = userCache.batch();
+            while (rst.next()) {
+                users.add(rst.getLong(1));
+                users.add(rst.getLong(2));
+                users.add(rst.getLong(3));
+            }
+            rst.close();
+            users.resolve(statements);
 
-                    ResultSet rst3 = stmt2.executeQuery(
-                            "SELECT U.user_id, U.first_name, U.last_name " +
-                            "FROM Bi_Friend B1, Bi_Friend B2, " + UsersTable + " U " +
-                            "WHERE U.user_id = B1.user2_id AND B1.user2_id = B2.user1_id " + 
-                            "AND B1.user1_id = " + rst.getLong(1) + " AND B2.user2_id = " + rst.getLong(2) + " " +
-                            "ORDER BY U.user_id"
-                    );
-                    while (rst3.next()) {
-                        info.addSharedFriend(new UserInfo(rst3.getLong(1), rst3.getString(2), rst3.getString(3)));
+            // Rows arrive grouped by pair in rank order, so a new UsersPair starts whenever the
+            // pair changes
+            UsersPair info = null;
+            long currentUser1ID = -1;
+            long currentUser2ID = -1;
+            for (int idx = 0; idx < users.size(); idx += 3) {
+                long user1ID = users.id(idx);
+                long user2ID = users.id(idx + 1);
+                if (info == null || user1ID != currentUser1ID || user2ID != currentUser2ID) {
+                    info = new UsersPair(users.user(idx), users.user(idx + 1));
+                    currentUser1ID = user1ID;
+                    currentUser2ID = user2ID;
+                    if (users.user(idx) != null && users.user(idx + 1) != null) {
+                        results.add(info);
                     }
-                    rst3.close();
-                    results.add(info);
-                }    
+                }
+                UserInfo mutual = users.user(idx + 2);
+                if (mutual != null) { // the join with Users dropped friends that are not users
+                    info.addSharedFriend(mutual);
+                }
             }
-            stmt.executeUpdate("DROP VIEW Bi_Friend");
-            // rst.close();
-            stmt.close();
 
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
         }
 
         return results;
@@ -520,8 +954,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // GOALS: (A) Find the name of the state or states in which the most events are held
     //        (B) Find the number of events held in the states identified in (A)
     public EventStateInfo findEventStates() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -531,7 +964,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 info.addState("New Hampshire");
                 return info;
             */
-            ResultSet rst = stmt.executeQuery("SELECT MAX(event_count) FROM "+
+            ResultSet rst = statements.executeQuery("Query 7: Most Events In A State", "SELECT MAX(event_count) FROM "+
             "(SELECT COUNT(*) AS event_count "+
             "FROM "+ CitiesTable + " C, "+ EventsTable + " E " +
             "WHERE C.city_id = E.event_city_id "+
@@ -541,19 +974,19 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 eventCount = rst.getLong(1);
             }
             EventStateInfo info = new EventStateInfo(eventCount);
-            rst = stmt.executeQuery("SELECT DISTINCT C.state_name "+
+            rst = statements.executeQuery("Query 7: States With Event Count", "SELECT DISTINCT C.state_name "+
                                 "FROM "+ CitiesTable +" C, "+ EventsTable + " E "+
                                 "WHERE C.city_id = E.event_city_id "+
                                 "GROUP BY C.state_name "+
-                                "HAVING COUNT(*) = " + eventCount );
+                                "HAVING COUNT(*) = ?", eventCount);
             while (rst.next()) {
                 info.addState(rst.getString(1));
             }
             rst.close();
-            stmt.close();
             return info; 
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
             return new EventStateInfo(-1);
         }
     }
@@ -566,8 +999,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) Find the ID, first name, and last name of the youngest friend of the user
     //            with User ID <userID>
     public AgeInfo findAgeInfo(long userID) throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -575,40 +1007,228 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 UserInfo young = new UserInfo(80000000, "Neil", "deGrasse Tyson");
                 return new AgeInfo(old, young);
             */
-            ResultSet rst = stmt.executeQuery(
-                "SELECT u.user_id, u.first_name, u.last_name " +
+            if (ageIndex != null) {
+                return ageInfo(ageIndex.oldestFriend(userID), ageIndex.youngestFriend(userID));
+            }
+
+            // The join matches both ends of each of the user's friendships, so the user is
+            // excluded explicitly
+            ResultSet rst = statements.executeQuery("Query 8: Friends By Age",
+                "SELECT u.user_id " +
                 "FROM " + UsersTable + " u " +
                 "JOIN " + FriendsTable + " F ON (u.user_id = F.user1_id OR u.user_id = F.user2_id) " +
-                "WHERE (F.user1_id = " + userID + " OR F.user2_id = " + userID + ") " +
-                "ORDER BY u.year_of_birth, u.month_of_birth, u.day_of_birth, u.user_id DESC"
+                "WHERE (F.user1_id = ? OR F.user2_id = ?) " +
+                "AND u.user_id <> ? " +
+                "ORDER BY u.year_of_birth, u.month_of_birth, u.day_of_birth, u.user_id DESC",
+                userID, userID, userID
             );
 
             long youngest_friendID = -1;
-            String youngest_firstName = "ERROR";
-            String youngest_lastName = "ERROR";
             long oldest_friendID = -1;
-            String oldest_firstName = "ERROR";
-            String oldest_lastName = "ERROR";            
+            // The first row is the oldest friend and the last row is the youngest; the cursor is
+            // forward-only, so every row is remembered as the youngest until a later one replaces it
+            boolean first = true;
             while(rst.next()){
-                if(rst.isLast()){
-                    youngest_friendID = rst.getLong(1);
-                    youngest_firstName = rst.getString(2);
-                    youngest_lastName = rst.getString(3);
+                youngest_friendID = rst.getLong(1);
+                if(first){
+                    oldest_friendID = youngest_friendID;
+                    first = false;
                 }
-                if(rst.isFirst()){
-                    oldest_friendID = rst.getLong(1);
-                    oldest_firstName = rst.getString(2);
-                    oldest_lastName = rst.getString(3);
-                }
-                
             }
+            rst.close();
 
-            return new AgeInfo(new UserInfo(oldest_friendID,oldest_firstName,oldest_lastName),new UserInfo(youngest_friendID,youngest_firstName,youngest_lastName)); 
+            return ageInfo(oldest_friendID, youngest_friendID);
 
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
+            return ageInfo(null, null);
+        }
+    }
+
+    @Override
+    // Query 8 (Batch)
+    // -----------------------------------------------------------------------------------
+    // Finds the oldest and youngest friend of every user in <userIDs> with one set-based query
+    // per <AgeInfoBatchSize> distinct users (or with the age index, if one is loaded): both ends
+    // of each friendship of the requested users are ranked by birth date within each user, in
+    // both directions, and only the two first-ranked friends of each user are returned
+    public AgeInfo[] findAgeInfo(long[] userIDs) throws SQLException {
+        AgeInfo[] results = new AgeInfo[userIDs.length];
+
+        // Distinct users, each with the position of its oldest and youngest friend IDs
+        LongIntHashMap positions = new LongIntHashMap(userIDs.length);
+        long[] distinct = new long[userIDs.length];
+        int distinctCount = 0;
+        for (long userID : userIDs) {
+            if (!positions.containsKey(userID)) {
+                positions.put(userID, distinctCount);
+                distinct[distinctCount++] = userID;
+            }
+        }
+        long[] oldestIDs = new long[distinctCount];
+        long[] youngestIDs = new long[distinctCount];
+        Arrays.fill(oldestIDs, -1);
+        Arrays.fill(youngestIDs, -1);
+
+        try {
+            if (ageIndex != null) {
+                for (int idx = 0; idx < distinctCount; idx++) {
+                    oldestIDs[idx] = ageIndex.oldestFriend(distinct[idx]);
+                    youngestIDs[idx] = ageIndex.youngestFriend(distinct[idx]);
+                }
+            } else {
+                int maxBatchSize = FakebookOracleConstants.AgeInfoBatchSize;
+                for (int from = 0; from < distinctCount; from += maxBatchSize) {
+                    int to = Math.min(from + maxBatchSize, distinctCount);
+
+                    // Short batches are padded by repeating their last user to one of a few fixed
+                    // sizes, so batches share one prepared statement per size
+                    int batchSize = FakebookStatementRegistry.paddedSize(to - from, maxBatchSize);
+                    StringBuilder inList = new StringBuilder();
+                    Object[] binds = new Object[2 * batchSize];
+                    for (int idx = 0; idx < batchSize; idx++) {
+                        inList.append(idx == 0 ? "?" : ", ?");
+                        binds[idx] = distinct[Math.min(from + idx, to - 1)];
+                        binds[batchSize + idx] = binds[idx];
+                    }
+                    ResultSet rst = statements.executeQuery("Query 8: Friends By Age x" + batchSize,
+                            "SELECT Owner_ID, Friend_ID, Oldest_Rank, Youngest_Rank FROM (" +
+                                    "    SELECT B.Owner_ID, B.Friend_ID, " +
+                                    "    ROW_NUMBER() OVER (PARTITION BY B.Owner_ID ORDER BY U.Year_of_Birth, " +
+                                    "        U.Month_of_Birth, U.Day_of_Birth, U.User_ID DESC) AS Oldest_Rank, " +
+                                    "    ROW_NUMBER() OVER (PARTITION BY B.Owner_ID ORDER BY U.Year_of_Birth DESC, " +
+                                    "        U.Month_of_Birth DESC, U.Day_of_Birth DESC, U.User_ID ASC) AS Youngest_Rank " +
+                                    "    FROM (" +
+                                    "        SELECT F.User1_ID AS Owner_ID, F.User2_ID AS Friend_ID FROM " + FriendsTable + " F " +
+                                    "        WHERE F.User1_ID IN (" + inList + ") " +
+                                    "        UNION ALL " +
+                                    "        SELECT F.User2_ID, F.User1_ID FROM " + FriendsTable + " F " +
+                                    "        WHERE F.User2_ID IN (" + inList + ")" +
+                                    "    ) B " +
+                                    "    JOIN " + UsersTable + " U ON U.User_ID = B.Friend_ID" +
+                                    ") " +
+                                    "WHERE Oldest_Rank = 1 OR Youngest_Rank = 1",
+                            binds);
+                    while (rst.next()) {
+                        int position = positions.get(rst.getLong(1), -1);
+                        // a user with a single friend gets one row that ranks first both ways
+                        if (rst.getLong(3) == 1) {
+                            oldestIDs[position] = rst.getLong(2);
+                        }
+                        if (rst.getLong(4) == 1) {
+                            youngestIDs[position] = rst.getLong(2);
+                        }
+                    }
+                    rst.close();
+                }
+            }
+
+            FakebookUserCache.Batch users = userCache.batch();
+            int[] batchIndexes = new int[distinctCount]; // where the friends of each user are in <users>
+            for (int idx = 0; idx < distinctCount; idx++) {
+                batchIndexes[idx] = users.size();
+                if (oldestIDs[idx] != -1) {
+                    users.add(oldestIDs[idx]);
+                    users.add(youngestIDs[idx]);
+                }
+            }
+            users.resolve(statements);
+            for (int idx = 0; idx < userIDs.length; idx++) {
+                int position = positions.get(userIDs[idx], -1);
+                results[idx] = oldestIDs[position] == -1 ? ageInfo(null, null)
+                        : ageInfo(users.user(batchIndexes[position]), users.user(batchIndexes[position] + 1));
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            failures++;
+            for (int idx = 0; idx < userIDs.length; idx++) {
+                if (results[idx] == null) {
+                    results[idx] = ageInfo(null, null);
+                }
+            }
+        }
+        return results;
+    }
+
+    // [Load Age Index Function]
+    // MODIFIES: this
+    // EFFECTS:  builds a FakebookAgeIndex with one scan of the Users table and one of the
+    //           Friends table, answers Query 8 (single and batch) from it from now on, and
+    //           returns it so that other oracles can share it through setAgeIndex()
+    public FakebookAgeIndex loadAgeIndex() throws SQLException {
+        ResultSet rst = statements.executeQuery("Age Index: Users",
+                "SELECT User_ID, Year_of_Birth, Month_of_Birth, Day_of_Birth FROM " + UsersTable);
+        FakebookAgeIndex index = new FakebookAgeIndex(Math.max(16, userCache.size()));
+        while (rst.next()) {
+            long userID = rst.getLong(1);
+            int year = rst.getInt(2);
+            year = rst.wasNull() ? FakebookAgeIndex.NoDate : year;
+            int month = rst.getInt(3);
+            month = rst.wasNull() ? FakebookAgeIndex.NoDate : month;
+            int day = rst.getInt(4);
+            day = rst.wasNull() ? FakebookAgeIndex.NoDate : day;
+            index.addUser(userID, year, month, day);
+        }
+        rst.close();
+
+        rst = statements.executeQuery("Age Index: Friendships",
+                "SELECT User1_ID, User2_ID FROM " + FriendsTable);
+        while (rst.next()) {
+            index.addFriendship(rst.getLong(1), rst.getLong(2));
+        }
+        rst.close();
+        ageIndex = index;
+        return index;
+    }
+
+    // [Set Age Index Function]
+    // MODIFIES: this
+    // EFFECTS:  answers Query 8 from <index> from now on, or from the database again if <index>
+    //           is NULL
+    public void setAgeIndex(FakebookAgeIndex index) {
+        ageIndex = index;
+    }
+
+    // [Set Co-Tag Matching Function]
+    // MODIFIES: this
+    // EFFECTS:  ranks the pairs of Query 5 with a FakebookCoTagEngine, which streams the tables
+    //           instead of joining them in the database, if <enabled>, and with the join again
+    //           otherwise
+    public void setCoTagMatching(boolean enabled) {
+        coTags = enabled ? new FakebookCoTagEngine(statements) : null;
+    }
+
+    // [Set Bitmap Sets Function]
+    // MODIFIES: this
+    // EFFECTS:  computes Queries 2 and 3, streaming versions included, with set operations on
+    //           FakebookUserBitmap sets of user IDs if <enabled>, and with joins otherwise
+    public void setBitmapSets(boolean enabled) {
+        bitmapSets = enabled;
+    }
+
+    // [Age Info Function]
+    // EFFECTS:  resolves the friends <oldestID> and <youngestID> through the user cache and
+    //           returns their AgeInfo as below, with no lookup if <oldestID> is -1 (no friends)
+    private AgeInfo ageInfo(long oldestID, long youngestID) throws SQLException {
+        if (oldestID == -1) {
+            return ageInfo(null, null);
+        }
+        FakebookUserCache.Batch users = userCache.batch();
+        users.add(oldestID);
+        users.add(youngestID);
+        users.resolve(statements);
+        return ageInfo(users.user(0), users.user(1));
+    }
+
+    // [Age Info Function]
+    // EFFECTS:  returns the AgeInfo of the friends <oldest> and <youngest>, or the error AgeInfo
+    //           if either is NULL (no friends, or a friend that the join with Users would drop)
+    private AgeInfo ageInfo(UserInfo oldest, UserInfo youngest) {
+        if (oldest == null || youngest == null) {
             return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
         }
+        return new AgeInfo(oldest, youngest);
     }
 
     @Override
@@ -622,8 +1242,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
         FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
 
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll,
-                FakebookOracleConstants.ReadOnly)) {
+        try {
             /*
                 EXAMPLE DATA STRUCTURE USAGE
                 ============================================
@@ -632,28 +1251,56 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 SiblingInfo si = new SiblingInfo(u1, u2);
                 results.add(si);
             */
-            ResultSet rst = stmt.executeQuery("SELECT DISTINCT u1.user_id AS user1_id, u1.first_name AS user1_first_name, u1.last_name AS user1_last_name, u2.user_id AS user2_id,u2.first_name AS user2_first_name,u2.last_name AS user2_last_name "+
+            ResultSet rst = statements.executeQuery("Query 9: Potential Siblings", "SELECT DISTINCT u1.user_id AS user1_id, u2.user_id AS user2_id "+
                                             "FROM "+ UsersTable + " u1, " + UsersTable + " u2, " + FriendsTable + " F, "+ HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 "+
                                             "WHERE u1.last_name = u2.last_name AND "+
                                             "u1.user_id = H1.user_id AND u2.user_id = H2.user_id AND H1.hometown_city_id = H2.hometown_city_id "+
                                             "AND u1.user_id < u2.user_id AND u1.user_id = F.user1_id AND u2.user_id = F.user2_id "+
                                             "AND ABS(u1.year_of_birth-u2.year_of_birth) < 10 "+
                                             "ORDER BY user1_id,user2_id");
+            FakebookUserCache.Batch users = userCache.batch();
             while(rst.next()){
-                UserInfo u1 = new UserInfo(rst.getLong(1), rst.getString(2),  rst.getString(3));
-                UserInfo u2 = new UserInfo(rst.getLong(4), rst.getString(5),  rst.getString(6));
-                SiblingInfo si = new SiblingInfo(u1, u2);
-                results.add(si);
+                users.add(rst.getLong(1));
+                users.add(rst.getLong(2));
+            }
+            rst.close();
+            users.resolve(statements);
+            for (int idx = 0; idx < users.size(); idx += 2) {
+                if (users.user(idx) != null && users.user(idx + 1) != null) {
+                    SiblingInfo si = new SiblingInfo(users.user(idx), users.user(idx + 1));
+                    results.add(si);
+                }
             }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            failures++;
         }
 
         return results;
     }
 
+    // [Add Users Function]
+    // MODIFIES: <results>
+    // EFFECTS:  resolves <users> and adds the UserInfo of each of its IDs to <results>, in order,
+    //           skipping the IDs that are not users (as the join with Users would)
+    private void addUsers(FakebookUserCache.Batch users, FakebookArrayList<UserInfo> results) throws SQLException {
+        users.resolve(statements);
+        for (int idx = 0; idx < users.size(); idx++) {
+            if (users.user(idx) != null) {
+                results.add(users.user(idx));
+            }
+        }
+    }
+
     // Member Variables
     private Connection oracle;
+    private FakebookStatementRegistry statements;
+    private final FakebookUserCache userCache;
+    private volatile FakebookAgeIndex ageIndex;
+    private FakebookCoTagEngine coTags; // NULL unless co-tag matching is enabled
+    private boolean bitmapSets;
+    private long failures; // see failureCount()
+    private int matchPhotoBatchSize = FakebookOracleConstants.MatchPhotoBatchSize;
     private final String UsersTable = FakebookOracleConstants.UsersTable;
     private final String CitiesTable = FakebookOracleConstants.CitiesTable;
     private final String FriendsTable = FakebookOracleConstants.FriendsTable;